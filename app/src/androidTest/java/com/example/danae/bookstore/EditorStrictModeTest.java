@@ -0,0 +1,136 @@
+package com.example.danae.bookstore;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static android.support.test.espresso.Espresso.onView;
+import static android.support.test.espresso.action.ViewActions.click;
+import static android.support.test.espresso.action.ViewActions.replaceText;
+import static android.support.test.espresso.matcher.RootMatchers.isDialog;
+import static android.support.test.espresso.matcher.ViewMatchers.withId;
+import static android.support.test.espresso.matcher.ViewMatchers.withText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Saves and deletes items in {@link EditorActivity} while StrictMode kills the app on any disk
+ * access on the main thread, so that a save or delete that touches the database on the main
+ * thread fails the test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EditorStrictModeTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private Instrumentation mInstrumentation;
+    private TestInventory mInventory;
+    private String mName;
+    private StrictMode.ThreadPolicy mOldPolicy;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mInventory = new TestInventory("StrictMode");
+        mName = mInventory.getName("item");
+    }
+
+    @After
+    public void tearDown() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                if (mOldPolicy != null) {
+                    StrictMode.setThreadPolicy(mOldPolicy);
+                }
+            }
+        });
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void saveNewItem() {
+        Activity editor = startEditor(null);
+        onView(withId(R.id.edit_name)).perform(replaceText(mName));
+        onView(withId(R.id.edit_price)).perform(replaceText("12.50"));
+        onView(withId(R.id.edit_quantity)).perform(replaceText("3"));
+        onView(withId(R.id.edit_supplier_name)).perform(replaceText(mInventory.getSupplier()));
+        onView(withId(R.id.edit_supplier_number)).perform(replaceText(TestInventory.SUPPLIER_NUMBER));
+
+        enableStrictMode();
+        assertTrue(mInstrumentation.invokeMenuActionSync(editor, R.id.action_save, 0));
+        awaitFinished(editor);
+
+        assertEquals(1, mInventory.countItems());
+    }
+
+    @Test
+    public void deleteItem() {
+        Uri itemUri = mInventory.insertItem("item", 999, 1);
+        Activity editor = startEditor(itemUri);
+
+        enableStrictMode();
+        assertTrue(mInstrumentation.invokeMenuActionSync(editor, R.id.action_delete, 0));
+        onView(withText(R.string.delete_confirm)).inRoot(isDialog()).perform(click());
+        awaitFinished(editor);
+
+        assertEquals(0, mInventory.countItems());
+    }
+
+    private Activity startEditor(Uri itemUri) {
+        Intent intent = new Intent(TestInventory.getContext(), EditorActivity.class);
+        intent.setData(itemUri);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        Activity editor = mInstrumentation.startActivitySync(intent);
+        //Let the editor load the item before anything is checked
+        mInstrumentation.waitForIdleSync();
+        return editor;
+    }
+
+    /**
+     * Kill the app on any disk access on the main thread from now on
+     */
+    private void enableStrictMode() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mOldPolicy = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .penaltyLog()
+                        .penaltyDeath()
+                        .build());
+            }
+        });
+    }
+
+    /**
+     * Wait for the editor to close, which it does once the write has finished
+     */
+    private void awaitFinished(final Activity editor) {
+        final boolean[] finishing = new boolean[1];
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+        while (!finishing[0] && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(50);
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    finishing[0] = editor.isFinishing();
+                }
+            });
+        }
+        assertTrue("The editor didn't close", finishing[0]);
+        mInstrumentation.waitForIdleSync();
+    }
+}
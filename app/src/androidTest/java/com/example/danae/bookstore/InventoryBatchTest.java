@@ -0,0 +1,111 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that bulkInsert() and applyBatch() of the inventory provider write all of their items or
+ * none of them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryBatchTest {
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mInventory = new TestInventory("Batch");
+        mContentResolver = mInventory.getContentResolver();
+    }
+
+    @After
+    public void deleteItems() {
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void bulkInsertAddsEveryItem() {
+        ContentValues[] values = {newItem("a"), newItem("b"), newItem("c")};
+        assertEquals(3, mContentResolver.bulkInsert(InventoryEntry.CONTENT_URI, values));
+        assertEquals(3, mInventory.countItems());
+    }
+
+    @Test
+    public void bulkInsertWithInvalidItemAddsNothing() {
+        ContentValues invalid = newItem("invalid");
+        invalid.remove(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        ContentValues[] values = {newItem("a"), newItem("b"), invalid};
+        try {
+            mContentResolver.bulkInsert(InventoryEntry.CONTENT_URI, values);
+            fail("The item without a supplier was accepted");
+        } catch (IllegalArgumentException e) {
+            //Expected
+        }
+        assertEquals(0, mInventory.countItems());
+    }
+
+    @Test
+    public void applyBatchAppliesEveryOperation() throws RemoteException, OperationApplicationException {
+        Uri existing = insertItem("existing");
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                .withValues(newItem("new")).build());
+        operations.add(ContentProviderOperation.newUpdate(existing)
+                .withValue(InventoryEntry.COLUMN_QUANTITY, 42).build());
+
+        ContentProviderResult[] results = mContentResolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+        assertEquals(2, results.length);
+        assertEquals(2, mInventory.countItems());
+        assertEquals(42, mInventory.readQuantity(existing));
+    }
+
+    @Test
+    public void failedBatchKeepsNothing() throws RemoteException {
+        Uri existing = insertItem("existing");
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                .withValues(newItem("new")).build());
+        operations.add(ContentProviderOperation.newUpdate(existing)
+                .withValue(InventoryEntry.COLUMN_QUANTITY, 42).build());
+        //Only one row can match, so this operation fails after the others have run
+        operations.add(ContentProviderOperation.newUpdate(existing)
+                .withValue(InventoryEntry.COLUMN_QUANTITY, 43).withExpectedCount(2).build());
+
+        try {
+            mContentResolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+            fail("The batch was applied although an operation failed");
+        } catch (OperationApplicationException e) {
+            //Expected
+        }
+        assertEquals(1, mInventory.countItems());
+        assertEquals(5, mInventory.readQuantity(existing));
+    }
+
+    private ContentValues newItem(String name) {
+        return mInventory.newItem(name, 1500, 5);
+    }
+
+    private Uri insertItem(String name) {
+        return mInventory.insertItem(name, 1500, 5);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.danae.bookstore;
+
+import android.app.Instrumentation;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmark of binding a row of the list: {@link InventoryPagedAdapter}'s ViewHolder binding
+ * against the binding of the cursor adapter it replaced, which looked up its views and columns
+ * and made a click listener on every bind. Both bind the same rows into one inflated list item on
+ * the main thread, and the time and the objects allocated per bind are logged.
+ * <p>
+ * The number of binds can be set with an instrumentation argument, for example
+ * {@code -e bindBenchmarkBinds 100000}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryBindBenchmarkTest {
+
+    public static final String LOG_TAG = InventoryBindBenchmarkTest.class.getSimpleName();
+
+    private static final String ARGUMENT_BINDS = "bindBenchmarkBinds";
+    private static final int DEFAULT_BINDS = 20000;
+
+    /**
+     * Binds run before measuring, so that both ways run compiled code
+     */
+    private static final int WARM_UP_BINDS = 2000;
+
+    /**
+     * Rows bound in turn
+     */
+    private static final int ROWS = 1000;
+
+    private Instrumentation mInstrumentation;
+    private View mView;
+    private InventoryPagedAdapter.ViewHolder mHolder;
+    private Cursor mCursor;
+    private InventoryItem[] mItems;
+    private int mBinds;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        String bindsArgument = InstrumentationRegistry.getArguments().getString(ARGUMENT_BINDS);
+        mBinds = bindsArgument == null ? DEFAULT_BINDS : Integer.parseInt(bindsArgument);
+
+        //The same rows as a cursor, for the old binding, and as items, for the ViewHolder
+        MatrixCursor cursor = new MatrixCursor(new String[]{InventoryEntry._ID, InventoryEntry.COLUMN_PRODUCT_NAME,
+                InventoryEntry.COLUMN_PRICE, InventoryEntry.COLUMN_QUANTITY});
+        mItems = new InventoryItem[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            String name = "Book " + row;
+            long priceCents = 100 + row * 37;
+            int quantity = row % 50;
+            cursor.addRow(new Object[]{(long) row + 1, name, priceCents, quantity});
+            mItems[row] = new InventoryItem(row + 1, name, priceCents, quantity, null, null);
+        }
+        mCursor = cursor;
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ContextThemeWrapper context = new ContextThemeWrapper(mInstrumentation.getTargetContext(),
+                        R.style.AppTheme);
+                FrameLayout parent = new FrameLayout(context);
+                mView = LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+                mHolder = new InventoryPagedAdapter.ViewHolder(mView);
+            }
+        });
+    }
+
+    @Test
+    public void bindRows() {
+        final Result[] results = new Result[2];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                results[0] = measure(new Bind() {
+                    @Override
+                    public void run(int row) {
+                        mCursor.moveToPosition(row);
+                        bindCursorRow(mView, mCursor);
+                    }
+                });
+                results[1] = measure(new Bind() {
+                    @Override
+                    public void run(int row) {
+                        InventoryPagedAdapter.bindView(mHolder, mItems[row]);
+                    }
+                });
+            }
+        });
+        Log.i(LOG_TAG, String.format("Bind benchmark: %d binds: cursor adapter %.2f us and %.1f objects"
+                        + " (%.0f bytes) per bind, ViewHolder %.2f us and %.1f objects (%.0f bytes)",
+                mBinds, results[0].micros, results[0].objects, results[0].bytes,
+                results[1].micros, results[1].objects, results[1].bytes));
+    }
+
+    /**
+     * Warm up, then bind the rows in turn and return the average time and allocations of a bind.
+     * Objects are counted on the main thread only.
+     */
+    @SuppressWarnings("deprecation")
+    private Result measure(Bind bind) {
+        for (int i = 0; i < WARM_UP_BINDS; i++) {
+            bind.run(i % ROWS);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < mBinds; i++) {
+            bind.run(i % ROWS);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+
+        Result result = new Result();
+        result.micros = elapsedNanos / 1000.0 / mBinds;
+        result.objects = (double) Debug.getThreadAllocCount() / mBinds;
+        result.bytes = (double) Debug.getThreadAllocSize() / mBinds;
+        return result;
+    }
+
+    /**
+     * The binding of the cursor adapter the list used before: the views and columns are found on
+     * every bind, the values are read as strings, and the button gets a new click listener.
+     */
+    private static void bindCursorRow(View view, final Cursor cursor) {
+        TextView nameTextView = view.findViewById(R.id.name);
+        TextView priceTextView = view.findViewById(R.id.price);
+        TextView quantityTextView = view.findViewById(R.id.quantity);
+        Button quickSaleButton = view.findViewById(R.id.quick_sale_button);
+
+        int nameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
+        int priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE);
+        int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
+
+        String itemName = cursor.getString(nameColumnIndex);
+        String itemPrice = cursor.getString(priceColumnIndex);
+        String itemQuantity = cursor.getString(quantityColumnIndex);
+        if (TextUtils.isEmpty(itemQuantity)) {
+            itemQuantity = "0";
+        }
+
+        nameTextView.setText(itemName);
+        priceTextView.setText(itemPrice);
+        quantityTextView.setText(itemQuantity);
+
+        final int position = cursor.getPosition();
+        quickSaleButton.setOnClickListener(new Button.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                cursor.moveToPosition(position);
+            }
+        });
+    }
+
+    /**
+     * One way of binding a row
+     */
+    private interface Bind {
+        void run(int row);
+    }
+
+    private static class Result {
+        double micros;
+        double objects;
+        double bytes;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryGenerator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs sales, inserts and reads of the inventory from several threads at once through
+ * {@link com.example.danae.bookstore.data.InventoryProvider}, and checks that no operation
+ * failed, that no item was ever sold below zero and that every item ends up with its starting
+ * stock less the units sold.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryConcurrencyTest {
+
+    public static final String LOG_TAG = InventoryConcurrencyTest.class.getSimpleName();
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 200;
+
+    /**
+     * Items sold from, and the stock each starts with. There are fewer units than sales, so
+     * items sell out while the threads are still selling them.
+     */
+    private static final int ITEMS = 10;
+    private static final int STARTING_QUANTITY = 30;
+
+    private static final long SEED = 7;
+
+    private ContentResolver mContentResolver;
+    private InventoryGenerator mGenerator;
+    private long[] mItemIds;
+    private final List<Long> mInsertedIds = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Before
+    public void insertItems() {
+        mContentResolver = TestInventory.getContext().getContentResolver();
+        mGenerator = new InventoryGenerator(SEED);
+        mItemIds = new long[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            ContentValues values = mGenerator.next();
+            values.put(InventoryEntry.COLUMN_QUANTITY, STARTING_QUANTITY);
+            Uri uri = mContentResolver.insert(InventoryEntry.CONTENT_URI, values);
+            assertNotNull(uri);
+            mItemIds[i] = ContentUris.parseId(uri);
+        }
+    }
+
+    @After
+    public void deleteItems() {
+        for (long id : mItemIds) {
+            mContentResolver.delete(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id), null, null);
+        }
+        for (long id : mInsertedIds) {
+            mContentResolver.delete(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id), null, null);
+        }
+    }
+
+    @Test
+    public void concurrentSalesInsertsAndReads() throws InterruptedException {
+        //The values of the inserted items are made up front, as the generator isn't thread safe
+        final ContentValues[][] inserts = new ContentValues[THREADS][OPERATIONS_PER_THREAD];
+        for (ContentValues[] threadInserts : inserts) {
+            for (int i = 0; i < threadInserts.length; i++) {
+                threadInserts[i] = mGenerator.next();
+            }
+        }
+
+        final AtomicIntegerArray unitsSold = new AtomicIntegerArray(ITEMS);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int thread = 0; thread < THREADS; thread++) {
+            final Random random = new Random(SEED + thread);
+            final ContentValues[] threadInserts = inserts[thread];
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                            int item = random.nextInt(ITEMS);
+                            switch (random.nextInt(3)) {
+                                case 0:
+                                    if (sell(mItemIds[item]) >= 0) {
+                                        unitsSold.incrementAndGet(item);
+                                    }
+                                    break;
+                                case 1:
+                                    Uri uri = mContentResolver.insert(InventoryEntry.CONTENT_URI, threadInserts[i]);
+                                    assertNotNull(uri);
+                                    mInsertedIds.add(ContentUris.parseId(uri));
+                                    break;
+                                default:
+                                    int quantity = readQuantity(mItemIds[item]);
+                                    assertTrue("Stock out of range: " + quantity,
+                                            quantity >= 0 && quantity <= STARTING_QUANTITY);
+                                    break;
+                            }
+                        }
+                    } catch (Throwable e) {
+                        Log.e(LOG_TAG, "Concurrency test: operation failed", e);
+                        errors.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "InventoryConcurrencyTest-" + thread).start();
+        }
+        start.countDown();
+        done.await();
+
+        assertEquals("Failed operations: " + errors, 0, errors.size());
+        for (int item = 0; item < ITEMS; item++) {
+            assertTrue(unitsSold.get(item) <= STARTING_QUANTITY);
+            assertEquals(STARTING_QUANTITY - unitsSold.get(item), readQuantity(mItemIds[item]));
+        }
+        for (long id : mInsertedIds) {
+            assertTrue("Inserted item " + id + " is missing", readQuantity(id) >= 0);
+        }
+    }
+
+    /**
+     * Sell one unit of the item, returning its new stock, or -1 if it was sold out
+     */
+    private int sell(long id) {
+        Bundle result = mContentResolver.call(InventoryEntry.CONTENT_URI, InventoryContract.METHOD_SELL,
+                String.valueOf(id), null);
+        assertNotNull(result);
+        return result.getInt(InventoryContract.EXTRA_QUANTITY, -1);
+    }
+
+    /**
+     * Returns the stock of the item, or -1 if there is no such item
+     */
+    private int readQuantity(long id) {
+        Cursor cursor = mContentResolver.query(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id),
+                new String[]{InventoryEntry.COLUMN_QUANTITY}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+}
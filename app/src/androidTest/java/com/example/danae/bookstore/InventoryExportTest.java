@@ -0,0 +1,166 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryGenerator;
+import com.example.danae.bookstore.data.InventoryImporter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the inventory export read through the provider: the file can only be read, and
+ * importing it gives back the same items.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryExportTest {
+
+    /**
+     * Names that need quoting or more than one byte per character in the CSV file
+     */
+    private static final String[] NAMES = {
+            "plain",
+            "comma, and \"quotes\"",
+            "line\nbreak",
+            "Café € 📚"};
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mInventory = new TestInventory("Export");
+        mContentResolver = mInventory.getContentResolver();
+    }
+
+    @After
+    public void deleteItems() {
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void exportIsReadOnly() throws IOException {
+        try {
+            mContentResolver.openOutputStream(InventoryEntry.CONTENT_EXPORT_URI);
+            fail("The export was opened for writing");
+        } catch (FileNotFoundException expected) {
+            // The export can only be read
+        }
+        try {
+            mContentResolver.openInputStream(InventoryEntry.CONTENT_URI);
+            fail("The inventory was opened as a file");
+        } catch (FileNotFoundException expected) {
+            // Only the export is a file
+        }
+    }
+
+    @Test
+    public void exportStartsWithHeader() throws IOException {
+        String export = new String(readExport(), "UTF-8");
+        assertTrue(export, export.startsWith("_id,name,price,quantity,supplier,supplierNumber,isbn\n"));
+    }
+
+    @Test
+    public void importOfExportGivesSameItems() throws IOException {
+        InventoryGenerator generator = new InventoryGenerator(System.currentTimeMillis());
+        List<ContentValues> items = new ArrayList<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            ContentValues values = mInventory.newItem(NAMES[i], 1005 + i * 100, 10 + i);
+            values.put(InventoryEntry.COLUMN_ISBN, generator.getIsbn(i));
+            Uri uri = mContentResolver.insert(InventoryEntry.CONTENT_URI, values);
+            assertNotNull(uri);
+            //The export has the stock after sales not compacted yet
+            if (i == 0) {
+                assertEquals(7, mInventory.sell(uri, 3));
+                values.put(InventoryEntry.COLUMN_QUANTITY, 7);
+            }
+            items.add(values);
+        }
+
+        //Keep the header and this test's records, and import them again
+        String csv = keepRecords(new String(readExport(), "UTF-8"), mInventory.getName(""));
+        mInventory.deleteItems();
+        assertEquals(0, mInventory.countItems());
+        InventoryImporter.Progress progress = new InventoryImporter(mContentResolver).importInventory(
+                new ByteArrayInputStream(csv.getBytes("UTF-8")), InventoryImporter.Format.CSV, null);
+        assertEquals(NAMES.length, progress.getRowsImported());
+        assertEquals(0, progress.getRowsRejected());
+
+        Cursor cursor = mContentResolver.query(InventoryEntry.CONTENT_URI, null,
+                mInventory.getSelection(), mInventory.getSelectionArgs(), InventoryEntry.COLUMN_ISBN);
+        assertNotNull(cursor);
+        try {
+            assertEquals(items.size(), cursor.getCount());
+            for (ContentValues expected : items) {
+                assertTrue(cursor.moveToNext());
+                for (String column : new String[]{InventoryEntry.COLUMN_PRODUCT_NAME, InventoryEntry.COLUMN_PRICE,
+                        InventoryEntry.COLUMN_QUANTITY, InventoryEntry.COLUMN_SUPPLIER_NAME,
+                        InventoryEntry.COLUMN_SUPPLIER_NUMBER, InventoryEntry.COLUMN_ISBN}) {
+                    assertEquals(column, expected.getAsString(column),
+                            cursor.getString(cursor.getColumnIndexOrThrow(column)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private byte[] readExport() throws IOException {
+        InputStream in = mContentResolver.openInputStream(InventoryEntry.CONTENT_EXPORT_URI);
+        assertNotNull(in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the header line of the CSV text and the records holding the given text. Line breaks
+     * inside quoted fields don't end a record.
+     */
+    private static String keepRecords(String csv, String text) {
+        StringBuilder kept = new StringBuilder();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n' && !quoted) {
+                String record = csv.substring(start, i + 1);
+                if (start == 0 || record.contains(text)) {
+                    kept.append(record);
+                }
+                start = i + 1;
+            }
+        }
+        return kept.toString();
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryImporter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link InventoryImporter} through the provider: invalid rows are counted and
+ * skipped, malformed files fail, quoted fields keep their text, and a large catalog is
+ * imported in full. The size of the large import can be set with an instrumentation argument,
+ * for example {@code -e importTestLines 100000}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryImportTest {
+
+    public static final String LOG_TAG = InventoryImportTest.class.getSimpleName();
+
+    private static final String ARGUMENT_LINES = "importTestLines";
+    private static final int DEFAULT_LINES = 500000;
+
+    private static final String HEADER = "name,price,quantity,supplier,supplierNumber,isbn\n";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mInventory = new TestInventory("Import");
+        mContentResolver = mInventory.getContentResolver();
+    }
+
+    @After
+    public void deleteItems() {
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void csvSkipsInvalidRows() throws IOException {
+        String csv = HEADER
+                + row("valid", "12.50", "3")
+                + "\n"
+                + mInventory.getName("too few fields") + ",1.00\n"
+                + row("bad price", "abc", "1")
+                + row("negative price", "-1", "1")
+                + row("bad quantity", "1.00", "x")
+                + ",1.00,1," + mInventory.getSupplier() + "," + TestInventory.SUPPLIER_NUMBER + ",\n"
+                + row("no supplier", "1.00", "1").replace(mInventory.getSupplier(), "")
+                + row("also valid", "0.99", "0");
+        InventoryImporter.Progress progress = importText(csv, InventoryImporter.Format.CSV);
+        assertEquals(8, progress.getRowsRead());
+        assertEquals(2, progress.getRowsImported());
+        assertEquals(6, progress.getRowsRejected());
+        assertEquals(2, mInventory.countItems());
+        assertEquals(1250, readLong("valid", InventoryEntry.COLUMN_PRICE));
+        assertEquals(0, readLong("also valid", InventoryEntry.COLUMN_QUANTITY));
+    }
+
+    @Test
+    public void csvKeepsQuotedFields() throws IOException {
+        String name = mInventory.getName("comma, \"quotes\" and\nline break");
+        String csv = "isbn,supplierNumber,supplier,quantity,price,name,unknown\r\n"
+                + ",\"" + TestInventory.SUPPLIER_NUMBER + "\",\"" + mInventory.getSupplier() + "\",2,\"3.00\",\""
+                + name.replace("\"", "\"\"") + "\",ignored\r\n";
+        InventoryImporter.Progress progress = importText(csv, InventoryImporter.Format.CSV);
+        assertEquals(1, progress.getRowsImported());
+        assertEquals(0, progress.getRowsRejected());
+
+        Cursor cursor = mContentResolver.query(InventoryEntry.CONTENT_URI,
+                new String[]{InventoryEntry.COLUMN_PRODUCT_NAME, InventoryEntry.COLUMN_PRICE},
+                mInventory.getSelection(), mInventory.getSelectionArgs(), null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(name, cursor.getString(0));
+            assertEquals(300, cursor.getLong(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void unterminatedQuoteFails() throws IOException {
+        String csv = HEADER + row("valid", "1.00", "1") + "\"" + mInventory.getName("never closed") + ",1.00\n";
+        try {
+            importText(csv, InventoryImporter.Format.CSV);
+            fail("Imported a file with an unterminated quoted field");
+        } catch (IOException expected) {
+            // The file is malformed
+        }
+    }
+
+    @Test
+    public void jsonSkipsInvalidRows() throws IOException {
+        String json = "["
+                + jsonItem("valid", "\"12.50\"", "3") + ","
+                + jsonItem("number price", "7", "\"4\"") + ","
+                + jsonItem("bad price", "\"abc\"", "1") + ","
+                + jsonItem("bad quantity", "\"1.00\"", "1.5") + ","
+                + "{\"name\": \"" + mInventory.getName("no supplier") + "\", \"price\": 1, \"quantity\": 1},"
+                + "{\"name\": null, \"price\": 1, \"quantity\": 1, \"supplier\": \"" + mInventory.getSupplier()
+                + "\", \"supplierNumber\": \"" + TestInventory.SUPPLIER_NUMBER + "\", \"unknown\": [1, {\"a\": 2}]}"
+                + "]";
+        InventoryImporter.Progress progress = importText(json, InventoryImporter.Format.JSON);
+        assertEquals(6, progress.getRowsRead());
+        assertEquals(2, progress.getRowsImported());
+        assertEquals(4, progress.getRowsRejected());
+        assertEquals(700, readLong("number price", InventoryEntry.COLUMN_PRICE));
+        assertEquals(4, readLong("number price", InventoryEntry.COLUMN_QUANTITY));
+    }
+
+    @Test
+    public void malformedJsonFails() {
+        for (String json : new String[]{
+                "[" + jsonItem("truncated", "1", "1"),
+                "[" + jsonItem("missing comma", "1", "1") + jsonItem("next", "1", "1") + "]",
+                "[{\"name\" \"no colon\"}]"}) {
+            try {
+                importText(json, InventoryImporter.Format.JSON);
+                fail("Imported malformed JSON " + json);
+            } catch (IOException expected) {
+                // The file is malformed
+            }
+        }
+    }
+
+    @Test
+    public void largeImport() throws IOException {
+        String linesArgument = InstrumentationRegistry.getArguments().getString(ARGUMENT_LINES);
+        int lines = linesArgument == null ? DEFAULT_LINES : Integer.parseInt(linesArgument);
+
+        InventoryImporter.Progress progress = new InventoryImporter(mContentResolver).importInventory(
+                new CatalogStream(lines), InventoryImporter.Format.CSV, null);
+        Log.i(LOG_TAG, "Import test: " + progress.getRowsImported() + " of " + lines + " lines in "
+                + progress.getElapsedMillis() + " ms, " + progress.getRowsPerSecond() + " per second");
+        assertEquals(lines, progress.getRowsRead());
+        assertEquals(lines, progress.getRowsImported());
+        assertEquals(0, progress.getRowsRejected());
+        assertEquals(lines, mInventory.countItems());
+    }
+
+    /**
+     * Returns a CSV line of an item of this test, in the columns of {@link #HEADER}
+     */
+    private String row(String name, String price, String quantity) {
+        return mInventory.getName(name) + "," + price + "," + quantity + "," + mInventory.getSupplier()
+                + "," + TestInventory.SUPPLIER_NUMBER + ",\n";
+    }
+
+    /**
+     * Returns a JSON object of an item of this test, with the price and quantity as given
+     */
+    private String jsonItem(String name, String price, String quantity) {
+        return "{\"name\": \"" + mInventory.getName(name) + "\", \"price\": " + price + ", \"quantity\": "
+                + quantity + ", \"supplier\": \"" + mInventory.getSupplier() + "\", \"supplierNumber\": \""
+                + TestInventory.SUPPLIER_NUMBER + "\"}";
+    }
+
+    private InventoryImporter.Progress importText(String text, InventoryImporter.Format format) throws IOException {
+        return new InventoryImporter(mContentResolver).importInventory(
+                new ByteArrayInputStream(text.getBytes(UTF_8)), format, null);
+    }
+
+    /**
+     * Returns a long column of the item of this test with the given short name
+     */
+    private long readLong(String name, String column) {
+        Cursor cursor = mContentResolver.query(InventoryEntry.CONTENT_URI, new String[]{column},
+                InventoryEntry.COLUMN_PRODUCT_NAME + " = ?", new String[]{mInventory.getName(name)}, null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * A CSV catalog of items of this test, made one line at a time as it is read, so that
+     * the test's memory stays the same for any number of lines
+     */
+    private class CatalogStream extends InputStream {
+
+        private final int mLines;
+        private int mLine = -1;
+        private byte[] mBytes = HEADER.getBytes(UTF_8);
+        private int mPosition;
+
+        CatalogStream(int lines) {
+            mLines = lines;
+        }
+
+        @Override
+        public int read() {
+            if (mPosition == mBytes.length) {
+                if (++mLine == mLines) {
+                    return -1;
+                }
+                mBytes = row("item " + mLine, (1 + mLine % 9000) + ".99", String.valueOf(mLine % 500))
+                        .getBytes(UTF_8);
+                mPosition = 0;
+            }
+            return mBytes[mPosition++] & 0xff;
+        }
+    }
+}
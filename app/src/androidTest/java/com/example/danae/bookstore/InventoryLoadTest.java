@@ -0,0 +1,288 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryGenerator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Load test of {@link com.example.danae.bookstore.data.InventoryProvider}: fills the inventory
+ * with generated items, then replays a mix of reads, sales and edits from several threads and
+ * logs the throughput and latency percentiles of each kind of operation, followed by the
+ * provider's own metrics.
+ * <p>
+ * The size of the run can be set with instrumentation arguments, for example
+ * {@code -e loadTestItems 1000000 -e loadTestThreads 16 -e loadTestOperations 5000}.
+ * The generated items are added to the test database and deleted at the end.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryLoadTest {
+
+    public static final String LOG_TAG = InventoryLoadTest.class.getSimpleName();
+
+    /**
+     * Instrumentation arguments and their defaults
+     */
+    private static final String ARGUMENT_ITEMS = "loadTestItems";
+    private static final String ARGUMENT_THREADS = "loadTestThreads";
+    private static final String ARGUMENT_OPERATIONS = "loadTestOperations";
+    private static final int DEFAULT_ITEMS = 10000;
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_OPERATIONS = 2000;
+
+    /**
+     * Seed of the items and of the workload, so that every run does the same work
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Share of the workload taken by each kind of operation, in percent: reads of a single item
+     * and of a page of the list, and sales. The rest are edits of an item's price.
+     */
+    private static final int ITEM_READ_PERCENT = 50;
+    private static final int PAGE_READ_PERCENT = 30;
+    private static final int SELL_PERCENT = 15;
+
+    /**
+     * Kinds of operation
+     */
+    private static final String[] OPERATIONS = {"item read", "page read", "sell", "edit"};
+    private static final int ITEM_READ = 0;
+    private static final int PAGE_READ = 1;
+    private static final int SELL = 2;
+    private static final int EDIT = 3;
+
+    /**
+     * Rows of one page of the list
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Items deleted by one delete, well under SQLite's limit of 999 arguments per statement
+     */
+    private static final int DELETE_CHUNK_SIZE = 500;
+
+    private ContentResolver mContentResolver;
+    private InventoryGenerator mGenerator;
+    private int mItems;
+    private long[] mIds;
+
+    @Before
+    public void fillInventory() {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        mItems = getArgument(arguments, ARGUMENT_ITEMS, DEFAULT_ITEMS);
+        mContentResolver = TestInventory.getContext().getContentResolver();
+        mGenerator = new InventoryGenerator(SEED);
+
+        long start = SystemClock.elapsedRealtime();
+        int inserted = mGenerator.insert(mContentResolver, mItems);
+        Log.i(LOG_TAG, "Load test: inserted " + inserted + " items in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+
+        //The generated items are one range of ISBNs
+        Cursor cursor = mContentResolver.query(InventoryEntry.CONTENT_URI, new String[]{InventoryEntry._ID},
+                InventoryEntry.COLUMN_ISBN + " BETWEEN ? AND ?",
+                new String[]{mGenerator.getIsbn(0), mGenerator.getIsbn(mItems - 1)}, null);
+        try {
+            mIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                mIds[i] = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(mItems, inserted);
+        assertEquals(mItems, mIds.length);
+    }
+
+    /**
+     * Delete the items found after filling the inventory, and nothing else
+     */
+    @After
+    public void deleteInventory() {
+        if (mIds == null) {
+            return;
+        }
+        for (int first = 0; first < mIds.length; first += DELETE_CHUNK_SIZE) {
+            int size = Math.min(DELETE_CHUNK_SIZE, mIds.length - first);
+            StringBuilder selection = new StringBuilder(InventoryEntry._ID + " IN (");
+            String[] selectionArgs = new String[size];
+            for (int i = 0; i < size; i++) {
+                selection.append(i == 0 ? "?" : ", ?");
+                selectionArgs[i] = String.valueOf(mIds[first + i]);
+            }
+            selection.append(')');
+            mContentResolver.delete(InventoryEntry.CONTENT_URI, selection.toString(), selectionArgs);
+        }
+    }
+
+    @Test
+    public void mixedWorkload() throws InterruptedException {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        int threads = getArgument(arguments, ARGUMENT_THREADS, DEFAULT_THREADS);
+        final int operations = getArgument(arguments, ARGUMENT_OPERATIONS, DEFAULT_OPERATIONS);
+
+        final List<long[][]> latencies = new ArrayList<>();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int thread = 0; thread < threads; thread++) {
+            final long[][] threadLatencies = new long[OPERATIONS.length][operations];
+            latencies.add(threadLatencies);
+            final Random random = new Random(SEED + thread);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int[] counts = new int[OPERATIONS.length];
+                    try {
+                        for (int i = 0; i < operations; i++) {
+                            int operation = pickOperation(random);
+                            long operationStart = System.nanoTime();
+                            try {
+                                runOperation(operation, random);
+                            } catch (RuntimeException e) {
+                                Log.e(LOG_TAG, "Load test: " + OPERATIONS[operation] + " failed", e);
+                                errors.incrementAndGet();
+                            }
+                            threadLatencies[operation][counts[operation]++] =
+                                    System.nanoTime() - operationStart;
+                        }
+                    } finally {
+                        for (int operation = 0; operation < OPERATIONS.length; operation++) {
+                            threadLatencies[operation] = Arrays.copyOf(threadLatencies[operation], counts[operation]);
+                        }
+                        done.countDown();
+                    }
+                }
+            }, "InventoryLoadTest-" + thread).start();
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+
+        report(latencies, threads * operations, elapsedNanos);
+        assertEquals(0, errors.get());
+    }
+
+    private static int pickOperation(Random random) {
+        int percent = random.nextInt(100);
+        if (percent < ITEM_READ_PERCENT) {
+            return ITEM_READ;
+        } else if (percent < ITEM_READ_PERCENT + PAGE_READ_PERCENT) {
+            return PAGE_READ;
+        } else if (percent < ITEM_READ_PERCENT + PAGE_READ_PERCENT + SELL_PERCENT) {
+            return SELL;
+        }
+        return EDIT;
+    }
+
+    private void runOperation(int operation, Random random) {
+        long id = mIds[random.nextInt(mIds.length)];
+        switch (operation) {
+            case ITEM_READ:
+                readAll(mContentResolver.query(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id),
+                        null, null, null, null));
+                break;
+            case PAGE_READ:
+                readAll(mContentResolver.query(InventoryEntry.CONTENT_URI.buildUpon()
+                                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_ID, String.valueOf(id))
+                                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE))
+                                .build(),
+                        null, null, null, null));
+                break;
+            case SELL:
+                mContentResolver.call(InventoryEntry.CONTENT_URI, InventoryContract.METHOD_SELL,
+                        String.valueOf(id), null);
+                break;
+            case EDIT:
+                ContentValues values = new ContentValues();
+                InventoryEntry.putPrice(values, 99 + random.nextInt(5000));
+                mContentResolver.update(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id),
+                        values, null, null);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    /**
+     * Read every column of every row, as a list or the editor would, then close the cursor
+     */
+    private static void readAll(Cursor cursor) {
+        try {
+            while (cursor.moveToNext()) {
+                for (int column = 0; column < cursor.getColumnCount(); column++) {
+                    cursor.getString(column);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Log the throughput of the whole run and the latencies of each kind of operation, then the
+     * provider's metrics
+     */
+    private void report(List<long[][]> latencies, int operations, long elapsedNanos) {
+        Log.i(LOG_TAG, String.format("Load test: %d operations on %d threads in %d ms, %.0f per second",
+                operations, latencies.size(), elapsedNanos / 1000000, operations * 1e9 / elapsedNanos));
+        for (int operation = 0; operation < OPERATIONS.length; operation++) {
+            long[] all = new long[0];
+            for (long[][] threadLatencies : latencies) {
+                long[] more = threadLatencies[operation];
+                all = Arrays.copyOf(all, all.length + more.length);
+                System.arraycopy(more, 0, all, all.length - more.length, more.length);
+            }
+            if (all.length == 0) {
+                continue;
+            }
+            Arrays.sort(all);
+            Log.i(LOG_TAG, String.format("Load test: %s x%d, p50 %d us, p99 %d us, p99.9 %d us, max %d us",
+                    OPERATIONS[operation], all.length, percentile(all, 0.5), percentile(all, 0.99),
+                    percentile(all, 0.999), all[all.length - 1] / 1000));
+        }
+
+        Bundle metrics = mContentResolver.call(InventoryEntry.CONTENT_URI, InventoryContract.METHOD_METRICS, null, null);
+        for (String key : metrics.keySet()) {
+            Bundle stats = metrics.getBundle(key);
+            Log.i(LOG_TAG, "Provider metrics: " + key + " count " + stats.getLong(InventoryContract.EXTRA_METRICS_COUNT)
+                    + ", p99 " + stats.getLong(InventoryContract.EXTRA_METRICS_LATENCY_P99) + " us");
+        }
+    }
+
+    /**
+     * Returns the given percentile of sorted latencies, in microseconds
+     */
+    private static long percentile(long[] sortedNanos, double fraction) {
+        int index = (int) Math.ceil(sortedNanos.length * fraction) - 1;
+        return sortedNanos[Math.max(0, index)] / 1000;
+    }
+
+    private static int getArgument(Bundle arguments, String name, int defaultValue) {
+        String value = arguments.getString(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that coalescing the provider's change notifications never loses one: many changes of
+ * the inventory reach the listeners of single items through one notification of the whole
+ * inventory, and changes of suppliers reach their own listeners even when the inventory changed
+ * in the same window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryNotificationTest {
+
+    /**
+     * How long to wait for a notification, well over the notifier's coalescing window
+     */
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * Items changed at once, more than the notifier sends one by one
+     */
+    private static final int MANY_ITEMS = 20;
+
+    /**
+     * How long the notifications of earlier writes take to go out, a few coalescing windows
+     */
+    private static final long SETTLE_MILLIS = 500;
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+    private HandlerThread mObserverThread;
+    private final List<ContentObserver> mObservers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mInventory = new TestInventory("Notification");
+        mContentResolver = mInventory.getContentResolver();
+        mObserverThread = new HandlerThread(InventoryNotificationTest.class.getSimpleName());
+        mObserverThread.start();
+    }
+
+    @After
+    public void tearDown() {
+        for (ContentObserver observer : mObservers) {
+            mContentResolver.unregisterContentObserver(observer);
+        }
+        mObserverThread.quit();
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void supplierChangeReachesSupplierObserver() throws InterruptedException {
+        Uri item = mInventory.insertItem("item", 100, 1);
+        Uri supplier = ContentUris.withAppendedId(SupplierEntry.CONTENT_URI,
+                mInventory.readLong(item, InventoryEntry.COLUMN_SUPPLIER_ID));
+        CountDownLatch supplierChanged = observe(supplier);
+        CountDownLatch inventoryChanged = observe(InventoryEntry.CONTENT_URI);
+
+        //Renaming the supplier changes both the supplier and the whole inventory in one window
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, mInventory.getSupplier() + " renamed");
+        assertEquals(1, mContentResolver.update(supplier, values, null, null));
+        assertTrue(supplierChanged.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(inventoryChanged.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void manyItemChangesReachItemObserver() throws InterruptedException {
+        List<Uri> items = new ArrayList<>();
+        for (int i = 0; i < MANY_ITEMS; i++) {
+            items.add(mInventory.insertItem("item " + i, 100, 1));
+        }
+        //Let the notification of the inserts go out first, so that only the updates can count down
+        SystemClock.sleep(SETTLE_MILLIS);
+        CountDownLatch itemChanged = observe(items.get(0));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_QUANTITY, 2);
+        for (Uri item : items) {
+            assertEquals(1, mContentResolver.update(item, values, null, null));
+        }
+        assertTrue(itemChanged.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Register an observer of the URI, and return a latch released by its first notification
+     */
+    private CountDownLatch observe(Uri uri) {
+        final CountDownLatch changed = new CountDownLatch(1);
+        ContentObserver observer = new ContentObserver(new Handler(mObserverThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changed.countDown();
+            }
+        };
+        mContentResolver.registerContentObserver(uri, false, observer);
+        mObservers.add(observer);
+        return changed;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.danae.bookstore;
+
+import android.app.Instrumentation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryGenerator;
+import com.example.danae.bookstore.data.InventoryItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link InventoryPagedList}: reading across page boundaries, dropping pages far from
+ * the one shown, and following changes to the inventory. The list shows the whole inventory,
+ * so each test replaces the inventory of the test database with generated items.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryPagedListTest {
+
+    private static final int PAGE_SIZE = InventoryPagedList.PAGE_SIZE;
+
+    /**
+     * Three full pages and a partial one
+     */
+    private static final int ITEMS = 3 * PAGE_SIZE + 10;
+
+    /**
+     * Longer than the provider waits to coalesce its change notifications
+     */
+    private static final long NOTIFICATION_DELAY_MILLIS = 500;
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private Instrumentation mInstrumentation;
+    private ContentResolver mContentResolver;
+    private InventoryPagedList mList;
+
+    /**
+     * Callbacks of the list, in the order they arrived
+     */
+    private final BlockingQueue<String> mEvents = new LinkedBlockingQueue<>();
+
+    @Before
+    public void createList() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mContentResolver = TestInventory.getContext().getContentResolver();
+        mContentResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+        new InventoryGenerator(11).insert(mContentResolver, ITEMS);
+        //Let the notifications of the inserts go out before the list starts listening
+        SystemClock.sleep(NOTIFICATION_DELAY_MILLIS);
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mList = new InventoryPagedList(mContentResolver, new RecordingCallback());
+            }
+        });
+        awaitEvent("list");
+        assertEquals(ITEMS, getCount());
+    }
+
+    @After
+    public void deleteItems() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mList.close();
+            }
+        });
+        mContentResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void itemsContinueAcrossPageBoundaries() {
+        InventoryItem previous = awaitItem(0);
+        for (int position = 1; position < ITEMS; position++) {
+            InventoryItem item = awaitItem(position);
+            assertTrue("Items out of order at " + position, item.getId() > previous.getId());
+            previous = item;
+        }
+        //Past the end of the partial last page there is nothing to load
+        assertNull(getItem(ITEMS));
+    }
+
+    @Test
+    public void pagesFarFromTheShownPageAreDropped() {
+        awaitItem(0);
+        awaitItem(3 * PAGE_SIZE);
+        //More than two pages away from page 3, so page 0 has to be loaded again
+        assertNull(getItem(0));
+        assertNotNull(awaitItem(0));
+    }
+
+    @Test
+    public void changedItemIsUpdatedInPlace() {
+        //Sell from the first item on the first page that has stock
+        int position = 0;
+        InventoryItem item = awaitItem(position);
+        while (item.getQuantity() == 0) {
+            item = awaitItem(++position);
+        }
+        mEvents.clear();
+
+        mContentResolver.call(InventoryEntry.CONTENT_URI, InventoryContract.METHOD_SELL,
+                String.valueOf(item.getId()), null);
+        awaitEvent("changed " + position);
+        assertEquals(item.getQuantity() - 1, getItem(position).getQuantity());
+        assertEquals(ITEMS, getCount());
+    }
+
+    @Test
+    public void deletedItemIsRemoved() {
+        InventoryItem deleted = awaitItem(1);
+        InventoryItem next = awaitItem(2);
+        mEvents.clear();
+
+        mContentResolver.delete(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, deleted.getId()),
+                null, null);
+        awaitEvent("removed 1 1");
+        assertEquals(ITEMS - 1, getCount());
+        assertEquals(next.getId(), getItem(1).getId());
+    }
+
+    /**
+     * Returns the item at the given position, waiting for its page to load if needed
+     */
+    private InventoryItem awaitItem(int position) {
+        long deadline = SystemClock.elapsedRealtime() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (SystemClock.elapsedRealtime() < deadline) {
+            InventoryItem item = getItem(position);
+            if (item != null) {
+                return item;
+            }
+            SystemClock.sleep(10);
+        }
+        throw new AssertionError("Item " + position + " didn't load");
+    }
+
+    /**
+     * Wait for the given callback of the list, skipping the others
+     */
+    private void awaitEvent(String expected) {
+        long deadline = SystemClock.elapsedRealtime() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        try {
+            while (SystemClock.elapsedRealtime() < deadline) {
+                String event = mEvents.poll(deadline - SystemClock.elapsedRealtime(), TimeUnit.MILLISECONDS);
+                if (expected.equals(event)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fail("No \"" + expected + "\" callback");
+    }
+
+    private InventoryItem getItem(final int position) {
+        final InventoryItem[] item = new InventoryItem[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                item[0] = mList.getItem(position);
+            }
+        });
+        return item[0];
+    }
+
+    private int getCount() {
+        final int[] count = new int[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                count[0] = mList.getCount();
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Records each callback as a short string, such as "removed 1 1" for one item removed at position 1
+     */
+    private class RecordingCallback implements InventoryPagedList.Callback {
+
+        @Override
+        public void onListChanged() {
+            mEvents.add("list");
+        }
+
+        @Override
+        public void onPageLoaded(int page) {
+            mEvents.add("page " + page);
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mEvents.add("inserted " + position + " " + count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mEvents.add("removed " + position + " " + count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mEvents.add("moved " + fromPosition + " " + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            mEvents.add("changed " + position);
+        }
+    }
+}
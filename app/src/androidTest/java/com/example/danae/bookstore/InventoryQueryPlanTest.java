@@ -0,0 +1,124 @@
+package com.example.danae.bookstore;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SupplierEntry;
+import com.example.danae.bookstore.data.InventoryDbHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the provider's lookups by supplier, by ISBN and of the
+ * low stock items use their indexes instead of reading the whole inventory. The queries have
+ * the same tables, filters and order as the ones the provider builds.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryQueryPlanTest {
+
+    private InventoryDbHelper mDbHelper;
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void openDatabase() {
+        //Opened through the application under test, so that this is the test database
+        mDbHelper = new InventoryDbHelper(TestInventory.getContext());
+        mDatabase = mDbHelper.getReadableDatabase();
+    }
+
+    @After
+    public void closeDatabase() {
+        mDbHelper.close();
+    }
+
+    @Test
+    public void supplierLookupUsesIndexes() {
+        //The items of a supplier given by name and number, as a list filtered by supplier reads them
+        List<String> plan = explain("SELECT " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+                        + " FROM " + InventoryEntry.TABLE_NAME + " JOIN " + SupplierEntry.TABLE_NAME
+                        + " USING (" + InventoryEntry.COLUMN_SUPPLIER_ID + ")"
+                        + " WHERE " + InventoryEntry.COLUMN_SUPPLIER_NAME + " = ?"
+                        + " AND " + InventoryEntry.COLUMN_SUPPLIER_NUMBER + " = ?",
+                "Atlas Books 1", "5550000000");
+        assertUsesIndex(plan, "sqlite_autoindex_" + SupplierEntry.TABLE_NAME + "_1");
+        assertUsesIndex(plan, "inventory_supplier_id_index");
+        assertNoFullScan(plan);
+    }
+
+    @Test
+    public void isbnLookupUsesIndex() {
+        List<String> plan = explain("SELECT " + InventoryEntry._ID + " FROM " + InventoryEntry.TABLE_NAME
+                + " WHERE " + InventoryEntry.COLUMN_ISBN + " = ?", "9780000000002");
+        assertUsesIndex(plan, "inventory_isbn_index");
+        assertNoFullScan(plan);
+    }
+
+    @Test
+    public void lowStockUsesIndexes() {
+        //Items whose compacted stock is low, or that have sales not compacted yet and whose
+        //current stock is low. The current stock is the stored quantity less the pending sales.
+        String pendingSales = "SELECT IFNULL(SUM(quantity), 0) FROM sales_events"
+                + " WHERE item_id = inventory._id AND _id > (SELECT last_event_id FROM sales_compaction)";
+        String currentQuantity = InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_QUANTITY
+                + " - (" + pendingSales + ")";
+        List<String> plan = explain("SELECT " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+                + " FROM " + InventoryEntry.TABLE_NAME
+                + " WHERE (" + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_QUANTITY + " < ?"
+                + " OR " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " IN (SELECT item_id"
+                + " FROM sales_events WHERE _id > (SELECT last_event_id FROM sales_compaction))"
+                + " AND " + currentQuantity + " < ?)"
+                + " ORDER BY " + currentQuantity + ", " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID,
+                "5", "5");
+        //The few low stock items are sorted by current stock after they are found
+        assertUsesIndex(plan, "inventory_quantity_index");
+        assertNoFullScan(plan);
+    }
+
+    /**
+     * Returns the detail of each step of the query's plan
+     */
+    private List<String> explain(String sql, String... selectionArgs) {
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = mDatabase.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan;
+    }
+
+    private static void assertUsesIndex(List<String> plan, String index) {
+        for (String step : plan) {
+            if (step.contains("INDEX " + index)) {
+                return;
+            }
+        }
+        throw new AssertionError("Plan doesn't use " + index + ": " + plan);
+    }
+
+    /**
+     * Older SQLite versions write "SCAN TABLE inventory", newer ones "SCAN inventory". A scan of
+     * an index names the index.
+     */
+    private static void assertNoFullScan(List<String> plan) {
+        for (String step : plan) {
+            boolean scansInventory = step.startsWith("SCAN TABLE " + InventoryEntry.TABLE_NAME)
+                    || step.startsWith("SCAN " + InventoryEntry.TABLE_NAME);
+            assertTrue("Full scan: " + plan, !scansInventory || step.contains("INDEX"));
+        }
+    }
+}
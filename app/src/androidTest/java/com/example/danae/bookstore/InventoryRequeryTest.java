@@ -0,0 +1,152 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the requeries the catalog list makes for quick sales. Before row-level notifications,
+ * every sale notified the URI it was given and the catalog's cursor loader requeried the whole
+ * list, so each sale cost one whole-list requery. Here an observer of the inventory and its
+ * descendants, like the catalog's paged list, counts the notifications of item URIs, which
+ * re-read one item, and of anything else, which re-read the loaded pages; both are logged per
+ * 1,000 sales.
+ * <p>
+ * The number of sales can be set with an instrumentation argument, for example
+ * {@code -e requeryTestSales 200}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryRequeryTest {
+
+    public static final String LOG_TAG = InventoryRequeryTest.class.getSimpleName();
+
+    private static final String ARGUMENT_SALES = "requeryTestSales";
+    private static final int DEFAULT_SALES = 1000;
+
+    /**
+     * Items the sales are spread over, more than the notifier sends one by one
+     */
+    private static final int ITEMS = 20;
+
+    /**
+     * Time between sales rung up one at a time, longer than the notifier's coalescing window
+     */
+    private static final long PACED_SALE_MILLIS = 100;
+
+    /**
+     * How long the notifications of earlier writes take to go out, a few coalescing windows
+     */
+    private static final long SETTLE_MILLIS = 500;
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+    private HandlerThread mObserverThread;
+    private ContentObserver mObserver;
+    private final List<Uri> mItems = new ArrayList<>();
+    private final AtomicInteger mItemRequeries = new AtomicInteger();
+    private final AtomicInteger mListRequeries = new AtomicInteger();
+    private int mSales;
+
+    @Before
+    public void setUp() {
+        mInventory = new TestInventory("Requery");
+        mContentResolver = mInventory.getContentResolver();
+        String salesArgument = InstrumentationRegistry.getArguments().getString(ARGUMENT_SALES);
+        mSales = salesArgument == null ? DEFAULT_SALES : Integer.parseInt(salesArgument);
+        for (int i = 0; i < ITEMS; i++) {
+            mItems.add(mInventory.insertItem("item " + i, 100, mSales));
+        }
+
+        //Only count the notifications of the sales, not of the inserts
+        SystemClock.sleep(SETTLE_MILLIS);
+        mObserverThread = new HandlerThread(LOG_TAG);
+        mObserverThread.start();
+        mObserver = new ContentObserver(new Handler(mObserverThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mListRequeries.incrementAndGet();
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                if (uri != null && isItemUri(uri)) {
+                    mItemRequeries.incrementAndGet();
+                } else {
+                    mListRequeries.incrementAndGet();
+                }
+            }
+        };
+        mContentResolver.registerContentObserver(InventoryEntry.CONTENT_URI, true, mObserver);
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.unregisterContentObserver(mObserver);
+        mObserverThread.quit();
+        mInventory.deleteItems();
+    }
+
+    /**
+     * Sales rung up one at a time each re-read only the item sold
+     */
+    @Test
+    public void pacedSales() {
+        for (int sale = 0; sale < mSales; sale++) {
+            assertTrue(mInventory.sell(mItems.get(sale % ITEMS), 1) >= 0);
+            SystemClock.sleep(PACED_SALE_MILLIS);
+        }
+        SystemClock.sleep(SETTLE_MILLIS);
+        log("paced");
+        assertEquals(0, mListRequeries.get());
+        assertTrue(mItemRequeries.get() <= mSales);
+    }
+
+    /**
+     * Sales rung up back to back are coalesced into far fewer notifications than sales
+     */
+    @Test
+    public void burstOfSales() {
+        for (int sale = 0; sale < mSales; sale++) {
+            assertTrue(mInventory.sell(mItems.get(sale % ITEMS), 1) >= 0);
+        }
+        SystemClock.sleep(SETTLE_MILLIS);
+        log("back to back");
+        assertTrue(mListRequeries.get() + mItemRequeries.get() < mSales);
+    }
+
+    private void log(String pace) {
+        double per1000 = 1000.0 / mSales;
+        Log.i(LOG_TAG, String.format("Requery test, %d sales %s: %.0f whole-list and %.0f single-item requeries"
+                        + " per 1,000 sales, against 1,000 whole-list requeries before",
+                mSales, pace, mListRequeries.get() * per1000, mItemRequeries.get() * per1000));
+    }
+
+    /**
+     * Returns true if the URI is that of a single item, as the catalog's paged list tells them apart
+     */
+    private static boolean isItemUri(Uri uri) {
+        String lastSegment = uri.getLastPathSegment();
+        return lastSegment != null && lastSegment.matches("\\d+")
+                && uri.getPathSegments().size() == InventoryEntry.CONTENT_URI.getPathSegments().size() + 1;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the full-text search of the inventory: items are found by the words of their name and
+ * supplier, and the search table follows inserts, updates, deletes and supplier renames.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventorySearchTest {
+
+    private ContentResolver mContentResolver;
+
+    /**
+     * Words that no other item uses, so that only the items of the test match them
+     */
+    private String mTitleWord;
+    private String mSupplierWord;
+
+    private Uri mItemUri;
+
+    @Before
+    public void insertItem() {
+        mContentResolver = TestInventory.getContext().getContentResolver();
+        long unique = System.currentTimeMillis();
+        mTitleWord = "Quokka" + unique;
+        mSupplierWord = "Wombat" + unique;
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "The " + mTitleWord + " Garden");
+        InventoryEntry.putPrice(values, 1299);
+        values.put(InventoryEntry.COLUMN_QUANTITY, 3);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, mSupplierWord + " Press");
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, "5550002222");
+        mItemUri = mContentResolver.insert(InventoryEntry.CONTENT_URI, values);
+        assertNotNull(mItemUri);
+    }
+
+    @After
+    public void deleteItem() {
+        mContentResolver.delete(mItemUri, null, null);
+    }
+
+    @Test
+    public void findsItemByNameAndSupplier() {
+        long id = ContentUris.parseId(mItemUri);
+        assertEquals(single(id), search(mTitleWord));
+        assertEquals(single(id), search(mSupplierWord));
+        //Words match by prefix, in any case, and every word must match
+        assertEquals(single(id), search(mTitleWord.toLowerCase().substring(0, mTitleWord.length() - 2)));
+        assertEquals(single(id), search("garden " + mSupplierWord));
+        assertTrue(search(mTitleWord + " Nonexistentword").isEmpty());
+    }
+
+    @Test
+    public void followsRenamedItem() {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "Renamed " + mTitleWord + "x");
+        assertEquals(1, mContentResolver.update(mItemUri, values, null, null));
+
+        assertTrue(search("garden " + mTitleWord).isEmpty());
+        assertEquals(single(ContentUris.parseId(mItemUri)), search("renamed " + mTitleWord + "x"));
+    }
+
+    @Test
+    public void followsRenamedSupplier() {
+        String newSupplierWord = "Numbat" + mSupplierWord.substring("Wombat".length());
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, newSupplierWord + " Press");
+        assertEquals(1, mContentResolver.update(
+                ContentUris.withAppendedId(SupplierEntry.CONTENT_URI, readSupplierId()), values, null, null));
+
+        assertTrue(search(mSupplierWord).isEmpty());
+        assertEquals(single(ContentUris.parseId(mItemUri)), search(newSupplierWord));
+    }
+
+    @Test
+    public void forgetsDeletedItem() {
+        assertEquals(1, mContentResolver.delete(mItemUri, null, null));
+        assertTrue(search(mTitleWord).isEmpty());
+        assertTrue(search(mSupplierWord).isEmpty());
+    }
+
+    /**
+     * Returns the IDs of the items matching the search words, best match first
+     */
+    private List<Long> search(String words) {
+        Uri uri = InventoryEntry.CONTENT_SEARCH_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_SEARCH, words)
+                .build();
+        Cursor cursor = mContentResolver.query(uri, new String[]{InventoryEntry._ID}, null, null, null);
+        assertNotNull(cursor);
+        List<Long> ids = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private long readSupplierId() {
+        Cursor cursor = mContentResolver.query(mItemUri, new String[]{InventoryEntry.COLUMN_SUPPLIER_ID},
+                null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<Long> single(long id) {
+        List<Long> ids = new ArrayList<>();
+        ids.add(id);
+        return ids;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the writes the inventory provider runs with its precompiled statements: inserting,
+ * restocking by ISBN, updating and selling an item.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryStatementsTest {
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+
+    /**
+     * Name and ISBN that no other item uses
+     */
+    private String mName;
+    private String mIsbn;
+
+    private Uri mItemUri;
+
+    @Before
+    public void insertItem() {
+        mInventory = new TestInventory("Statements");
+        mContentResolver = mInventory.getContentResolver();
+        mName = mInventory.getName("item");
+        mIsbn = "979" + System.currentTimeMillis();
+
+        ContentValues values = newItem();
+        values.put(InventoryEntry.COLUMN_ISBN, mIsbn);
+        mItemUri = mContentResolver.insert(InventoryEntry.CONTENT_URI, values);
+        assertNotNull(mItemUri);
+    }
+
+    @After
+    public void deleteItem() {
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void insertKeepsEveryColumn() {
+        Cursor cursor = mContentResolver.query(mItemUri, new String[]{InventoryEntry.COLUMN_PRODUCT_NAME,
+                InventoryEntry.COLUMN_PRICE, InventoryEntry.COLUMN_QUANTITY, InventoryEntry.COLUMN_SUPPLIER_NAME,
+                InventoryEntry.COLUMN_SUPPLIER_NUMBER, InventoryEntry.COLUMN_ISBN}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(mName, cursor.getString(0));
+            assertEquals(1450, cursor.getLong(1));
+            assertEquals(4, cursor.getInt(2));
+            assertEquals(mInventory.getSupplier(), cursor.getString(3));
+            assertEquals(TestInventory.SUPPLIER_NUMBER, cursor.getString(4));
+            assertEquals(mIsbn, cursor.getString(5));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upsertRestocksByIsbn() {
+        ContentValues restock = new ContentValues();
+        restock.put(InventoryEntry.COLUMN_ISBN, mIsbn);
+        restock.put(InventoryEntry.COLUMN_QUANTITY, 6);
+        InventoryEntry.putPrice(restock, 1600);
+        assertEquals(1, mContentResolver.bulkInsert(InventoryEntry.CONTENT_UPSERT_URI, new ContentValues[]{restock}));
+        //The quantity is added to the stock and the price replaced
+        assertEquals(10, readQuantity());
+        assertEquals(1600, readPrice());
+
+        //Without a price, only the stock changes
+        restock.remove(InventoryEntry.COLUMN_PRICE);
+        assertEquals(1, mContentResolver.bulkInsert(InventoryEntry.CONTENT_UPSERT_URI, new ContentValues[]{restock}));
+        assertEquals(16, readQuantity());
+        assertEquals(1600, readPrice());
+    }
+
+    @Test
+    public void upsertOfUnknownIsbnNeedsFullItem() {
+        ContentValues restock = new ContentValues();
+        restock.put(InventoryEntry.COLUMN_ISBN, mIsbn + "0");
+        restock.put(InventoryEntry.COLUMN_QUANTITY, 6);
+        try {
+            mContentResolver.bulkInsert(InventoryEntry.CONTENT_UPSERT_URI, new ContentValues[]{restock});
+            fail("An ISBN that isn't in the inventory was restocked");
+        } catch (IllegalArgumentException e) {
+            //Expected
+        }
+        assertEquals(4, readQuantity());
+    }
+
+    @Test
+    public void updateReplacesItem() {
+        ContentValues values = newItem();
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, mName + " updated");
+        InventoryEntry.putPrice(values, 999);
+        values.put(InventoryEntry.COLUMN_QUANTITY, 12);
+        assertEquals(1, mContentResolver.update(mItemUri, values, null, null));
+        assertEquals(12, readQuantity());
+        assertEquals(999, readPrice());
+
+        //A single column can be updated on its own too
+        ContentValues quantity = new ContentValues();
+        quantity.put(InventoryEntry.COLUMN_QUANTITY, 7);
+        assertEquals(1, mContentResolver.update(mItemUri, quantity, null, null));
+        assertEquals(7, readQuantity());
+        assertEquals(999, readPrice());
+    }
+
+    @Test
+    public void sellDecrementsStock() {
+        assertEquals(3, sell(1));
+        assertEquals(0, sell(3));
+        assertEquals(0, readQuantity());
+    }
+
+    @Test
+    public void sellWithoutEnoughStockChangesNothing() {
+        assertEquals(-1, sell(5));
+        assertEquals(4, readQuantity());
+    }
+
+    private int sell(int quantity) {
+        return mInventory.sell(mItemUri, quantity);
+    }
+
+    private ContentValues newItem() {
+        return mInventory.newItem("item", 1450, 4);
+    }
+
+    private int readQuantity() {
+        return mInventory.readQuantity(mItemUri);
+    }
+
+    private long readPrice() {
+        return mInventory.readLong(mItemUri, InventoryEntry.COLUMN_PRICE);
+    }
+}
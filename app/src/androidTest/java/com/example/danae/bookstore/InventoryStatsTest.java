@@ -0,0 +1,174 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the inventory totals and the low stock items. The totals cover the whole inventory,
+ * so the tests compare them before and after their own writes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryStatsTest {
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mInventory = new TestInventory("Stats");
+        mContentResolver = mInventory.getContentResolver();
+    }
+
+    @After
+    public void deleteItems() {
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void totalsFollowWrites() {
+        long[] before = readStats();
+        Uri first = insertItem("first", 1250, 3);
+        insertItem("second", 800, 10);
+        assertArrayEquals(new long[]{before[0] + 2, before[1] + 13, before[2] + 3 * 1250 + 10 * 800}, readStats());
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_QUANTITY, 5);
+        assertEquals(1, mContentResolver.update(first, values, null, null));
+        assertArrayEquals(new long[]{before[0] + 2, before[1] + 15, before[2] + 5 * 1250 + 10 * 800}, readStats());
+
+        //Sales show in the totals right away
+        sell(first, 2);
+        assertArrayEquals(new long[]{before[0] + 2, before[1] + 13, before[2] + 3 * 1250 + 10 * 800}, readStats());
+
+        assertEquals(1, mContentResolver.delete(first, null, null));
+        assertArrayEquals(new long[]{before[0] + 1, before[1] + 10, before[2] + 10 * 800}, readStats());
+    }
+
+    @Test
+    public void lowStockIsLowestFirst() {
+        Uri six = insertItem("six", 100, 6);
+        Uri none = insertItem("none", 100, 0);
+        Uri four = insertItem("four", 100, 4);
+        Uri two = insertItem("two", 100, 2);
+
+        //Fewer than 5 units by default
+        assertEquals(ids(none, two, four), queryLowStock(null));
+        assertEquals(ids(none, two), queryLowStock("3"));
+        assertEquals(ids(none, two, four, six), queryLowStock("7"));
+        assertTrue(queryLowStock("0").isEmpty());
+
+        //A sale can bring an item into the low stock items, and items with the same stock are
+        //in the order they were added
+        sell(six, 2);
+        assertEquals(ids(none, two, six, four), queryLowStock(null));
+    }
+
+    @Test
+    public void selectionAndSortUseCurrentStock() {
+        Uri five = insertItem("five", 100, 5);
+        Uri three = insertItem("three", 100, 3);
+        sell(five, 4);
+
+        //The sale isn't compacted yet, so only the current stock puts the item first
+        assertEquals(ids(five), queryInventory(InventoryEntry.COLUMN_QUANTITY + " < 2", "2", null));
+        assertEquals(ids(five, three), queryInventory(null, null, InventoryEntry.COLUMN_QUANTITY));
+        assertEquals(ids(three, five), queryInventory(null, null, InventoryEntry.COLUMN_QUANTITY + " DESC"));
+    }
+
+    private Uri insertItem(String name, long priceCents, int quantity) {
+        return mInventory.insertItem(name, priceCents, quantity);
+    }
+
+    private void sell(Uri itemUri, int quantity) {
+        assertTrue(mInventory.sell(itemUri, quantity) >= 0);
+    }
+
+    /**
+     * Returns the item count, total units and total value of the whole inventory
+     */
+    private long[] readStats() {
+        Cursor cursor = mContentResolver.query(InventoryEntry.CONTENT_STATS_URI, null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            return new long[]{
+                    cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_ITEM_COUNT)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_TOTAL_UNITS)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_TOTAL_VALUE))};
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the IDs of this test's items with fewer units than the threshold, in order
+     */
+    private List<Long> queryLowStock(String threshold) {
+        Uri uri = InventoryEntry.CONTENT_LOW_STOCK_URI;
+        if (threshold != null) {
+            uri = uri.buildUpon().appendQueryParameter(InventoryContract.QUERY_PARAMETER_THRESHOLD, threshold).build();
+        }
+        return readIds(mContentResolver.query(uri, new String[]{InventoryEntry._ID},
+                mInventory.getSelection(), mInventory.getSelectionArgs(), null));
+    }
+
+    /**
+     * Returns the IDs of this test's items that match the selection on one argument, if any, in
+     * the sort order
+     */
+    private List<Long> queryInventory(String selection, String selectionArg, String sortOrder) {
+        String[] selectionArgs = mInventory.getSelectionArgs();
+        String testSelection = mInventory.getSelection();
+        if (selection != null) {
+            testSelection = selection + " AND " + testSelection;
+            String[] args = new String[selectionArgs.length + 1];
+            args[0] = selectionArg;
+            System.arraycopy(selectionArgs, 0, args, 1, selectionArgs.length);
+            selectionArgs = args;
+        }
+        return readIds(mContentResolver.query(InventoryEntry.CONTENT_URI, new String[]{InventoryEntry._ID},
+                testSelection, selectionArgs, sortOrder));
+    }
+
+    private static List<Long> readIds(Cursor cursor) {
+        assertNotNull(cursor);
+        List<Long> ids = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(Uri... itemUris) {
+        List<Long> ids = new ArrayList<>();
+        for (Uri itemUri : itemUris) {
+            ids.add(ContentUris.parseId(itemUri));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that the totals of each supplier follow inserts, updates and deletes of their items,
+ * and agree with the totals computed from the inventory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventorySupplierStatsTest {
+
+    private TestInventory mInventory;
+    private ContentResolver mContentResolver;
+
+    /**
+     * Suppliers that no other item uses
+     */
+    private String mAtlas;
+    private String mQuill;
+
+    @Before
+    public void setUp() {
+        mInventory = new TestInventory("Supplier stats");
+        mContentResolver = mInventory.getContentResolver();
+        long unique = System.currentTimeMillis();
+        mAtlas = "Atlas Books " + unique;
+        mQuill = "Quill Press " + unique;
+    }
+
+    @After
+    public void deleteItems() {
+        mInventory.deleteItems();
+    }
+
+    @Test
+    public void totalsFollowWrites() {
+        Uri night = insertItem(mAtlas, 1250, 3);
+        Uri winter = insertItem(mAtlas, 800, 10);
+        Uri road = insertItem(mQuill, 2000, 1);
+        assertArrayEquals(new long[]{2, 13, 3 * 1250 + 10 * 800}, readSupplierStats(mAtlas));
+        assertArrayEquals(new long[]{1, 1, 2000}, readSupplierStats(mQuill));
+
+        //A new price and stock
+        ContentValues values = new ContentValues();
+        InventoryEntry.putPrice(values, 1000);
+        values.put(InventoryEntry.COLUMN_QUANTITY, 4);
+        assertEquals(1, mContentResolver.update(night, values, null, null));
+        assertArrayEquals(new long[]{2, 14, 4 * 1000 + 10 * 800}, readSupplierStats(mAtlas));
+
+        //An item moving to another supplier
+        values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, mQuill);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, TestInventory.SUPPLIER_NUMBER);
+        assertEquals(1, mContentResolver.update(winter, values, null, null));
+        assertArrayEquals(new long[]{1, 4, 4 * 1000}, readSupplierStats(mAtlas));
+        assertArrayEquals(new long[]{2, 11, 2000 + 10 * 800}, readSupplierStats(mQuill));
+
+        //A supplier without items has no totals
+        assertEquals(1, mContentResolver.delete(night, null, null));
+        assertNull(readSupplierStats(mAtlas));
+        assertEquals(1, mContentResolver.delete(road, null, null));
+        assertArrayEquals(new long[]{1, 10, 10 * 800}, readSupplierStats(mQuill));
+
+        assertEquals(0, checkSupplierSummary());
+    }
+
+    private Uri insertItem(String supplier, long priceCents, int quantity) {
+        ContentValues values = mInventory.newItem("item", priceCents, quantity);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, supplier);
+        Uri uri = mContentResolver.insert(InventoryEntry.CONTENT_URI, values);
+        assertNotNull(uri);
+        return uri;
+    }
+
+    /**
+     * Returns the item count, total units and total value of the supplier, or null if it has no
+     * totals
+     */
+    private long[] readSupplierStats(String supplier) {
+        Cursor cursor = mContentResolver.query(InventoryEntry.CONTENT_SUPPLIER_STATS_URI, null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            int nameColumn = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_SUPPLIER_NAME);
+            while (cursor.moveToNext()) {
+                if (supplier.equals(cursor.getString(nameColumn))) {
+                    return new long[]{
+                            cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_ITEM_COUNT)),
+                            cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_TOTAL_UNITS)),
+                            cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_TOTAL_VALUE))};
+                }
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the number of supplier totals that differ from the totals computed from the inventory
+     */
+    private int checkSupplierSummary() {
+        Bundle result = mContentResolver.call(InventoryEntry.CONTENT_URI,
+                InventoryContract.METHOD_CHECK_SUPPLIER_SUMMARY, null, null);
+        assertNotNull(result);
+        return result.getInt(InventoryContract.EXTRA_MISMATCHES, -1);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.danae.bookstore;
+
+import android.app.Application;
+import android.content.Context;
+import android.support.test.runner.AndroidJUnitRunner;
+
+/**
+ * Runs the instrumented tests in {@link TestBookStoreApplication}, so that the inventory provider
+ * and everything else in the app under test use a database of their own instead of the app's.
+ */
+public class InventoryTestRunner extends AndroidJUnitRunner {
+
+    @Override
+    public Application newApplication(ClassLoader classLoader, String className, Context context)
+            throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        return super.newApplication(classLoader, TestBookStoreApplication.class.getName(), context);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.danae.bookstore;
+
+import android.database.DatabaseErrorHandler;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.File;
+
+/**
+ * Application the instrumented tests run in. It prefixes the name of every database the app
+ * opens, so that the tests write to test_inventory.db and never touch the inventory of the user.
+ * The inventory provider opens its database through the application, so every write of the
+ * tests, the activities and the provider ends up in the test database.
+ */
+public class TestBookStoreApplication extends BookStoreApplication {
+
+    /**
+     * Prefix of the names of the test databases
+     */
+    public static final String DATABASE_PREFIX = "test_";
+
+    @Override
+    public File getDatabasePath(String name) {
+        return super.getDatabasePath(toTestName(name));
+    }
+
+    @Override
+    public SQLiteDatabase openOrCreateDatabase(String name, int mode, SQLiteDatabase.CursorFactory factory) {
+        return super.openOrCreateDatabase(toTestName(name), mode, factory);
+    }
+
+    @Override
+    public SQLiteDatabase openOrCreateDatabase(String name, int mode, SQLiteDatabase.CursorFactory factory,
+                                               DatabaseErrorHandler errorHandler) {
+        return super.openOrCreateDatabase(toTestName(name), mode, factory, errorHandler);
+    }
+
+    @Override
+    public boolean deleteDatabase(String name) {
+        return super.deleteDatabase(toTestName(name));
+    }
+
+    /**
+     * Returns the name of the test database standing in for the given database. Absolute paths
+     * are left alone, since they don't name a database of the app.
+     */
+    private static String toTestName(String name) {
+        if (name.indexOf(File.separatorChar) != -1 || name.startsWith(DATABASE_PREFIX)) {
+            return name;
+        }
+        return DATABASE_PREFIX + name;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Items of one instrumented test, written and read through the inventory provider. Tests run in
+ * {@link TestBookStoreApplication}, so the items go to the test database, never the user's.
+ * Every item is named with a prefix of its own and sold by a supplier of its own, so that a
+ * test can tell its items from the rest of the inventory and {@link #deleteItems()} removes
+ * nothing else.
+ */
+public class TestInventory {
+
+    /**
+     * Phone number of the supplier of the items
+     */
+    public static final String SUPPLIER_NUMBER = "5550001111";
+
+    private final ContentResolver mContentResolver;
+    private final String mPrefix;
+    private final String mSupplier;
+
+    /**
+     * Prepare the items of a test
+     *
+     * @param test Short name of the test, used in the names of its items and supplier
+     */
+    public TestInventory(String test) {
+        mContentResolver = getContext().getContentResolver();
+        long unique = System.currentTimeMillis();
+        mPrefix = test + " test " + unique + " ";
+        mSupplier = test + " Books " + unique;
+    }
+
+    /**
+     * Returns the application under test, whose databases are the test databases
+     */
+    public static Context getContext() {
+        return InstrumentationRegistry.getTargetContext().getApplicationContext();
+    }
+
+    public ContentResolver getContentResolver() {
+        return mContentResolver;
+    }
+
+    /**
+     * Returns the full name of the item of this test with the given short name
+     */
+    public String getName(String name) {
+        return mPrefix + name;
+    }
+
+    public String getSupplier() {
+        return mSupplier;
+    }
+
+    /**
+     * Returns a selection matching every item of this test, with {@link #getSelectionArgs()}
+     */
+    public String getSelection() {
+        return InventoryEntry.COLUMN_PRODUCT_NAME + " LIKE ?";
+    }
+
+    public String[] getSelectionArgs() {
+        return new String[]{mPrefix + "%"};
+    }
+
+    /**
+     * Returns the values of a new item of this test
+     */
+    public ContentValues newItem(String name, long priceCents, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, getName(name));
+        InventoryEntry.putPrice(values, priceCents);
+        values.put(InventoryEntry.COLUMN_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, mSupplier);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, SUPPLIER_NUMBER);
+        return values;
+    }
+
+    /**
+     * Insert a new item of this test and return its URI
+     */
+    public Uri insertItem(String name, long priceCents, int quantity) {
+        Uri uri = mContentResolver.insert(InventoryEntry.CONTENT_URI, newItem(name, priceCents, quantity));
+        assertNotNull(uri);
+        return uri;
+    }
+
+    /**
+     * Returns the number of items of this test
+     */
+    public int countItems() {
+        Cursor cursor = mContentResolver.query(InventoryEntry.CONTENT_URI, new String[]{InventoryEntry._ID},
+                getSelection(), getSelectionArgs(), null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the stock of an item, or -1 if there is no such item
+     */
+    public int readQuantity(Uri itemUri) {
+        Cursor cursor = mContentResolver.query(itemUri, new String[]{InventoryEntry.COLUMN_QUANTITY},
+                null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns a long column of an item, which must exist
+     */
+    public long readLong(Uri itemUri, String column) {
+        Cursor cursor = mContentResolver.query(itemUri, new String[]{column}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Sell units of an item, and return its new stock, or -1 if there wasn't enough stock
+     */
+    public int sell(Uri itemUri, int quantity) {
+        Bundle extras = new Bundle();
+        extras.putInt(InventoryContract.EXTRA_QUANTITY, quantity);
+        Bundle result = mContentResolver.call(InventoryEntry.CONTENT_URI, InventoryContract.METHOD_SELL,
+                String.valueOf(ContentUris.parseId(itemUri)), extras);
+        assertNotNull(result);
+        return result.getInt(InventoryContract.EXTRA_QUANTITY, -1);
+    }
+
+    /**
+     * Delete every item of this test
+     */
+    public void deleteItems() {
+        mContentResolver.delete(InventoryEntry.CONTENT_URI, getSelection(), getSelectionArgs());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.danae.bookstore.data;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of {@link InventoryCache}: an item read from the database is only cached if no write
+ * was applied while it was read, so that a read racing a write never leaves a stale copy.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryCacheTest {
+
+    private static final long ID = 7;
+
+    /**
+     * Rounds of the concurrent test, and the writes in each
+     */
+    private static final int ROUNDS = 200;
+    private static final int WRITES_PER_ROUND = 500;
+
+    private final InventoryCache mCache = new InventoryCache(10);
+
+    @Test
+    public void readWithoutWriteIsCached() {
+        long writeCount = mCache.getWriteCount();
+        InventoryItem item = item(5);
+        mCache.putIfUnchanged(item, writeCount);
+        assertSame(item, mCache.get(ID));
+    }
+
+    @Test
+    public void readRacingRemoveIsNotCached() {
+        //The read starts, then a write commits and drops the item before the read is done
+        long writeCount = mCache.getWriteCount();
+        mCache.remove(ID);
+        mCache.putIfUnchanged(item(5), writeCount);
+        assertNull(mCache.get(ID));
+    }
+
+    @Test
+    public void readRacingClearIsNotCached() {
+        long writeCount = mCache.getWriteCount();
+        mCache.clear();
+        mCache.putIfUnchanged(item(5), writeCount);
+        assertNull(mCache.get(ID));
+    }
+
+    @Test
+    public void writeDropsCachedItem() {
+        mCache.putIfUnchanged(item(5), mCache.getWriteCount());
+        mCache.remove(ID);
+        assertNull(mCache.get(ID));
+        //Reads started after the write are cached again
+        InventoryItem item = item(4);
+        mCache.putIfUnchanged(item, mCache.getWriteCount());
+        assertSame(item, mCache.get(ID));
+    }
+
+    /**
+     * A thread writes new quantities as the provider does, committing and then dropping the
+     * cached copy, while another reads them as the provider does until the writes are done.
+     * Whatever order they ran in, an item left in the cache is the last one written.
+     */
+    @Test
+    public void concurrentReadsNeverCacheStaleItems() throws InterruptedException {
+        final AtomicInteger database = new AtomicInteger();
+        for (int round = 0; round < ROUNDS; round++) {
+            final AtomicBoolean writing = new AtomicBoolean(true);
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < WRITES_PER_ROUND; i++) {
+                        database.incrementAndGet();
+                        mCache.remove(ID);
+                    }
+                    writing.set(false);
+                }
+            });
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (writing.get()) {
+                        if (mCache.get(ID) == null) {
+                            long writeCount = mCache.getWriteCount();
+                            mCache.putIfUnchanged(item(database.get()), writeCount);
+                        }
+                    }
+                }
+            });
+            reader.start();
+            writer.start();
+            writer.join();
+            reader.join();
+
+            InventoryItem cached = mCache.get(ID);
+            if (cached != null) {
+                assertEquals("Round " + round, database.get(), cached.getQuantity());
+            }
+        }
+    }
+
+    private static InventoryItem item(int quantity) {
+        return new InventoryItem(ID, "Cached", 1000, quantity, "Cache Books", "5550007777");
+    }
+}
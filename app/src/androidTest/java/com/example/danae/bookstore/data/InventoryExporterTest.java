@@ -0,0 +1,129 @@
+package com.example.danae.bookstore.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the CSV written by {@link InventoryExporter}, byte for byte, on a database of its own.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryExporterTest {
+
+    private static final String HEADER = "_id,name,price,quantity,supplier,supplierNumber,isbn\n";
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void createDatabase() {
+        mDatabase = SQLiteDatabase.create(null);
+        new InventoryDbHelper(InstrumentationRegistry.getTargetContext()).onCreate(mDatabase);
+        mDatabase.execSQL("INSERT INTO suppliers (supplier, supplierNumber) VALUES (?, ?)",
+                new Object[]{"Comma, Quote \"Books\"", "555-0001"});
+        mDatabase.execSQL("INSERT INTO suppliers (supplier, supplierNumber) VALUES (?, ?)",
+                new Object[]{"Plain", "5550002"});
+    }
+
+    @After
+    public void closeDatabase() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void emptyInventoryIsHeaderOnly() throws IOException {
+        assertEquals(HEADER, export());
+    }
+
+    @Test
+    public void quotesTextThatNeedsIt() throws IOException {
+        insertItem("Line\nbreak", 1005, 3, 1, "9780306406157");
+        insertItem("Return\rand, comma", 1999, 1, 2, null);
+        insertItem("Plain name", 100000, 0, 2, "9780000000002");
+        assertEquals(HEADER
+                + "1,\"Line\nbreak\",10.05,3,\"Comma, Quote \"\"Books\"\"\",555-0001,9780306406157\n"
+                + "2,\"Return\rand, comma\",19.99,1,Plain,5550002,\n"
+                + "3,Plain name,1000.00,0,Plain,5550002,9780000000002\n", export());
+    }
+
+    @Test
+    public void pricesHaveTwoDecimals() throws IOException {
+        insertItem("a", 0, 1, 2, null);
+        insertItem("b", 7, 1, 2, null);
+        insertItem("c", 70, 1, 2, null);
+        insertItem("d", 100, 1, 2, null);
+        assertEquals(HEADER
+                + "1,a,0.00,1,Plain,5550002,\n"
+                + "2,b,0.07,1,Plain,5550002,\n"
+                + "3,c,0.70,1,Plain,5550002,\n"
+                + "4,d,1.00,1,Plain,5550002,\n", export());
+    }
+
+    @Test
+    public void encodesUtf8() throws IOException {
+        //Two, three and four bytes per character; the last is a surrogate pair in Java
+        String name = "Café € 📚";
+        insertItem(name, 1250, 2, 2, null);
+        byte[] expected = (HEADER + "1," + name + ",12.50,2,Plain,5550002,\n").getBytes("UTF-8");
+        assertArrayEquals(expected, exportBytes());
+        assertEquals(4, "📚".getBytes("UTF-8").length);
+    }
+
+    @Test
+    public void quantityIncludesPendingSales() throws IOException {
+        insertItem("Sold", 500, 10, 2, null);
+        mDatabase.execSQL(InventoryStatements.SQL_SELL, new Object[]{4, System.currentTimeMillis(), 1, 4});
+        assertEquals(HEADER + "1,Sold,5.00,6,Plain,5550002,\n", export());
+
+        //Compacting the sale changes nothing
+        SalesLedger.compact(mDatabase);
+        assertEquals(HEADER + "1,Sold,5.00,6,Plain,5550002,\n", export());
+    }
+
+    @Test
+    public void exportsEveryChunkOnce() throws IOException {
+        //More than two chunks of 1000 rows, ending with a partial chunk
+        int items = 2500;
+        mDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < items; i++) {
+                insertItem("Item " + i, 100, 1, 2, null);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+
+        String[] lines = export().split("\n");
+        assertEquals(items + 1, lines.length);
+        for (int i = 0; i < items; i++) {
+            assertEquals((i + 1) + ",Item " + i + ",1.00,1,Plain,5550002,", lines[i + 1]);
+        }
+    }
+
+    private void insertItem(String name, long priceCents, int quantity, long supplierId, String isbn) {
+        mDatabase.execSQL("INSERT INTO inventory (name, price, quantity, supplier_id, isbn) VALUES (?, ?, ?, ?, ?)",
+                new Object[]{name, priceCents, quantity, supplierId, isbn});
+    }
+
+    private String export() throws IOException {
+        return new String(exportBytes(), "UTF-8");
+    }
+
+    private byte[] exportBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new InventoryExporter(mDatabase, Channels.newChannel(out)).export();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.danae.bookstore.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Upgrades a version 1 inventory database to the current version with the migrations of
+ * {@link InventoryDbHelper}, and checks that the items come through with their prices, stock
+ * and suppliers, and that the search table, supplier totals and sales ledger are filled in.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryMigrationTest {
+
+    /**
+     * The version the migrations lead to
+     */
+    private static final int CURRENT_VERSION = 8;
+
+    private SQLiteDatabase mDatabase;
+    private InventoryDbHelper mDbHelper;
+
+    @Before
+    public void createVersionOne() {
+        mDbHelper = new InventoryDbHelper(InstrumentationRegistry.getTargetContext());
+        mDatabase = SQLiteDatabase.create(null);
+
+        //The inventory table as version 1 created it, with prices as REAL and suppliers inline
+        mDatabase.execSQL("CREATE TABLE inventory ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL, "
+                + "price REAL NOT NULL, "
+                + "quantity INTEGER NOT NULL DEFAULT 0, "
+                + "supplier TEXT NOT NULL, "
+                + "supplierNumber TEXT NOT NULL)");
+        mDatabase.execSQL("INSERT INTO inventory (name, price, quantity, supplier, supplierNumber)"
+                + " VALUES ('Night Garden', 12.5, 3, 'Atlas Books', '5550000001')");
+        mDatabase.execSQL("INSERT INTO inventory (name, price, quantity, supplier, supplierNumber)"
+                + " VALUES ('Winter Letters', 7.999, 10, 'Atlas Books', '5550000001')");
+        //Prices could also have been stored as text
+        mDatabase.execSQL("INSERT INTO inventory (name, price, quantity, supplier, supplierNumber)"
+                + " VALUES ('Golden Road', '20', 0, 'Quill Press', '5550000002')");
+    }
+
+    @After
+    public void closeDatabase() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void upgradeKeepsItems() {
+        mDbHelper.onUpgrade(mDatabase, 1, CURRENT_VERSION);
+        assertItems();
+    }
+
+    @Test
+    public void upgradeInSteps() {
+        //As for a user who installed a release with version 4 in between
+        mDbHelper.onUpgrade(mDatabase, 1, 4);
+        mDbHelper.onUpgrade(mDatabase, 4, CURRENT_VERSION);
+        assertItems();
+    }
+
+    @Test
+    public void lastMigrationCanRunAgain() {
+        //As when the app is killed after the migration ran but before the version was saved
+        mDbHelper.onUpgrade(mDatabase, 1, CURRENT_VERSION);
+        mDbHelper.onUpgrade(mDatabase, CURRENT_VERSION - 1, CURRENT_VERSION);
+        assertItems();
+    }
+
+    private void assertItems() {
+        //Prices are rounded to cents, and each item refers to its supplier
+        Cursor cursor = mDatabase.rawQuery("SELECT inventory._id, name, price, typeof(price), quantity,"
+                + " supplier, supplierNumber, isbn FROM inventory JOIN suppliers USING (supplier_id)"
+                + " ORDER BY inventory._id", null);
+        try {
+            assertEquals(3, cursor.getCount());
+            cursor.moveToNext();
+            assertEquals(1, cursor.getLong(0));
+            assertEquals("Night Garden", cursor.getString(1));
+            assertEquals(1250, cursor.getLong(2));
+            assertEquals("integer", cursor.getString(3));
+            assertEquals(3, cursor.getInt(4));
+            assertEquals("Atlas Books", cursor.getString(5));
+            assertEquals("5550000001", cursor.getString(6));
+            assertNull(cursor.getString(7));
+            cursor.moveToNext();
+            assertEquals(800, cursor.getLong(2));
+            assertEquals("Atlas Books", cursor.getString(5));
+            cursor.moveToNext();
+            assertEquals(2000, cursor.getLong(2));
+            assertEquals("Quill Press", cursor.getString(5));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(2, longForQuery("SELECT COUNT(*) FROM suppliers"));
+
+        //The search table mirrors the names and suppliers of the existing items
+        assertEquals(2, longForQuery("SELECT COUNT(*) FROM inventory_fts WHERE inventory_fts MATCH 'atlas'"));
+        assertEquals(3, longForQuery("SELECT docid FROM inventory_fts WHERE inventory_fts MATCH 'road'"));
+
+        //The supplier totals are computed from the existing items
+        assertEquals(2, longForQuery("SELECT item_count FROM supplier_summary JOIN suppliers USING (supplier_id)"
+                + " WHERE supplier = 'Atlas Books'"));
+        assertEquals(13, longForQuery("SELECT total_units FROM supplier_summary JOIN suppliers USING (supplier_id)"
+                + " WHERE supplier = 'Atlas Books'"));
+        assertEquals(3 * 1250 + 10 * 800, longForQuery("SELECT total_value FROM supplier_summary"
+                + " JOIN suppliers USING (supplier_id) WHERE supplier = 'Atlas Books'"));
+        assertEquals(0, longForQuery("SELECT total_value FROM supplier_summary JOIN suppliers USING (supplier_id)"
+                + " WHERE supplier = 'Quill Press'"));
+        assertEquals(0, InventoryDbHelper.checkSupplierSummary(mDatabase, false));
+
+        //The sales ledger starts empty, with nothing compacted
+        assertEquals(0, longForQuery("SELECT COUNT(*) FROM sales_events"));
+        assertEquals(1, longForQuery("SELECT COUNT(*) FROM sales_compaction"));
+        assertEquals(0, longForQuery("SELECT last_event_id FROM sales_compaction"));
+
+        for (String index : new String[]{"inventory_name_index", "inventory_supplier_id_index",
+                "inventory_quantity_index", "inventory_isbn_index", "sales_events_item_index"}) {
+            assertEquals(index, 1, longForQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = '"
+                    + index + "'"));
+        }
+    }
+
+    private long longForQuery(String sql) {
+        return DatabaseUtils.longForQuery(mDatabase, sql, null);
+    }
+}
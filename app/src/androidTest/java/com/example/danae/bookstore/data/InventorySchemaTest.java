@@ -0,0 +1,85 @@
+package com.example.danae.bookstore.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the tables, indexes and triggers of a database created by {@link InventoryDbHelper}
+ * with the snapshot in schemas/inventory.properties, which the benchmark module checks its copy
+ * of the schema against.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventorySchemaTest {
+
+    /**
+     * Everything created by the schema, but not SQLite's and Android's own tables or the shadow
+     * tables of the full-text table
+     */
+    private static final String SQL_SCHEMA = "SELECT type, name, sql FROM sqlite_master"
+            + " WHERE sql IS NOT NULL AND name NOT GLOB 'sqlite_*' AND name != 'android_metadata'"
+            + " AND NOT (type = 'table' AND name GLOB '*_fts_*')";
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void createDatabase() {
+        mDatabase = SQLiteDatabase.create(null);
+        new InventoryDbHelper(InstrumentationRegistry.getTargetContext()).onCreate(mDatabase);
+    }
+
+    @After
+    public void closeDatabase() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void schemaMatchesSnapshot() throws IOException {
+        Properties snapshot = new Properties();
+        InputStream in = InstrumentationRegistry.getContext().getAssets().open("inventory.properties");
+        try {
+            snapshot.load(in);
+        } finally {
+            in.close();
+        }
+        Map<String, String> expected = new TreeMap<>();
+        for (String key : snapshot.stringPropertyNames()) {
+            if (!key.startsWith("sql.")) {
+                expected.put(key, snapshot.getProperty(key));
+            }
+        }
+
+        Map<String, String> actual = new TreeMap<>();
+        Cursor cursor = mDatabase.rawQuery(SQL_SCHEMA, null);
+        try {
+            while (cursor.moveToNext()) {
+                actual.put(cursor.getString(0) + "." + cursor.getString(1), normalize(cursor.getString(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Returns the SQL of a schema entry without the differences that don't change the schema:
+     * quotes that renaming a table adds, IF NOT EXISTS clauses and runs of whitespace
+     */
+    private static String normalize(String sql) {
+        return sql.replace("\"", "").replace("IF NOT EXISTS ", "").replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.danae.bookstore.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of {@link InventoryStatements} against the {@link SQLiteDatabase} calls the provider
+ * made before, for each of the write shapes they cover: quantity update, full-row update, insert
+ * and delete by ID. The time and the objects allocated per write are logged for both. The
+ * database is in memory, so that the cost of building, parsing and binding the SQL isn't hidden
+ * by the cost of writing to storage.
+ * <p>
+ * The number of writes of each kind can be set with an instrumentation argument, for example
+ * {@code -e statementsBenchmarkWrites 20000}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryStatementsBenchmarkTest {
+
+    public static final String LOG_TAG = InventoryStatementsBenchmarkTest.class.getSimpleName();
+
+    private static final String ARGUMENT_WRITES = "statementsBenchmarkWrites";
+    private static final int DEFAULT_WRITES = 5000;
+
+    /**
+     * Writes run before measuring, so that both ways run compiled code with warm caches
+     */
+    private static final int WARM_UP_WRITES = 500;
+
+    /**
+     * Items the updates are spread over
+     */
+    private static final int ITEMS = 1000;
+
+    private static final String SUPPLIER_NAME = "Benchmark Books";
+    private static final String SUPPLIER_NUMBER = "5550001";
+
+    private static final String WHERE_ID = InventoryEntry._ID + " = ?";
+
+    private SQLiteDatabase mDatabase;
+    private InventoryStatements mStatements;
+    private long mSupplierId;
+    private int mWrites;
+
+    @Before
+    public void createDatabase() {
+        mDatabase = SQLiteDatabase.create(null);
+        new InventoryDbHelper(InstrumentationRegistry.getTargetContext()).onCreate(mDatabase);
+        mStatements = new InventoryStatements(mDatabase);
+        mSupplierId = mStatements.getSupplierId(SUPPLIER_NAME, SUPPLIER_NUMBER);
+        insertItems(ITEMS);
+
+        String writesArgument = InstrumentationRegistry.getArguments().getString(ARGUMENT_WRITES);
+        mWrites = writesArgument == null ? DEFAULT_WRITES : Integer.parseInt(writesArgument);
+    }
+
+    @After
+    public void closeDatabase() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void updateQuantity() {
+        compare("quantity update", new Write() {
+            @Override
+            public void run(int i) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_QUANTITY, i % 500);
+                mDatabase.update(InventoryEntry.TABLE_NAME, values, WHERE_ID,
+                        new String[]{String.valueOf(1 + i % ITEMS)});
+            }
+        }, new Write() {
+            @Override
+            public void run(int i) {
+                mStatements.updateQuantity(1 + i % ITEMS, i % 500);
+            }
+        });
+    }
+
+    @Test
+    public void updateItem() {
+        //The values come from the caller either way, so they are made once
+        final ContentValues tableValues = newItem();
+        tableValues.remove(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        tableValues.remove(InventoryEntry.COLUMN_SUPPLIER_NUMBER);
+        tableValues.put(InventoryEntry.COLUMN_SUPPLIER_ID, mSupplierId);
+        final ContentValues itemValues = newItem();
+        compare("full-row update", new Write() {
+            @Override
+            public void run(int i) {
+                mDatabase.update(InventoryEntry.TABLE_NAME, tableValues, WHERE_ID,
+                        new String[]{String.valueOf(1 + i % ITEMS)});
+            }
+        }, new Write() {
+            @Override
+            public void run(int i) {
+                mStatements.updateItem(1 + i % ITEMS, itemValues);
+            }
+        });
+    }
+
+    @Test
+    public void insert() {
+        final ContentValues tableValues = newItem();
+        tableValues.remove(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        tableValues.remove(InventoryEntry.COLUMN_SUPPLIER_NUMBER);
+        tableValues.put(InventoryEntry.COLUMN_SUPPLIER_ID, mSupplierId);
+        final ContentValues itemValues = newItem();
+        compare("insert", new Write() {
+            @Override
+            public void run(int i) {
+                mDatabase.insert(InventoryEntry.TABLE_NAME, null, tableValues);
+            }
+        }, new Write() {
+            @Override
+            public void run(int i) {
+                mStatements.insert(itemValues);
+            }
+        });
+    }
+
+    @Test
+    public void delete() {
+        //Each run deletes items added just before it, after the first ITEMS
+        final long[] firstId = new long[1];
+        compare("delete", new Write() {
+            @Override
+            public void prepare(int writes) {
+                firstId[0] = insertItems(writes);
+            }
+
+            @Override
+            public void run(int i) {
+                mDatabase.delete(InventoryEntry.TABLE_NAME, WHERE_ID, new String[]{String.valueOf(firstId[0] + i)});
+            }
+        }, new Write() {
+            @Override
+            public void prepare(int writes) {
+                firstId[0] = insertItems(writes);
+            }
+
+            @Override
+            public void run(int i) {
+                mStatements.delete(firstId[0] + i);
+            }
+        });
+        assertEquals(ITEMS, countItems());
+    }
+
+    /**
+     * Run the writes both ways and log the time and allocations per write of each
+     */
+    private void compare(String shape, Write before, Write reused) {
+        Result beforeResult = measure(before);
+        Result reusedResult = measure(reused);
+        Log.i(LOG_TAG, String.format("Statements benchmark: %s, %d writes: SQLiteDatabase %.1f us and"
+                        + " %.1f objects (%.0f bytes) per write, precompiled %.1f us and %.1f objects (%.0f bytes)",
+                shape, mWrites, beforeResult.micros, beforeResult.objects, beforeResult.bytes,
+                reusedResult.micros, reusedResult.objects, reusedResult.bytes));
+    }
+
+    /**
+     * Warm up, then run the writes and return their average time and allocations. Objects are
+     * counted on this thread only.
+     */
+    @SuppressWarnings("deprecation")
+    private Result measure(Write write) {
+        write.prepare(WARM_UP_WRITES);
+        for (int i = 0; i < WARM_UP_WRITES; i++) {
+            write.run(i);
+        }
+        write.prepare(mWrites);
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < mWrites; i++) {
+            write.run(i);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+
+        Result result = new Result();
+        result.micros = elapsedNanos / 1000.0 / mWrites;
+        result.objects = (double) Debug.getThreadAllocCount() / mWrites;
+        result.bytes = (double) Debug.getThreadAllocSize() / mWrites;
+        return result;
+    }
+
+    /**
+     * Insert the given number of items and return the ID of the first
+     */
+    private long insertItems(int count) {
+        ContentValues values = newItem();
+        long firstId = -1;
+        mDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                long id = mStatements.insert(values);
+                if (i == 0) {
+                    firstId = id;
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return firstId;
+    }
+
+    private long countItems() {
+        return DatabaseUtils.queryNumEntries(mDatabase, InventoryEntry.TABLE_NAME);
+    }
+
+    private static ContentValues newItem() {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "Benchmark item");
+        values.put(InventoryEntry.COLUMN_PRICE, 1299);
+        values.put(InventoryEntry.COLUMN_QUANTITY, 10);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, SUPPLIER_NAME);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, SUPPLIER_NUMBER);
+        return values;
+    }
+
+    /**
+     * One way of running a write
+     */
+    private abstract static class Write {
+
+        /**
+         * Called before a run of the given number of writes, outside the measurement
+         */
+        void prepare(int writes) {
+        }
+
+        abstract void run(int i);
+    }
+
+    private static class Result {
+        double micros;
+        double objects;
+        double bytes;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.danae.bookstore.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link InventoryDbHelper} applies its {@link InventoryStorageProfile}: the journal
+ * mode and pragmas of the connection that writes, and a checkpoint of the write-ahead log after
+ * every so many commits of an {@link InventoryWriter}.
+ * <p>
+ * The checkpoints are seen through the length of the log file. SQLite's own checkpoints are
+ * turned off, and once a checkpoint has copied the whole log into the database, the next commit
+ * starts writing the log from its beginning again instead of making the file longer.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryStorageProfileTest {
+
+    private static final String TABLE_NAME = "storage_profile_test";
+
+    /**
+     * Commits between checkpoints, in the profile of the checkpoint tests
+     */
+    private static final int CHECKPOINT_INTERVAL = 10;
+
+    /**
+     * Size of the value each commit writes, a few pages so that the log grows with every commit
+     */
+    private static final int VALUE_BYTES = 8 * 1024;
+
+    /**
+     * How long a checkpoint scheduled by a commit takes to run on the helper's thread
+     */
+    private static final long SETTLE_MILLIS = 500;
+
+    private InventoryDbHelper mDbHelper;
+    private InventoryWriter mWriter;
+
+    @After
+    public void closeHelper() {
+        if (mWriter != null) {
+            mWriter.quit();
+        }
+        if (mDbHelper != null) {
+            mDbHelper.getWritableDatabase().execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+            mDbHelper.close();
+        }
+    }
+
+    @Test
+    public void pragmasAreApplied() {
+        openHelper(new InventoryStorageProfile(true, "FULL", 2048, true, 1024 * 1024, 0));
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+
+        assertEquals("wal", readPragma(db, "journal_mode").toLowerCase());
+        //FULL is 2
+        assertEquals("2", readPragma(db, "synchronous"));
+        assertEquals("-2048", readPragma(db, "cache_size"));
+        //MEMORY is 2
+        assertEquals("2", readPragma(db, "temp_store"));
+        assertEquals("1", readPragma(db, "foreign_keys"));
+        //SQLite without memory-mapped I/O returns no row, and SQLite limits the size to its maximum
+        String mmapSize = readPragma(db, "mmap_size");
+        assertTrue(mmapSize == null || Long.parseLong(mmapSize) <= 1024 * 1024);
+    }
+
+    @Test
+    public void logIsCheckpointedEveryInterval() {
+        openHelper(new InventoryStorageProfile(true, "NORMAL", 2048, true, 0, CHECKPOINT_INTERVAL));
+        long firstInterval = getLogLengthAfter(CHECKPOINT_INTERVAL);
+        SystemClock.sleep(SETTLE_MILLIS);
+        //The last commit scheduled a checkpoint, so these commits reuse the start of the log
+        long afterCheckpoint = getLogLengthAfter(CHECKPOINT_INTERVAL - 1);
+        assertTrue("Log grew from " + firstInterval + " to " + afterCheckpoint + " bytes",
+                afterCheckpoint <= firstInterval);
+    }
+
+    @Test
+    public void logGrowsWithoutInterval() {
+        openHelper(new InventoryStorageProfile(true, "NORMAL", 2048, true, 0, 0));
+        long firstInterval = getLogLengthAfter(CHECKPOINT_INTERVAL);
+        SystemClock.sleep(SETTLE_MILLIS);
+        long afterInterval = getLogLengthAfter(CHECKPOINT_INTERVAL - 1);
+        assertTrue("Log stayed at " + firstInterval + " bytes", afterInterval > firstInterval);
+    }
+
+    /**
+     * Open the test database with the given profile and create the table of the test
+     */
+    private void openHelper(InventoryStorageProfile profile) {
+        //Opened through the application under test, so that this is the test database
+        mDbHelper = new InventoryDbHelper(InstrumentationRegistry.getTargetContext().getApplicationContext(), profile);
+        mDbHelper.getWritableDatabase().execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+                + " (_id INTEGER PRIMARY KEY AUTOINCREMENT, value BLOB NOT NULL)");
+    }
+
+    /**
+     * Commit the given number of writes one by one through a writer, and return the length of
+     * the write-ahead log after them. The first call empties the log and turns off SQLite's own
+     * checkpoints, so that only the helper's checkpoints copy the log into the database.
+     */
+    private long getLogLengthAfter(int commits) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        if (mWriter == null) {
+            readPragma(db, "wal_autocheckpoint = 0");
+            //A checkpoint can't run inside the transaction readPragma() opens
+            Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(0, cursor.getInt(0));
+            } finally {
+                cursor.close();
+            }
+            //A window of 0 and groups of 1 commit every write on its own
+            mWriter = new InventoryWriter(mDbHelper, 0, 1);
+        }
+        final byte[] value = new byte[VALUE_BYTES];
+        for (int i = 0; i < commits; i++) {
+            mWriter.execute(new InventoryWriter.Write<Long>() {
+                @Override
+                public Long run(SQLiteDatabase database) {
+                    SQLiteStatement insert = database.compileStatement("INSERT INTO " + TABLE_NAME
+                            + " (value) VALUES (?)");
+                    try {
+                        insert.bindBlob(1, value);
+                        return insert.executeInsert();
+                    } finally {
+                        insert.close();
+                    }
+                }
+            });
+        }
+        return new File(db.getPath() + "-wal").length();
+    }
+
+    /**
+     * Run a pragma on the primary connection, which runs every write, and return the first
+     * column of its row, or null if it returns none. Outside a transaction a query may run on
+     * one of the connections of the WAL readers instead.
+     */
+    private static String readPragma(SQLiteDatabase db, String pragma) {
+        db.beginTransactionNonExclusive();
+        try {
+            Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+            try {
+                return cursor.moveToFirst() ? cursor.getString(0) : null;
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.danae.bookstore.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of {@link InventoryWriter}'s group commit: 1, 4 and 16 threads each run small
+ * writes as fast as the writer commits them, for several group commit windows and largest
+ * groups, and the throughput and latency percentiles of each are logged. A window of 0 with
+ * groups of 1 commits every write on its own, as the provider did before group commit.
+ * <p>
+ * The writes go to a table of their own in the test database, dropped at the end. The number
+ * of writes per thread can be set with an instrumentation argument, for example
+ * {@code -e writerBenchmarkWrites 2000}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryWriterBenchmarkTest {
+
+    public static final String LOG_TAG = InventoryWriterBenchmarkTest.class.getSimpleName();
+
+    private static final String ARGUMENT_WRITES = "writerBenchmarkWrites";
+    private static final int DEFAULT_WRITES = 500;
+
+    /**
+     * Numbers of writing threads
+     */
+    private static final int[] PRODUCERS = {1, 4, 16};
+
+    /**
+     * Settings compared, as pairs of group commit window in milliseconds and largest group
+     */
+    private static final long[][] SETTINGS = {
+            {0, 1},
+            {0, 64},
+            {1, 64},
+            {2, 16},
+            {2, 64},
+            {2, 256},
+            {5, 64}};
+
+    private static final String TABLE_NAME = "writer_benchmark";
+
+    private InventoryDbHelper mDbHelper;
+
+    @Before
+    public void createTable() {
+        //Opened through the application under test, so that this is the test database
+        mDbHelper = new InventoryDbHelper(InstrumentationRegistry.getTargetContext().getApplicationContext());
+        mDbHelper.getWritableDatabase().execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+                + " (_id INTEGER PRIMARY KEY AUTOINCREMENT, producer INTEGER NOT NULL, value INTEGER NOT NULL)");
+    }
+
+    @After
+    public void dropTable() {
+        mDbHelper.getWritableDatabase().execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+        mDbHelper.close();
+    }
+
+    @Test
+    public void groupCommitSettings() throws InterruptedException {
+        String writesArgument = InstrumentationRegistry.getArguments().getString(ARGUMENT_WRITES);
+        int writes = writesArgument == null ? DEFAULT_WRITES : Integer.parseInt(writesArgument);
+        for (int producers : PRODUCERS) {
+            for (long[] setting : SETTINGS) {
+                run(producers, writes, setting[0], (int) setting[1]);
+            }
+        }
+    }
+
+    /**
+     * Run the writes of every thread through a writer with the given settings, and log the
+     * throughput and the latency percentiles of a write
+     */
+    private void run(int producers, final int writes, long windowMillis, int maxGroupSize)
+            throws InterruptedException {
+        final InventoryWriter writer = new InventoryWriter(mDbHelper, windowMillis, maxGroupSize);
+        final long[][] latencies = new long[producers][writes];
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(producers);
+        for (int producer = 0; producer < producers; producer++) {
+            final int id = producer;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < writes; i++) {
+                            final long value = i;
+                            long writeStart = System.nanoTime();
+                            writer.execute(new InventoryWriter.Write<Long>() {
+                                @Override
+                                public Long run(SQLiteDatabase database) {
+                                    SQLiteStatement insert = database.compileStatement("INSERT INTO "
+                                            + TABLE_NAME + " (producer, value) VALUES (?, ?)");
+                                    try {
+                                        insert.bindLong(1, id);
+                                        insert.bindLong(2, value);
+                                        return insert.executeInsert();
+                                    } finally {
+                                        insert.close();
+                                    }
+                                }
+                            });
+                            latencies[id][i] = System.nanoTime() - writeStart;
+                        }
+                    } catch (InterruptedException | RuntimeException e) {
+                        Log.e(LOG_TAG, "Writer benchmark: producer " + id + " failed", e);
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, LOG_TAG + "-" + producer).start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        writer.quit();
+        mDbHelper.getWritableDatabase().execSQL("DELETE FROM " + TABLE_NAME);
+        assertEquals(0, errors.get());
+
+        long[] all = new long[producers * writes];
+        for (int producer = 0; producer < producers; producer++) {
+            System.arraycopy(latencies[producer], 0, all, producer * writes, writes);
+        }
+        Arrays.sort(all);
+        Log.i(LOG_TAG, String.format("Writer benchmark: %d threads, window %d ms, groups of %d:"
+                        + " %.0f writes per second, p50 %d us, p99 %d us, max %d us",
+                producers, windowMillis, maxGroupSize, all.length * 1e9 / elapsedNanos,
+                percentile(all, 0.5), percentile(all, 0.99), all[all.length - 1] / 1000));
+    }
+
+    /**
+     * Returns the given percentile of sorted latencies, in microseconds
+     */
+    private static long percentile(long[] sortedNanos, double fraction) {
+        int index = (int) Math.ceil(sortedNanos.length * fraction) - 1;
+        return sortedNanos[Math.max(0, index)] / 1000;
+    }
+}
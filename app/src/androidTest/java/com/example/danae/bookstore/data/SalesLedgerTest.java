@@ -0,0 +1,164 @@
+package com.example.danae.bookstore.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the sales ledger on a database of its own: sales only append events, and compacting
+ * them moves their units into the stock and the daily totals without changing the current stock
+ * or the totals read with the pending sales.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SalesLedgerTest {
+
+    private SQLiteDatabase mDatabase;
+    private long mFirstDay;
+    private long mSecondDay;
+
+    @Before
+    public void createDatabase() {
+        mDatabase = SQLiteDatabase.create(null);
+        new InventoryDbHelper(InstrumentationRegistry.getTargetContext()).onCreate(mDatabase);
+        mDatabase.execSQL("INSERT INTO suppliers (supplier, supplierNumber) VALUES ('Ledger Books', '5550006666')");
+        mDatabase.execSQL("INSERT INTO inventory (name, price, quantity, supplier_id) VALUES ('First', 1000, 10, 1)");
+        mDatabase.execSQL("INSERT INTO inventory (name, price, quantity, supplier_id) VALUES ('Second', 500, 4, 1)");
+
+        //Noon of two days in a row, so that no time zone puts both sales on the same day
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2020, Calendar.MARCH, 14, 12, 0, 0);
+        mFirstDay = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        mSecondDay = calendar.getTimeInMillis();
+    }
+
+    @After
+    public void closeDatabase() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void compactionKeepsCurrentStock() {
+        sell(1, 3, mFirstDay);
+        sell(1, 2, mSecondDay);
+        sell(2, 1, mFirstDay);
+        //Sales only add events, so the stored stock is unchanged
+        assertEquals(10, storedQuantity(1));
+        assertEquals(5, currentQuantity(1));
+        assertEquals(3, currentQuantity(2));
+
+        assertEquals(3, SalesLedger.compact(mDatabase));
+        assertEquals(5, storedQuantity(1));
+        assertEquals(3, storedQuantity(2));
+        assertEquals(5, currentQuantity(1));
+        assertEquals(3, currentQuantity(2));
+        assertEquals(3, longForQuery("SELECT last_event_id FROM sales_compaction"));
+
+        //Nothing is left to compact
+        assertEquals(0, SalesLedger.compact(mDatabase));
+        assertEquals(5, storedQuantity(1));
+    }
+
+    @Test
+    public void compactionAddsDailyTotals() {
+        sell(1, 3, mFirstDay);
+        sell(1, 2, mSecondDay);
+        sell(2, 1, mFirstDay);
+        SalesLedger.compact(mDatabase);
+        assertEquals(3, dailyUnits(mFirstDay, 1));
+        assertEquals(2, dailyUnits(mSecondDay, 1));
+        assertEquals(1, dailyUnits(mFirstDay, 2));
+
+        //Later sales on the same day add to its total
+        sell(1, 4, mFirstDay);
+        assertEquals(1, SalesLedger.compact(mDatabase));
+        assertEquals(7, dailyUnits(mFirstDay, 1));
+        assertEquals(3, longForQuery("SELECT COUNT(*) FROM sales_daily"));
+    }
+
+    @Test
+    public void saleWithoutEnoughStockAddsNothing() {
+        sell(2, 3, mFirstDay);
+        //One unit left, counting the sale that wasn't compacted yet
+        sell(2, 2, mFirstDay);
+        assertEquals(1, longForQuery("SELECT COUNT(*) FROM sales_events"));
+        assertEquals(1, currentQuantity(2));
+    }
+
+    @Test
+    public void readsIncludePendingSales() {
+        sell(1, 3, mFirstDay);
+        SalesLedger.compact(mDatabase);
+        sell(1, 2, mFirstDay);
+        sell(1, 1, mSecondDay);
+        sell(2, 1, mFirstDay);
+
+        //Compacted and pending sales of the same day add up, and days with only pending sales show
+        assertEquals(5, totalUnits(mFirstDay, 1));
+        assertEquals(1, totalUnits(mSecondDay, 1));
+        assertEquals(1, totalUnits(mFirstDay, 2));
+        assertEquals(3, longForQuery("SELECT COUNT(*) FROM " + SalesLedger.DAILY_TOTALS));
+        assertEquals(14 - 7, supplierUnits());
+        assertEquals(2, longForQuery("SELECT COUNT(*) FROM (" + SalesLedger.SQL_PENDING_ITEMS + ")"));
+
+        //Compaction doesn't change what the reads return
+        assertEquals(3, SalesLedger.compact(mDatabase));
+        assertEquals(5, totalUnits(mFirstDay, 1));
+        assertEquals(1, totalUnits(mSecondDay, 1));
+        assertEquals(1, totalUnits(mFirstDay, 2));
+        assertEquals(3, longForQuery("SELECT COUNT(*) FROM " + SalesLedger.DAILY_TOTALS));
+        assertEquals(14 - 7, supplierUnits());
+        assertEquals(0, longForQuery("SELECT COUNT(*) FROM (" + SalesLedger.SQL_PENDING_ITEMS + ")"));
+    }
+
+    private void sell(long itemId, int quantity, long soldAt) {
+        mDatabase.execSQL(InventoryStatements.SQL_SELL, new Object[]{quantity, soldAt, itemId, quantity});
+    }
+
+    private long storedQuantity(long itemId) {
+        return longForQuery("SELECT quantity FROM inventory WHERE _id = " + itemId);
+    }
+
+    private long currentQuantity(long itemId) {
+        return longForQuery("SELECT " + SalesLedger.currentQuantity() + " FROM inventory WHERE _id = " + itemId);
+    }
+
+    private long dailyUnits(long day, long itemId) {
+        String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(day);
+        return DatabaseUtils.longForQuery(mDatabase, "SELECT units FROM sales_daily WHERE day = ? AND item_id = ?",
+                new String[]{date, String.valueOf(itemId)});
+    }
+
+    /**
+     * Returns the units of the item sold on the day, compacted or not
+     */
+    private long totalUnits(long day, long itemId) {
+        String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(day);
+        return DatabaseUtils.longForQuery(mDatabase, "SELECT units FROM " + SalesLedger.DAILY_TOTALS
+                + " WHERE day = ? AND item_id = ?", new String[]{date, String.valueOf(itemId)});
+    }
+
+    /**
+     * Returns the current stock of the supplier of both items, from its summary and pending sales
+     */
+    private long supplierUnits() {
+        return longForQuery("SELECT total_units - IFNULL(" + SalesLedger.COLUMN_PENDING_UNITS + ", 0)"
+                + " FROM supplier_summary LEFT JOIN " + SalesLedger.PENDING_BY_SUPPLIER + " USING (supplier_id)");
+    }
+
+    private long longForQuery(String sql) {
+        return DatabaseUtils.longForQuery(mDatabase, sql, null);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.danae.bookstore.data;
+
+import android.database.CrossProcessCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures what normalizing the suppliers saves: the size of the database and the number of
+ * rows that fit in a cursor window, just before and just after the migration that moves the
+ * suppliers into their own table. The items are put in a version 1 database and brought to
+ * each version by {@link InventoryDbHelper}'s own migrations, and the database is vacuumed
+ * before it is measured.
+ * <p>
+ * The number of items can be set with an instrumentation argument, for example
+ * {@code -e normalizationTestItems 100000}. There must be more items than fit in one window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SupplierNormalizationSizeTest {
+
+    public static final String LOG_TAG = SupplierNormalizationSizeTest.class.getSimpleName();
+
+    private static final String ARGUMENT_ITEMS = "normalizationTestItems";
+    private static final int DEFAULT_ITEMS = 50000;
+
+    private static final int SUPPLIERS = 50;
+
+    /**
+     * The last version with the suppliers inline, and the version that normalizes them
+     */
+    private static final int INLINE_SUPPLIERS_VERSION = 6;
+    private static final int NORMALIZED_VERSION = 7;
+
+    /**
+     * Every column of an item, as the editor and the export read them
+     */
+    private static final String ITEM_COLUMNS = "inventory._id, name, price, quantity, supplier, supplierNumber, isbn";
+
+    private SQLiteDatabase mDatabase;
+    private InventoryDbHelper mDbHelper;
+    private int mItems;
+
+    @Before
+    public void createVersionOne() {
+        String itemsArgument = InstrumentationRegistry.getArguments().getString(ARGUMENT_ITEMS);
+        mItems = itemsArgument == null ? DEFAULT_ITEMS : Integer.parseInt(itemsArgument);
+        mDbHelper = new InventoryDbHelper(InstrumentationRegistry.getTargetContext());
+        mDatabase = SQLiteDatabase.create(null);
+
+        //The inventory table as version 1 created it, with the suppliers inline
+        mDatabase.execSQL("CREATE TABLE inventory ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL, "
+                + "price REAL NOT NULL, "
+                + "quantity INTEGER NOT NULL DEFAULT 0, "
+                + "supplier TEXT NOT NULL, "
+                + "supplierNumber TEXT NOT NULL)");
+        InventoryGenerator generator = new InventoryGenerator(42);
+        SQLiteStatement insert = mDatabase.compileStatement("INSERT INTO inventory"
+                + " (name, price, quantity, supplier, supplierNumber) VALUES (?, ?, ?, ?, ?)");
+        mDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < mItems; i++) {
+                int supplier = i % SUPPLIERS;
+                insert.bindString(1, "Item " + i + " of the normalization test");
+                insert.bindDouble(2, 1 + i % 5000 / 100.0);
+                insert.bindLong(3, i % 500);
+                insert.bindString(4, "Harbor Valley Books and Stationery " + supplier);
+                insert.bindString(5, String.format("555%07d", supplier));
+                insert.executeInsert();
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+            insert.close();
+        }
+        mDbHelper.onUpgrade(mDatabase, 1, INLINE_SUPPLIERS_VERSION);
+
+        //Give the items ISBNs, which version 4 added, so that both versions hold the same data
+        mDatabase.beginTransaction();
+        try {
+            SQLiteStatement setIsbn = mDatabase.compileStatement("UPDATE inventory SET isbn = ? WHERE _id = ?");
+            for (int i = 0; i < mItems; i++) {
+                setIsbn.bindString(1, generator.getIsbn(i));
+                setIsbn.bindLong(2, i + 1);
+                setIsbn.executeUpdateDelete();
+            }
+            setIsbn.close();
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    @After
+    public void closeDatabase() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void normalizingShrinksDatabaseAndRows() {
+        long sizeBefore = getDatabaseSize();
+        int itemRowsBefore = countRowsInWindow("SELECT " + ITEM_COLUMNS + " FROM inventory");
+
+        mDbHelper.onUpgrade(mDatabase, INLINE_SUPPLIERS_VERSION, NORMALIZED_VERSION);
+        long sizeAfter = getDatabaseSize();
+        //The inventory table's own rows, as queries that don't need the supplier read them
+        int tableRowsAfter = countRowsInWindow("SELECT * FROM inventory");
+        //Every column of an item, joined back to its supplier
+        int itemRowsAfter = countRowsInWindow("SELECT " + ITEM_COLUMNS
+                + " FROM inventory JOIN suppliers USING (supplier_id)");
+
+        Log.i(LOG_TAG, String.format("Normalization test, %d items from %d suppliers: database %d KB before,"
+                        + " %d KB after (%.0f%% smaller); rows per cursor window: %d before, %d after"
+                        + " without the supplier (%.0f%% fewer bytes per row), %d after with the supplier joined",
+                mItems, SUPPLIERS, sizeBefore / 1024, sizeAfter / 1024, 100.0 * (sizeBefore - sizeAfter) / sizeBefore,
+                itemRowsBefore, tableRowsAfter, 100.0 * (1 - (double) itemRowsBefore / tableRowsAfter),
+                itemRowsAfter));
+        assertTrue(sizeAfter < sizeBefore);
+        assertTrue(tableRowsAfter > itemRowsBefore);
+    }
+
+    /**
+     * Returns the size of the database in bytes once it is vacuumed
+     */
+    private long getDatabaseSize() {
+        mDatabase.execSQL("VACUUM");
+        return DatabaseUtils.longForQuery(mDatabase, "PRAGMA page_count", null)
+                * DatabaseUtils.longForQuery(mDatabase, "PRAGMA page_size", null);
+    }
+
+    /**
+     * Fill one cursor window with the rows of the query and return how many fit. The query must
+     * return more rows than fit.
+     */
+    private int countRowsInWindow(String sql) {
+        Cursor cursor = mDatabase.rawQuery(sql, null);
+        CursorWindow window = new CursorWindow(LOG_TAG);
+        try {
+            ((CrossProcessCursor) cursor).fillWindow(0, window);
+            int rows = window.getNumRows();
+            assertTrue("Every row fit in the window; add items", rows < mItems);
+            return rows;
+        } finally {
+            window.close();
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.danae.bookstore;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+/**
+ * Application class for the BookStore app
+ */
+public class BookStoreApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        //In debug builds, flag every disk read or write on the main thread with a log message
+        //and a red flash, so that database work blocking the UI is caught during development
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyFlashScreen()
+                    .build());
+        }
+    }
+}
@@ -1,43 +1,89 @@
 package com.example.danae.bookstore;
 
-import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.Intent;
-import android.content.Loader;
-import android.database.Cursor;
+import android.database.SQLException;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.Toast;
 
 import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
 import com.example.danae.bookstore.data.InventoryDbHelper;
+import com.example.danae.bookstore.data.InventoryGenerator;
+import com.example.danae.bookstore.data.InventoryImporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Display the inventory of the BookStore.
  */
-public class CatalogActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+public class CatalogActivity extends AppCompatActivity {
 
     public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
 
     /**
-     * Construct a new cursor loader
+     * Wait this long after the last keystroke before searching, in milliseconds
+     */
+    private static final long SEARCH_DELAY_MILLIS = 300;
+
+    /**
+     * Request code used to pick the catalog file to import
+     */
+    private static final int REQUEST_IMPORT = 1;
+
+    /**
+     * Number of items added by the "Add Dummy Data" menu option
+     */
+    private static final int DUMMY_DATA_COUNT = 100;
+
+    /**
+     * The thread imports run on, so that a long import doesn't hold up the app's other
+     * AsyncTasks, which share a single thread by default
+     */
+    private static final Executor IMPORT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Adapter for the RecyclerView
      */
-    private static final int INVENTORY_LOADER = 0;
+    InventoryPagedAdapter mPagedAdapter;
 
     /**
-     * Adapter for the ListView
+     * Handler used to delay searches until the user stops typing
      */
-    InventoryCursorAdapter mCursorAdapter;
+    private final Handler mSearchHandler = new Handler();
+
+    /**
+     * The search words typed most recently
+     */
+    private String mPendingSearchQuery;
+
+    /**
+     * Runs the most recently typed search. The adapter loads the results on a background thread.
+     */
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPagedAdapter.setSearchQuery(mPendingSearchQuery);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -54,22 +100,18 @@ public class CatalogActivity extends AppCompatActivity implements
             }
         });
 
-        //Find List view to populate the inventory list
-        ListView inventoryListView = findViewById(R.id.list_view);
+        //Find the RecyclerView to populate the inventory list
+        RecyclerView inventoryListView = findViewById(R.id.list_view);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        inventoryListView.setLayoutManager(layoutManager);
+        inventoryListView.addItemDecoration(
+                new DividerItemDecoration(this, layoutManager.getOrientation()));
 
-        //Find and set the empty view on the list view when there are no items in the inventory.
-        View emptyView = findViewById(R.id.empty_view);
-        inventoryListView.setEmptyView(emptyView);
-
-        //Setup an Adapter to create a list item for each row of data in the Cursor; null to start
-        mCursorAdapter = new InventoryCursorAdapter(this, null);
-        inventoryListView.setAdapter(mCursorAdapter);
-
-        //Set up the item click listener
-        inventoryListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        //Setup an Adapter to create a list item for each item; it loads the inventory page by page
+        //and opens the clicked item
+        mPagedAdapter = new InventoryPagedAdapter(this, new InventoryPagedAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
-
+            public void onItemClick(long itemId) {
                 // Create new intent to go to {@link EditorActivity}
                 Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
 
@@ -78,7 +120,7 @@ public class CatalogActivity extends AppCompatActivity implements
                 // {@link InventoryEntry#CONTENT_URI}.
                 // For example, the URI would be "content://com.example.danae.bookstore.inventory/
                 // inventory/2" if the pet with ID 2 was clicked on.
-                Uri currentPetUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id);
+                Uri currentPetUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, itemId);
 
                 // Set the URI on the data field of the intent
                 intent.setData(currentPetUri);
@@ -87,41 +129,193 @@ public class CatalogActivity extends AppCompatActivity implements
                 startActivity(intent);
             }
         });
+        inventoryListView.setAdapter(mPagedAdapter);
+
+        //Show the empty view when there are no items in the inventory.
+        //RecyclerView has no empty view of its own, so follow the adapter's changes.
+        final View emptyView = findViewById(R.id.empty_view);
+        mPagedAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView(emptyView);
+            }
 
-        //Initiate loader
-        getLoaderManager().initLoader(INVENTORY_LOADER, null, this);
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView(emptyView);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView(emptyView);
+            }
+        });
+        updateEmptyView(emptyView);
+    }
+
+    /**
+     * Show the empty view only while the inventory list has no items.
+     */
+    private void updateEmptyView(View emptyView) {
+        emptyView.setVisibility(mPagedAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        //Stop searching and loading the inventory pages
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mPagedAdapter.close();
+    }
+
+    /**
+     * Search for the given words once the user has stopped typing for a moment.
+     */
+    private void searchInventory(String query) {
+        mPendingSearchQuery = query;
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DELAY_MILLIS);
+    }
+
+    /**
+     * Let the user pick a CSV or JSON supplier catalog to import.
+     */
+    private void pickImportFile() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.setType("*/*");
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        startActivityForResult(intent, REQUEST_IMPORT);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_IMPORT && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            //The import streams the file on a background thread; the list updates as chunks are written
+            new ImportTask(this).executeOnExecutor(IMPORT_EXECUTOR, data.getData());
+        }
     }
 
     /**
-     * Helper method to insert hardcoded product data into the database. For debugging purposes only.
+     * Show the progress of a running import in the app bar.
+     */
+    void showImportProgress(InventoryImporter.Progress progress) {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(getString(R.string.import_progress,
+                    progress.getRowsRead(), progress.getRowsPerSecond()));
+        }
+    }
+
+    /**
+     * Show the result of a finished import, or an error if it failed.
+     */
+    void showImportResult(InventoryImporter.Progress result) {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(null);
+        }
+        if (result == null) {
+            Toast.makeText(this, R.string.import_failed, Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, getString(R.string.import_complete, result.getRowsImported(),
+                    result.getRowsRejected(), result.getRowsPerSecond()), Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Imports a supplier catalog on a background thread and reports its progress to the activity,
+     * as long as the activity is still around.
+     */
+    private static class ImportTask extends AsyncTask<Uri, InventoryImporter.Progress, InventoryImporter.Progress> {
+
+        private final Context mContext;
+        private final WeakReference<CatalogActivity> mActivity;
+
+        ImportTask(CatalogActivity activity) {
+            mContext = activity.getApplicationContext();
+            mActivity = new WeakReference<>(activity);
+        }
+
+        @Override
+        protected InventoryImporter.Progress doInBackground(Uri... uris) {
+            Uri uri = uris[0];
+            String type = mContext.getContentResolver().getType(uri);
+            String path = uri.getPath();
+            InventoryImporter.Format format = (type != null && type.contains("json"))
+                    || (path != null && path.toLowerCase().endsWith(".json"))
+                    ? InventoryImporter.Format.JSON : InventoryImporter.Format.CSV;
+
+            InputStream in = null;
+            try {
+                in = mContext.getContentResolver().openInputStream(uri);
+                if (in == null) {
+                    return null;
+                }
+                return new InventoryImporter(mContext.getContentResolver()).importInventory(in, format,
+                        new InventoryImporter.ProgressListener() {
+                            @Override
+                            public void onProgress(InventoryImporter.Progress progress) {
+                                publishProgress(progress);
+                            }
+                        });
+            } catch (IOException | IllegalStateException | SQLException e) {
+                //JsonReader reports malformed files with IllegalStateException, and a chunk
+                //that fails to write ends the import with SQLException
+                Log.e(LOG_TAG, "Failed to import " + uri, e);
+                return null;
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // Nothing left to read
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void onProgressUpdate(InventoryImporter.Progress... progress) {
+            CatalogActivity activity = mActivity.get();
+            if (activity != null) {
+                activity.showImportProgress(progress[progress.length - 1]);
+            }
+        }
+
+        @Override
+        protected void onPostExecute(InventoryImporter.Progress result) {
+            CatalogActivity activity = mActivity.get();
+            if (activity != null) {
+                activity.showImportResult(result);
+            }
+        }
+    }
+
+    /**
+     * Helper method to insert generated product data into the database. For debugging purposes only.
+     * The seed is logged, so that the same items can be generated again.
      */
     private void insertInventory() {
+        long seed = System.currentTimeMillis();
+        Log.i(LOG_TAG, "Generating " + DUMMY_DATA_COUNT + " items with seed " + seed);
 
-        // Create a ContentValues object where column names are the keys,
-        // and BookOne's attributes are the values.
-        ContentValues values = new ContentValues();
-        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "BookOne");
-        values.put(InventoryEntry.COLUMN_PRICE, "40");
-        values.put(InventoryEntry.COLUMN_QUANTITY, "2");
-        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, "Mary");
-        values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, "2345650043");
-
-        // Insert a new row for BookOne in the database, returning the ID of that new row.
-        // The first argument for db.insert() is the inventory table name.
-        // The second argument provides the name of a column in which the framework
-        // can insert NULL in the event that the ContentValues is empty (if
-        // this is set to "null", then the framework will not insert a row when
-        // there are no values).
-        // The third argument is the ContentValues object containing the info for BookOne.
-        Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
+        // Create one ContentValues object per item, where column names are the keys
+        InventoryGenerator generator = new InventoryGenerator(seed);
+        ContentValues[] values = new ContentValues[DUMMY_DATA_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = generator.next();
+        }
+
+        // Insert the items in one transaction on the writer thread. Items whose ISBN is already
+        // in the inventory are restocked instead. The list shows the new rows once the provider
+        // notifies about the change.
+        InventoryWriteTask.bulkInsert(this, InventoryEntry.CONTENT_UPSERT_URI, values, null);
     }
 
     /**
-     * Helper method to delete all inventory in the database.
+     * Helper method to delete all inventory in the database, on the writer thread.
      */
     private void deleteAllInventory() {
-        int rowsDeleted = getContentResolver().delete(InventoryEntry.CONTENT_URI, null, null);
-        Log.v("CatalogActivity", rowsDeleted + " rows deleted from pet database");
+        InventoryWriteTask.delete(this, InventoryEntry.CONTENT_URI, null);
     }
 
     @Override
@@ -129,6 +323,23 @@ public class CatalogActivity extends AppCompatActivity implements
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        //Search the inventory as the user types in the search field
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchInventory(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                searchInventory(newText);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -136,6 +347,10 @@ public class CatalogActivity extends AppCompatActivity implements
     public boolean onOptionsItemSelected(MenuItem item) {
         // User clicked on a menu option in the app bar overflow menu
         switch (item.getItemId()) {
+            // Respond to a click on the "Import Catalog" menu option
+            case R.id.action_import:
+                pickImportFile();
+                return true;
             // Respond to a click on the "Insert dummy data" menu option
             case R.id.action_insert_dummy_data:
                 insertInventory();
@@ -148,36 +363,4 @@ public class CatalogActivity extends AppCompatActivity implements
         }
         return super.onOptionsItemSelected(item);
     }
-
-    @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Define a projection that specifies which columns from the database
-        // you will actually use after this query.
-        String[] projection = {
-                InventoryEntry._ID,
-                InventoryEntry.COLUMN_PRODUCT_NAME,
-                InventoryEntry.COLUMN_PRICE,
-                InventoryEntry.COLUMN_QUANTITY};
-
-        // This loader will execute the ContentProvider on the background thread.
-        return new CursorLoader(this,
-                InventoryEntry.CONTENT_URI,
-                projection,
-                null,
-                null,
-                null);
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        //Update {@link InventoryCursorAdapter} with this new cursor containing updated info
-        mCursorAdapter.swapCursor(data);
-    }
-
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        //Callback called when the data needs to be deleted
-        mCursorAdapter.swapCursor(null);
-
-    }
 }
@@ -28,7 +28,7 @@ import com.example.danae.bookstore.data.InventoryDbHelper;
  * Allows user to add or edit a product in the inventory
  */
 public class EditorActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        LoaderManager.LoaderCallbacks<Cursor>, InventoryWriteTask.Callback {
 
     public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
 
@@ -69,9 +69,9 @@ public class EditorActivity extends AppCompatActivity implements
     private boolean mClearAllSelected = false;
 
     /**
-     * Boolean to check if user entered required fields
+     * True while a save or delete is being written in the background
      */
-    private boolean validEntry;
+    private boolean mWritePending = false;
 
     /**
      * OnTouchListener that listens for when user touches a View, implying modification.
@@ -146,7 +146,6 @@ public class EditorActivity extends AppCompatActivity implements
                 if (mCurrentItemUri != null) {
                     //If editing an item, regular validations still apply
                     mItemHasChanged = true;
-                    validEntry = false;
                     mClearAllSelected = true;
                 }
             }
@@ -232,20 +231,19 @@ public class EditorActivity extends AppCompatActivity implements
         String supplierNameString = mSupplierNameEditText.getText().toString().trim();
         String supplierNumberString = mSupplierNumberEditText.getText().toString().trim();
 
-        //Read priceString as a number instead of text
-        float priceNumber = 0;
-        if (!TextUtils.isEmpty(priceString)) {
-            priceNumber = Float.parseFloat(priceString);
-        }
+        //Read priceString as a number of cents instead of text; -1 if it isn't a valid price
+        long priceCents = InventoryEntry.parsePrice(priceString);
 
-        //Show catered error to user if there's an empty or invalid field
+        //Show catered error to user if there's an empty or invalid field. Checked again on
+        //every save, so that fixing the fields after an error doesn't keep an earlier result.
+        boolean validEntry = false;
         if (TextUtils.isEmpty(nameString)) {
             Toast.makeText(this, getString(R.string.name_required),
                     Toast.LENGTH_SHORT).show();
         } else if (TextUtils.isEmpty(priceString)) {
             Toast.makeText(this, getString(R.string.price_required),
                     Toast.LENGTH_SHORT).show();
-        } else if (priceNumber == 0) {
+        } else if (priceCents <= 0) {
             Toast.makeText(this, getString(R.string.price_required),
                     Toast.LENGTH_SHORT).show();
         } else if (TextUtils.isEmpty(supplierNameString)) {
@@ -261,11 +259,8 @@ public class EditorActivity extends AppCompatActivity implements
             validEntry = true;
         }
 
-        //If No fields were updated, do not create Content Values
-        if (mCurrentItemUri == null && validEntry == false) {
-            return;
-        }
-        if (mCurrentItemUri != null && validEntry == false || mClearAllSelected == true) {
+        //If a field is invalid, or an existing item was cleared, do not create Content Values
+        if (!validEntry || mClearAllSelected) {
             return;
         }
 
@@ -273,41 +268,65 @@ public class EditorActivity extends AppCompatActivity implements
         //Create ContentValues object with keys as column names and user input as values
         ContentValues values = new ContentValues();
         values.put(InventoryEntry.COLUMN_PRODUCT_NAME, nameString);
-        values.put(InventoryEntry.COLUMN_PRICE, priceString);
+        InventoryEntry.putPrice(values, priceCents);
         values.put(InventoryEntry.COLUMN_QUANTITY, quantityString);
         values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, supplierNameString);
         values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, supplierNumberString);
 
-        //Determine if this is a new or existing item
+        //Determine if this is a new or existing item. The write runs in the background and
+        //onWriteFinished() reports the result.
         if (mCurrentItemUri == null) {
             // This is a NEW item; feed into provider to create content URI
-            Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
-
-            //Display a toast stating if insertion was successful
-            if (newUri == null) {
-                Toast.makeText(this, R.string.editor_insert_failed,
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, R.string.editor_insert_successful,
-                        Toast.LENGTH_SHORT).show();
-            }
+            InventoryWriteTask.insert(this, InventoryEntry.CONTENT_URI, values, this);
         } else {
             //Otherwise this item EXISTS; update the item with content URI and pass in new
-            //ContentValues. Pass in null for selection and selection arg since mCurrentItemUri
-            //already identifies row to modify.
-            int rowsAffected = getContentResolver().update(mCurrentItemUri, values,
-                    null, null);
-
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, getString(R.string.editor_update_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_update_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            //ContentValues. mCurrentItemUri already identifies row to modify.
+            InventoryWriteTask.update(this, mCurrentItemUri, values, this);
+        }
+        onWriteStarted(R.string.editor_saving);
+    }
+
+    /**
+     * Show that a write is pending, and disable saving and deleting until it finishes
+     */
+    private void onWriteStarted(int messageId) {
+        mWritePending = true;
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(messageId);
+        }
+        invalidateOptionsMenu();
+    }
+
+    /**
+     * Called on the main thread when a save or delete has been written. On success the editor
+     * closes; on failure it stays open so that the user can try again.
+     */
+    @Override
+    public void onWriteFinished(int operation, boolean succeeded) {
+        mWritePending = false;
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(null);
+        }
+
+        // Show a toast message depending on whether or not the write was successful.
+        int messageId;
+        switch (operation) {
+            case InventoryWriteTask.INSERT:
+                messageId = succeeded ? R.string.editor_insert_successful : R.string.editor_insert_failed;
+                break;
+            case InventoryWriteTask.UPDATE:
+                messageId = succeeded ? R.string.editor_update_successful : R.string.editor_update_failed;
+                break;
+            default:
+                messageId = succeeded ? R.string.editor_delete_successful : R.string.editor_delete_failed;
+                break;
+        }
+        Toast.makeText(this, messageId, Toast.LENGTH_SHORT).show();
+
+        if (succeeded) {
+            finish();
+        } else {
+            invalidateOptionsMenu();
         }
     }
 
@@ -323,6 +342,9 @@ public class EditorActivity extends AppCompatActivity implements
             MenuItem menuItem = menu.findItem(R.id.action_delete);
             menuItem.setVisible(false);
         }
+        // While a write is pending, don't start another one
+        menu.findItem(R.id.action_save).setEnabled(!mWritePending);
+        menu.findItem(R.id.action_delete).setEnabled(!mWritePending);
         return true;
     }
 
@@ -340,10 +362,9 @@ public class EditorActivity extends AppCompatActivity implements
         switch (item.getItemId()) {
             // Respond to a click on the "Save" menu_editor option
             case R.id.action_save:
-                // Save product to database
-                saveInventory();
-                if (validEntry) {
-                    finish();
+                // Save product to database; the editor closes once the save has been written
+                if (!mWritePending) {
+                    saveInventory();
                 }
                 return true;
 
@@ -486,27 +507,20 @@ public class EditorActivity extends AppCompatActivity implements
      * Perform the deletion of the item in the database.
      */
     private void deleteItem() {
+        // A save or delete is already being written
+        if (mWritePending) {
+            return;
+        }
         // Only perform the delete if this is an existing item.
-        if (mCurrentItemUri != null) {
-            // Call the ContentResolver to delete the item at the given content URI.
-            // Pass in null for the selection and selection args because the mCurrentItemUri
-            // content URI already identifies the item that we want.
-            int rowsDeleted = getContentResolver().delete(mCurrentItemUri,
-                    null, null);
-
-            // Show a toast message depending on whether or not the delete was successful.
-            if (rowsDeleted == 0) {
-                // If no rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, getString(R.string.editor_delete_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_delete_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+        if (mCurrentItemUri == null) {
+            finish();
+            return;
         }
-        // Close the activity
-        finish();
+        // Delete the item at the given content URI in the background. The mCurrentItemUri
+        // content URI already identifies the item that we want. onWriteFinished() reports
+        // the result and closes the activity.
+        InventoryWriteTask.delete(this, mCurrentItemUri, this);
+        onWriteStarted(R.string.editor_deleting);
     }
 
     @Override
@@ -532,7 +546,7 @@ public class EditorActivity extends AppCompatActivity implements
 
             // Extract out the value from the Cursor for the given column index
             String name = cursor.getString(nameColumnIndex);
-            String price = cursor.getString(priceColumnIndex);
+            String price = InventoryEntry.formatPrice(cursor.getLong(priceColumnIndex));
             String quantity = cursor.getString(quantityColumnIndex);
             String supplierName = cursor.getString(supplierNameColumnIndex);
             String supplierNumber = cursor.getString(supplierNumberColumnIndex);
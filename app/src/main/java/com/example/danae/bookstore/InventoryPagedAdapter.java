@@ -0,0 +1,287 @@
+package com.example.danae.bookstore;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryItem;
+
+/**
+ * {@link InventoryPagedAdapter} is an adapter for a {@link RecyclerView}
+ * that uses an {@link InventoryPagedList} of items as its data source. This adapter knows
+ * how to create list items for each item, and shows an empty row while an item's page is loading.
+ * Changes to the inventory only rebind, insert or remove the rows that actually changed.
+ */
+
+public class InventoryPagedAdapter extends RecyclerView.Adapter<InventoryPagedAdapter.ViewHolder>
+        implements InventoryPagedList.Callback {
+
+    /**
+     * Receives clicks on the rows of the list
+     */
+    public interface OnItemClickListener {
+
+        /**
+         * The row of the item with the given ID was clicked.
+         */
+        void onItemClick(long itemId);
+    }
+
+    private final Context mContext;
+    private final OnItemClickListener mOnItemClickListener;
+
+    /**
+     * The inventory, loaded one page at a time
+     */
+    private final InventoryPagedList mPagedList;
+
+    /**
+     * Constructs a new {@link InventoryPagedAdapter} and starts loading the inventory.
+     *
+     * @param context             The context
+     * @param onItemClickListener Receives clicks on the rows of the list
+     */
+    public InventoryPagedAdapter(Context context, OnItemClickListener onItemClickListener) {
+        mContext = context;
+        mOnItemClickListener = onItemClickListener;
+        mPagedList = new InventoryPagedList(context.getContentResolver(), this);
+    }
+
+    /**
+     * Stop loading the inventory. Call this when the list is no longer shown.
+     */
+    public void close() {
+        mPagedList.close();
+    }
+
+    /**
+     * Only show the items matching the given search words, or all items if the query is empty.
+     */
+    public void setSearchQuery(String query) {
+        mPagedList.setSearchQuery(query);
+    }
+
+    @Override
+    public void onListChanged() {
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onPageLoaded(int page) {
+        //Only the rows of the loaded page were showing as empty rows
+        int start = page * InventoryPagedList.PAGE_SIZE;
+        int count = Math.min(InventoryPagedList.PAGE_SIZE, mPagedList.getCount() - start);
+        if (count > 0) {
+            notifyItemRangeChanged(start, count);
+        }
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        notifyItemRangeInserted(position, count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        notifyItemRangeRemoved(position, count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition, toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        notifyItemRangeChanged(position, count, payload);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mPagedList.getCount();
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        //Inflate a list item view using the layout specified in the list_item.xml, and find
+        //its views once in a ViewHolder.
+        View view = LayoutInflater.from(mContext).inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        view.setTag(holder);
+        view.setOnClickListener(mRowClickListener);
+        holder.quickSaleButton.setTag(holder);
+        holder.quickSaleButton.setOnClickListener(mQuickSaleListener);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        bindView(holder, mPagedList.getItem(position));
+    }
+
+    /**
+     * This method binds the inventory data of the given item to the given list item views.
+     * For example, the name for the current product can be set on the name TextView
+     * in the list item layout. Binding doesn't allocate: numbers are formatted into the
+     * holder's own character buffers.
+     *
+     * @param holder The views of an existing list item
+     * @param item   The item to show, or null to show an empty row while the item is loading
+     */
+    static void bindView(ViewHolder holder, InventoryItem item) {
+
+        //If the item is still loading, show an empty row
+        if (item == null) {
+            holder.itemId = -1;
+            holder.nameTextView.setText(null);
+            holder.priceTextView.setText(null);
+            holder.quantityTextView.setText(null);
+            holder.quickSaleButton.setEnabled(false);
+            return;
+        }
+
+        //------------------- Implementing the TextViews -------------------------//
+
+        // Update the TextViews with the info for the current item
+        holder.nameTextView.setText(item.getName());
+
+        char[] price = holder.priceChars;
+        int priceStart = formatPrice(item.getPriceCents(), price);
+        holder.priceTextView.setText(price, priceStart, price.length - priceStart);
+
+        char[] quantity = holder.quantityChars;
+        int quantityStart = formatNumber(item.getQuantity(), quantity, quantity.length);
+        holder.quantityTextView.setText(quantity, quantityStart, quantity.length - quantityStart);
+
+        // ---------------- Implementing the QuickSaleButton -------------------//
+
+        // Remember the ID of the current item for the shared quick sale listener
+        holder.itemId = item.getId();
+        holder.quickSaleButton.setEnabled(true);
+    }
+
+    /**
+     * Write a price in cents with two decimals to the end of the buffer.
+     * Returns the index of the first character.
+     */
+    static int formatPrice(long cents, char[] buffer) {
+        int end = buffer.length;
+        buffer[end - 1] = (char) ('0' + cents % 10);
+        buffer[end - 2] = (char) ('0' + cents / 10 % 10);
+        buffer[end - 3] = '.';
+        return formatNumber(cents / 100, buffer, end - 3);
+    }
+
+    /**
+     * Write the digits of a non-negative number to the buffer, ending right before the given index.
+     * Returns the index of the first digit.
+     */
+    static int formatNumber(long number, char[] buffer, int end) {
+        int start = end;
+        do {
+            buffer[--start] = (char) ('0' + number % 10);
+            number /= 10;
+        } while (number != 0);
+        return start;
+    }
+
+    /**
+     * Opens the item shown in the clicked row. Shared by all rows; each row's tag is its ViewHolder.
+     */
+    private final View.OnClickListener mRowClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ViewHolder holder = (ViewHolder) view.getTag();
+            // Ignore clicks on rows that are still loading
+            if (holder.itemId < 0) {
+                return;
+            }
+            mOnItemClickListener.onItemClick(holder.itemId);
+        }
+    };
+
+    /**
+     * Sells one unit of the item shown in the row of the clicked button. Shared by all rows;
+     * each button's tag is the ViewHolder of its row, which holds the current item ID.
+     */
+    private final View.OnClickListener mQuickSaleListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ViewHolder holder = (ViewHolder) view.getTag();
+            if (holder.itemId < 0) {
+                return;
+            }
+            // The stock check and decrement happen in the provider, off the UI thread.
+            // The list re-reads the item and rebinds its row once the provider notifies about the change.
+            // Sales run on the thread pool, so they don't wait behind an import or other slow task.
+            new QuickSaleTask(mContext).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, holder.itemId);
+        }
+    };
+
+    /**
+     * Holds the views of one list item, so that they are only looked up when the item is created
+     */
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView nameTextView;
+        final TextView priceTextView;
+        final TextView quantityTextView;
+        final Button quickSaleButton;
+
+        /**
+         * Buffers the price and quantity are formatted into, long enough for any value
+         */
+        final char[] priceChars = new char[24];
+        final char[] quantityChars = new char[11];
+
+        /**
+         * ID of the item currently shown, or -1 while it is loading
+         */
+        long itemId = -1;
+
+        ViewHolder(View view) {
+            super(view);
+            nameTextView = view.findViewById(R.id.name);
+            priceTextView = view.findViewById(R.id.price);
+            quantityTextView = view.findViewById(R.id.quantity);
+            quickSaleButton = view.findViewById(R.id.quick_sale_button);
+        }
+    }
+
+    /**
+     * Sells one unit of an item on a background thread and reports the result with a Toast.
+     */
+    private static class QuickSaleTask extends AsyncTask<Long, Void, Integer> {
+
+        private final Context mContext;
+
+        QuickSaleTask(Context context) {
+            mContext = context.getApplicationContext();
+        }
+
+        @Override
+        protected Integer doInBackground(Long... itemIds) {
+            Bundle result = mContext.getContentResolver().call(InventoryEntry.CONTENT_URI,
+                    InventoryContract.METHOD_SELL, String.valueOf(itemIds[0]), null);
+            return result == null ? -1 : result.getInt(InventoryContract.EXTRA_QUANTITY, -1);
+        }
+
+        @Override
+        protected void onPostExecute(Integer newQuantity) {
+            // A negative stock level means there was nothing left to sell
+            if (newQuantity < 0) {
+                Toast.makeText(mContext, R.string.invalid, Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(mContext, R.string.complete, Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.text.TextUtils;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import com.example.danae.bookstore.data.InventoryContract;
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryItem;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link InventoryPagedList} reads the inventory list in fixed-size pages on a background thread.
+ * Only the pages around the current scroll position are kept in memory: pages are loaded ahead
+ * of the rows being shown and dropped once they are far off screen, so memory stays the same no
+ * matter how many items are in the inventory.
+ * <p>
+ * When the inventory changes, the loaded pages are read again and compared with the old ones on
+ * the background thread, and only the differences are reported, keyed by item ID.
+ * <p>
+ * All public methods and callbacks run on the main thread.
+ */
+public class InventoryPagedList {
+
+    /**
+     * Receives updates when the list changes. Items inserted, removed or changed by a change of
+     * the inventory are reported through the {@link ListUpdateCallback} methods.
+     */
+    public interface Callback extends ListUpdateCallback {
+
+        /**
+         * The list was loaded from scratch and may be completely different.
+         */
+        void onListChanged();
+
+        /**
+         * The items of the given page are now available.
+         */
+        void onPageLoaded(int page);
+    }
+
+    /**
+     * Number of items in one page
+     */
+    static final int PAGE_SIZE = 50;
+
+    /**
+     * Load the neighbouring page once the list gets this close to it
+     */
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+
+    /**
+     * Number of pages kept on either side of the page being shown
+     */
+    private static final int KEEP_PAGES = 2;
+
+    /**
+     * Columns read for each item of the list
+     */
+    private static final String[] PROJECTION = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY};
+
+    /**
+     * Projection used to count the items of the list
+     */
+    private static final String[] COUNT_PROJECTION = {"COUNT(*)"};
+
+    private final ContentResolver mContentResolver;
+    private final Callback mCallback;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Loaded pages, and the pages currently being loaded
+     */
+    private final SparseArray<InventoryItem[]> mPages = new SparseArray<>();
+    private final SparseBooleanArray mLoadingPages = new SparseBooleanArray();
+
+    /**
+     * Words the list is filtered by, or null to list the whole inventory
+     */
+    private String mSearchQuery;
+
+    /**
+     * Number of items in the whole list
+     */
+    private int mCount;
+
+    /**
+     * Increased on every reload and refresh, so that pages loaded for an older version of the list are dropped
+     */
+    private int mGeneration;
+
+    /**
+     * Refreshes the list when the inventory changes. A change to a single item only re-reads
+     * that item; any other change re-reads the loaded pages.
+     */
+    private final ContentObserver mObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            refresh();
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (uri != null && isItemUri(uri)) {
+                refreshItem(ContentUris.parseId(uri));
+            } else {
+                refresh();
+            }
+        }
+    };
+
+    /**
+     * Constructs a new {@link InventoryPagedList} and starts loading it.
+     *
+     * @param contentResolver The resolver to read the inventory from
+     * @param callback        Receives updates when the list changes
+     */
+    public InventoryPagedList(ContentResolver contentResolver, Callback callback) {
+        mContentResolver = contentResolver;
+        mCallback = callback;
+        mContentResolver.registerContentObserver(InventoryEntry.CONTENT_URI, true, mObserver);
+        reload();
+    }
+
+    /**
+     * Returns the number of items in the whole list
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the item at the given position, or null if its page is still loading.
+     * Loads the page if needed, and prefetches the neighbouring page when the position is close to it.
+     */
+    public InventoryItem getItem(int position) {
+        int page = position / PAGE_SIZE;
+        int offset = position % PAGE_SIZE;
+
+        loadPage(page);
+        if (offset >= PAGE_SIZE - PREFETCH_DISTANCE) {
+            loadPage(page + 1);
+        } else if (offset < PREFETCH_DISTANCE) {
+            loadPage(page - 1);
+        }
+        evictPagesAround(page);
+
+        InventoryItem[] items = mPages.get(page);
+        return items != null && offset < items.length ? items[offset] : null;
+    }
+
+    /**
+     * Only list the items matching the given search words, or the whole inventory if the
+     * query is empty. Search results are ordered by how well they match.
+     */
+    public void setSearchQuery(String query) {
+        if (query != null && query.trim().isEmpty()) {
+            query = null;
+        }
+        if (query == null ? mSearchQuery == null : query.equals(mSearchQuery)) {
+            return;
+        }
+        mSearchQuery = query;
+        reload();
+    }
+
+    /**
+     * Count the items again and drop all loaded pages. Pages are loaded again as they are shown.
+     */
+    public void reload() {
+        final int generation = ++mGeneration;
+        final Uri listUri = buildListUri();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count = queryCount(listUri);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        mCount = count;
+                        mPages.clear();
+                        mLoadingPages.clear();
+                        mCallback.onListChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Re-read the loaded pages after the inventory changed, and report the differences with the
+     * old pages. The comparison runs on the background thread. Items outside the loaded pages
+     * aren't shown, so any change in their number is reported after the loaded pages.
+     */
+    private void refresh() {
+        // Search results are ranked, so any change can reorder them; load them from scratch
+        if (mSearchQuery != null || mPages.size() == 0 || !arePagesContiguous()) {
+            reload();
+            return;
+        }
+
+        final int generation = ++mGeneration;
+        final int firstPage = mPages.keyAt(0);
+        final int oldCount = mCount;
+        final InventoryItem[] oldItems = getLoadedItems();
+        final Uri windowUri = InventoryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_OFFSET, String.valueOf(firstPage * PAGE_SIZE))
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(mPages.size() * PAGE_SIZE))
+                .build();
+        mLoadingPages.clear();
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count = queryCount(InventoryEntry.CONTENT_URI);
+                final InventoryItem[] newItems = queryPage(windowUri, InventoryEntry.SORT_ORDER_ID);
+                final DiffUtil.DiffResult diff =
+                        DiffUtil.calculateDiff(new ItemDiffCallback(oldItems, newItems), false);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        applyRefresh(firstPage, oldCount, oldItems.length, count, newItems, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Replace the loaded pages with the re-read items and report what changed.
+     */
+    private void applyRefresh(int firstPage, int oldCount, int oldItemCount, int count,
+                              InventoryItem[] newItems, DiffUtil.DiffResult diff) {
+        final int start = firstPage * PAGE_SIZE;
+
+        // Pages loaded or still loading from before the refresh are dropped, so that they are read again
+        mGeneration++;
+        mPages.clear();
+        mLoadingPages.clear();
+        for (int offset = 0; offset < newItems.length; offset += PAGE_SIZE) {
+            InventoryItem[] page = new InventoryItem[Math.min(PAGE_SIZE, newItems.length - offset)];
+            System.arraycopy(newItems, offset, page, 0, page.length);
+            mPages.put(firstPage + offset / PAGE_SIZE, page);
+        }
+        mCount = count;
+
+        diff.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int itemCount) {
+                mCallback.onInserted(start + position, itemCount);
+            }
+
+            @Override
+            public void onRemoved(int position, int itemCount) {
+                mCallback.onRemoved(start + position, itemCount);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                mCallback.onMoved(start + fromPosition, start + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int itemCount, Object payload) {
+                mCallback.onChanged(start + position, itemCount, payload);
+            }
+        });
+
+        int outsideChange = count - (oldCount - oldItemCount + newItems.length);
+        if (outsideChange > 0) {
+            mCallback.onInserted(start + newItems.length, outsideChange);
+        } else if (outsideChange < 0) {
+            mCallback.onRemoved(start + newItems.length, -outsideChange);
+        }
+    }
+
+    /**
+     * Returns true if the loaded pages follow each other without gaps.
+     */
+    private boolean arePagesContiguous() {
+        return mPages.keyAt(mPages.size() - 1) - mPages.keyAt(0) == mPages.size() - 1;
+    }
+
+    /**
+     * Returns the items of all loaded pages, in order.
+     */
+    private InventoryItem[] getLoadedItems() {
+        int size = 0;
+        for (int i = 0; i < mPages.size(); i++) {
+            size += mPages.valueAt(i).length;
+        }
+        InventoryItem[] items = new InventoryItem[size];
+        int offset = 0;
+        for (int i = 0; i < mPages.size(); i++) {
+            InventoryItem[] page = mPages.valueAt(i);
+            System.arraycopy(page, 0, items, offset, page.length);
+            offset += page.length;
+        }
+        return items;
+    }
+
+    /**
+     * Re-read a single item after it changed. An item in the loaded pages can only have changed
+     * or been deleted, which reading it tells apart, so a changed item is replaced in place
+     * without counting the list. Any other item may have been added or removed, so the items are
+     * counted as well, and the loaded pages are re-read if their number changed.
+     */
+    private void refreshItem(long itemId) {
+        // Search results can gain or lose items on any change, so reload them
+        if (mSearchQuery != null) {
+            reload();
+            return;
+        }
+
+        final boolean loaded = findLoadedPosition(itemId) >= 0;
+        final int generation = mGeneration;
+        final Uri itemUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, itemId);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count = loaded ? -1 : queryCount(InventoryEntry.CONTENT_URI);
+                final InventoryItem[] items = queryPage(itemUri, null);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        if (loaded ? items.length == 0 : count != mCount) {
+                            refresh();
+                        } else if (items.length > 0) {
+                            replaceItem(items[0]);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the position of the given item in the list if its page is loaded, or -1.
+     */
+    private int findLoadedPosition(long itemId) {
+        for (int i = 0; i < mPages.size(); i++) {
+            InventoryItem[] items = mPages.valueAt(i);
+            for (int j = 0; j < items.length; j++) {
+                if (items[j].getId() == itemId) {
+                    return mPages.keyAt(i) * PAGE_SIZE + j;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replace the loaded copy of the given item, if its page is loaded, and report the change
+     * if anything shown in the list is different.
+     */
+    private void replaceItem(InventoryItem item) {
+        int position = findLoadedPosition(item.getId());
+        if (position < 0) {
+            return;
+        }
+        InventoryItem[] items = mPages.get(position / PAGE_SIZE);
+        int offset = position % PAGE_SIZE;
+        boolean changed = !ItemDiffCallback.hasSameContents(items[offset], item);
+        items[offset] = item;
+        if (changed) {
+            mCallback.onChanged(position, 1, null);
+        }
+    }
+
+    /**
+     * Returns true if the URI points to a single item of the inventory.
+     */
+    private static boolean isItemUri(Uri uri) {
+        String lastSegment = uri.getLastPathSegment();
+        return lastSegment != null && lastSegment.matches("\\d+")
+                && uri.getPathSegments().size() == InventoryEntry.CONTENT_URI.getPathSegments().size() + 1;
+    }
+
+    /**
+     * Stop observing the inventory and loading pages. The list can't be used afterwards.
+     */
+    public void close() {
+        mContentResolver.unregisterContentObserver(mObserver);
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * Start loading the given page on the background thread, unless it is loaded or loading already.
+     */
+    private void loadPage(final int page) {
+        if (page < 0 || page * PAGE_SIZE >= mCount
+                || mPages.get(page) != null || mLoadingPages.get(page)) {
+            return;
+        }
+        mLoadingPages.put(page, true);
+
+        // When the previous page is loaded, continue right after its last item instead of
+        // skipping rows with an offset, so that scrolling down costs the same at any depth.
+        // Search results are ordered by rank, so they are always read with an offset.
+        InventoryItem[] previous = mPages.get(page - 1);
+        final Uri pageUri;
+        final String sortOrder;
+        if (mSearchQuery != null) {
+            pageUri = buildListUri().buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_OFFSET, String.valueOf(page * PAGE_SIZE))
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE))
+                    .build();
+            sortOrder = null;
+        } else if (previous != null && previous.length == PAGE_SIZE) {
+            pageUri = InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_ID,
+                            String.valueOf(previous[PAGE_SIZE - 1].getId()))
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE))
+                    .build();
+            sortOrder = InventoryEntry.SORT_ORDER_ID;
+        } else {
+            pageUri = InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_OFFSET, String.valueOf(page * PAGE_SIZE))
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE))
+                    .build();
+            sortOrder = InventoryEntry.SORT_ORDER_ID;
+        }
+
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final InventoryItem[] items = queryPage(pageUri, sortOrder);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        mLoadingPages.delete(page);
+                        mPages.put(page, items);
+                        mCallback.onPageLoaded(page);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop the pages that are too far away from the given page to be shown soon.
+     */
+    private void evictPagesAround(int page) {
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            if (Math.abs(mPages.keyAt(i) - page) > KEEP_PAGES) {
+                mPages.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the URI listing the items: the search URI while searching, the inventory otherwise.
+     */
+    private Uri buildListUri() {
+        if (mSearchQuery == null) {
+            return InventoryEntry.CONTENT_URI;
+        }
+        return InventoryEntry.CONTENT_SEARCH_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_SEARCH, mSearchQuery)
+                .build();
+    }
+
+    /**
+     * Count the items of the list. Runs on the background thread.
+     */
+    private int queryCount(Uri listUri) {
+        Cursor cursor = mContentResolver.query(listUri, COUNT_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the items of one page. Runs on the background thread.
+     */
+    private InventoryItem[] queryPage(Uri pageUri, String sortOrder) {
+        Cursor cursor = mContentResolver.query(pageUri, PROJECTION, null, null, sortOrder);
+        if (cursor == null) {
+            return new InventoryItem[0];
+        }
+        try {
+            return InventoryItem.fromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Compares two versions of the loaded items. Items are the same if they have the same ID,
+     * and their contents are the same if everything shown in the list is equal.
+     */
+    private static class ItemDiffCallback extends DiffUtil.Callback {
+
+        private final InventoryItem[] mOldItems;
+        private final InventoryItem[] mNewItems;
+
+        ItemDiffCallback(InventoryItem[] oldItems, InventoryItem[] newItems) {
+            mOldItems = oldItems;
+            mNewItems = newItems;
+        }
+
+        static boolean hasSameContents(InventoryItem oldItem, InventoryItem newItem) {
+            return oldItem.getQuantity() == newItem.getQuantity()
+                    && oldItem.getPriceCents() == newItem.getPriceCents()
+                    && TextUtils.equals(oldItem.getName(), newItem.getName());
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldItems.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewItems.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldItems[oldItemPosition].getId() == mNewItems[newItemPosition].getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return hasSameContents(mOldItems[oldItemPosition], mNewItems[newItemPosition]);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.danae.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import com.example.danae.bookstore.data.InventoryDbHelper;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Inserts, updates or deletes inventory through the content resolver on a background thread,
+ * and reports the result on the main thread. All writes run one at a time on a single writer
+ * thread, in the order they were started, so a save is never overtaken by a later delete and
+ * never waits behind a long import on the shared AsyncTask thread.
+ */
+class InventoryWriteTask extends AsyncTask<Void, Void, Boolean> {
+
+    public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
+
+    /**
+     * Kinds of write
+     */
+    static final int INSERT = 0;
+    static final int UPDATE = 1;
+    static final int DELETE = 2;
+    static final int BULK_INSERT = 3;
+
+    /**
+     * Receives the result of a write on the main thread
+     */
+    interface Callback {
+        /**
+         * @param operation {@link #INSERT}, {@link #UPDATE}, {@link #DELETE} or {@link #BULK_INSERT}
+         * @param succeeded True if a row was inserted, or at least one row updated, deleted or
+         *                  bulk inserted
+         */
+        void onWriteFinished(int operation, boolean succeeded);
+    }
+
+    /**
+     * The thread all writes run on
+     */
+    private static final Executor WRITE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final ContentResolver mContentResolver;
+    private final int mOperation;
+    private final Uri mUri;
+    private final ContentValues mValues;
+    private final ContentValues[] mBulkValues;
+
+    /**
+     * Held weakly, so that a slow write doesn't keep a closed activity in memory
+     */
+    private final WeakReference<Callback> mCallback;
+
+    private InventoryWriteTask(Context context, int operation, Uri uri, ContentValues values,
+                               ContentValues[] bulkValues, Callback callback) {
+        mContentResolver = context.getApplicationContext().getContentResolver();
+        mOperation = operation;
+        mUri = uri;
+        mValues = values;
+        mBulkValues = bulkValues;
+        mCallback = new WeakReference<>(callback);
+    }
+
+    /**
+     * Start inserting an item into the table with the given content URI
+     */
+    static void insert(Context context, Uri uri, ContentValues values, Callback callback) {
+        new InventoryWriteTask(context, INSERT, uri, values, null, callback).executeOnExecutor(WRITE_EXECUTOR);
+    }
+
+    /**
+     * Start updating the item or items at the given content URI
+     */
+    static void update(Context context, Uri uri, ContentValues values, Callback callback) {
+        new InventoryWriteTask(context, UPDATE, uri, values, null, callback).executeOnExecutor(WRITE_EXECUTOR);
+    }
+
+    /**
+     * Start deleting the item or items at the given content URI
+     */
+    static void delete(Context context, Uri uri, Callback callback) {
+        new InventoryWriteTask(context, DELETE, uri, null, null, callback).executeOnExecutor(WRITE_EXECUTOR);
+    }
+
+    /**
+     * Start inserting all of the given items, in one transaction, into the table with the given content URI
+     */
+    static void bulkInsert(Context context, Uri uri, ContentValues[] values, Callback callback) {
+        new InventoryWriteTask(context, BULK_INSERT, uri, null, values, callback).executeOnExecutor(WRITE_EXECUTOR);
+    }
+
+    @Override
+    protected Boolean doInBackground(Void... params) {
+        try {
+            switch (mOperation) {
+                case INSERT:
+                    return mContentResolver.insert(mUri, mValues) != null;
+                case UPDATE:
+                    return mContentResolver.update(mUri, mValues, null, null) != 0;
+                case DELETE:
+                    return mContentResolver.delete(mUri, null, null) != 0;
+                case BULK_INSERT:
+                    return mContentResolver.bulkInsert(mUri, mBulkValues) != 0;
+                default:
+                    throw new IllegalStateException("Unknown operation " + mOperation);
+            }
+        } catch (IllegalArgumentException | SQLException e) {
+            //The provider rejected the values, or the database failed
+            Log.e(LOG_TAG, "Failed to write " + mUri, e);
+            return false;
+        }
+    }
+
+    @Override
+    protected void onPostExecute(Boolean succeeded) {
+        Callback callback = mCallback.get();
+        if (callback != null) {
+            callback.onWriteFinished(mOperation, succeeded);
+        }
+    }
+}
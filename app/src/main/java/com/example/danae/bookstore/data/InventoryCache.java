@@ -0,0 +1,158 @@
+package com.example.danae.bookstore.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+/**
+ * In-memory cache of recently used inventory items, keyed by item ID. The least recently used
+ * items are evicted once the cache is full. Items are only cached when read from the database:
+ * the provider drops the cached copy of every item it changes once the change is committed, so
+ * cached items are never stale, whatever order concurrent writes finish in.
+ */
+class InventoryCache {
+
+    /**
+     * All columns of an item, in the order they are cached
+     */
+    static final String[] ITEM_COLUMNS = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_NUMBER};
+
+    private final LruCache<Long, InventoryItem> mItems;
+
+    /**
+     * Number of writes applied to the cache so far. Guarded by this.
+     */
+    private long mWriteCount;
+
+    /**
+     * Constructs a new cache holding at most the given number of items
+     */
+    InventoryCache(int maxItems) {
+        mItems = new LruCache<>(maxItems);
+    }
+
+    /**
+     * Returns the cached item with the given ID, or null if it isn't cached
+     */
+    InventoryItem get(long id) {
+        return mItems.get(id);
+    }
+
+    /**
+     * Returns the number of writes applied so far. Read this before reading an item from the
+     * database, and pass it to {@link #putIfUnchanged(InventoryItem, long)} afterwards.
+     */
+    synchronized long getWriteCount() {
+        return mWriteCount;
+    }
+
+    /**
+     * Cache an item read from the database, unless a write was applied since the read started.
+     * A concurrent write may have changed the row after it was read, so caching it could keep a
+     * stale copy.
+     */
+    synchronized void putIfUnchanged(InventoryItem item, long writeCount) {
+        if (writeCount == mWriteCount) {
+            mItems.put(item.getId(), item);
+        }
+    }
+
+    /**
+     * Remove the cached copy of an item
+     */
+    synchronized void remove(long id) {
+        mWriteCount++;
+        mItems.remove(id);
+    }
+
+    /**
+     * Remove all cached items, after a change that may have touched any of them
+     */
+    synchronized void clear() {
+        mWriteCount++;
+        mItems.evictAll();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached item
+     */
+    int hitCount() {
+        return mItems.hitCount();
+    }
+
+    /**
+     * Returns the number of lookups that found no cached item
+     */
+    int missCount() {
+        return mItems.missCount();
+    }
+
+    /**
+     * Returns true if every column of the projection is cached, so that a cursor can be built
+     * from a cached item. A null projection means all columns.
+     */
+    static boolean canServe(String[] projection) {
+        if (projection == null) {
+            return true;
+        }
+        for (String column : projection) {
+            if (columnIndex(column) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build a single-row cursor with the given columns of an item. A null projection means
+     * all columns.
+     */
+    static Cursor toCursor(InventoryItem item, String[] projection) {
+        if (projection == null) {
+            projection = ITEM_COLUMNS;
+        }
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            switch (columnIndex(projection[i])) {
+                case 0:
+                    row[i] = item.getId();
+                    break;
+                case 1:
+                    row[i] = item.getName();
+                    break;
+                case 2:
+                    row[i] = item.getPriceCents();
+                    break;
+                case 3:
+                    row[i] = item.getQuantity();
+                    break;
+                case 4:
+                    row[i] = item.getSupplierName();
+                    break;
+                default:
+                    row[i] = item.getSupplierNumber();
+                    break;
+            }
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    private static int columnIndex(String column) {
+        for (int i = 0; i < ITEM_COLUMNS.length; i++) {
+            if (ITEM_COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.danae.bookstore.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Coalesces the change notifications of the inventory provider. Changes reported within a short
+ * window are sent together, and each changed URI is notified only once per window. When many
+ * different items change at once, a single notification for the whole inventory is sent instead
+ * of theirs; changes of suppliers and sales are always sent as they are.
+ */
+class InventoryChangeNotifier {
+
+    /**
+     * How long changes are collected before they are sent, in milliseconds
+     */
+    private static final long COALESCE_WINDOW_MILLIS = 50;
+
+    /**
+     * Above this many changed URIs in one window, notify the whole inventory instead
+     */
+    private static final int MAX_ITEM_NOTIFICATIONS = 16;
+
+    private final ContentResolver mContentResolver;
+    private final Handler mHandler;
+
+    /**
+     * URIs changed since the last notifications were sent. Guarded by this.
+     */
+    private final Set<Uri> mPendingUris = new HashSet<>();
+
+    /**
+     * Sends the pending notifications
+     */
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Constructs a new {@link InventoryChangeNotifier} that sends notifications through the
+     * given resolver from its own background thread.
+     */
+    InventoryChangeNotifier(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+
+        HandlerThread thread = new HandlerThread(InventoryChangeNotifier.class.getSimpleName());
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Report that the data at the given URI has changed. Listeners are notified once the
+     * coalescing window has passed.
+     */
+    void notifyChange(Uri uri) {
+        synchronized (this) {
+            if (!mPendingUris.add(uri) || mPendingUris.size() > 1) {
+                // A flush is already scheduled for this window
+                return;
+            }
+        }
+        mHandler.postDelayed(mFlushRunnable, COALESCE_WINDOW_MILLIS);
+    }
+
+    /**
+     * Send the notifications for all changes reported during the last window.
+     */
+    private void flush() {
+        Uri[] uris;
+        synchronized (this) {
+            uris = mPendingUris.toArray(new Uri[mPendingUris.size()]);
+            mPendingUris.clear();
+        }
+
+        // A notification for the whole inventory also reaches the listeners of single items and
+        // of the other inventory URIs, but not those of suppliers or sales, which always get
+        // their own
+        List<Uri> inventoryUris = new ArrayList<>();
+        for (Uri uri : uris) {
+            if (isInventoryUri(uri)) {
+                inventoryUris.add(uri);
+            } else {
+                mContentResolver.notifyChange(uri, null);
+            }
+        }
+        if (inventoryUris.size() > MAX_ITEM_NOTIFICATIONS || inventoryUris.contains(InventoryEntry.CONTENT_URI)) {
+            mContentResolver.notifyChange(InventoryEntry.CONTENT_URI, null);
+            return;
+        }
+        for (Uri uri : inventoryUris) {
+            mContentResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Returns true if the URI is the whole inventory's or one under it
+     */
+    private static boolean isInventoryUri(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return InventoryContract.CONTENT_AUTHORITY.equals(uri.getAuthority())
+                && !segments.isEmpty() && InventoryContract.PATH_INVENTORY.equals(segments.get(0));
+    }
+}
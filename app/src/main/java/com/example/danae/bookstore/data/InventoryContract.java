@@ -1,6 +1,7 @@
 package com.example.danae.bookstore.data;
 
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -23,6 +24,145 @@ public final class InventoryContract {
      */
     public static final String PATH_INVENTORY = "inventory";
 
+    /**
+     * Path (appended to the inventory path) for searching the inventory
+     */
+    public static final String PATH_SEARCH = "search";
+
+    /**
+     * Path (appended to the inventory path) for exporting the inventory
+     */
+    public static final String PATH_EXPORT = "export";
+
+    /**
+     * Path (appended to the inventory path) for inserting or restocking items by ISBN
+     */
+    public static final String PATH_UPSERT = "upsert";
+
+    /**
+     * Path (appended to the inventory path) for the stock totals, and the path appended to
+     * that for the totals of each supplier
+     */
+    public static final String PATH_STATS = "stats";
+    public static final String PATH_SUPPLIER = "supplier";
+
+    /**
+     * Path (appended to the inventory path) for the items running low on stock
+     */
+    public static final String PATH_LOW_STOCK = "low_stock";
+
+    /**
+     * Possible path (appended to base content URI) for the suppliers
+     */
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    /**
+     * Possible path (appended to base content URI) for the daily sales totals
+     */
+    public static final String PATH_SALES = "sales";
+
+    /**
+     * Provider method that sells stock of a single item in one atomic step. Pass the item ID
+     * as the argument and optionally the number of units in {@link #EXTRA_QUANTITY}
+     * (one by default). The returned bundle holds the new stock level in
+     * {@link #EXTRA_QUANTITY}, or -1 if there was not enough stock to sell.
+     * Each sale is recorded in the sales ledger, see {@link SalesEntry}.
+     */
+    public static final String METHOD_SELL = "sell";
+
+    /**
+     * Provider method that reports how well the provider's item cache works. The returned bundle
+     * holds the number of cache hits and misses in {@link #EXTRA_CACHE_HITS} and
+     * {@link #EXTRA_CACHE_MISSES}.
+     */
+    public static final String METHOD_CACHE_STATS = "cache_stats";
+
+    /**
+     * Provider method that compares the per-supplier totals kept up to date on every write with
+     * totals computed from the whole inventory. Reads every item, so call it off the main thread.
+     * Pass true in {@link #EXTRA_REPAIR} to rebuild the totals if they differ. The returned bundle
+     * holds the number of wrong or missing supplier totals in {@link #EXTRA_MISMATCHES}.
+     */
+    public static final String METHOD_CHECK_SUPPLIER_SUMMARY = "check_supplier_summary";
+
+    /**
+     * Provider method that reports what the provider has been doing since it started. The
+     * returned bundle holds one bundle for each operation and content URI pattern used so far,
+     * keyed like "query inventory/#" or "update inventory", and "call sell" for provider
+     * methods ("call unknown" for methods the provider doesn't have). Each holds the number of operations in {@link #EXTRA_METRICS_COUNT}, the rows
+     * they touched or returned in {@link #EXTRA_METRICS_ROWS}, and their latency percentiles in
+     * microseconds. The rows of a query are added once its caller reads the cursor's count. Change notifications are counted under "notify" and the URI pattern.
+     */
+    public static final String METHOD_METRICS = "metrics";
+
+    /**
+     * Bundle keys of the bundles returned by {@link #METHOD_METRICS}
+     */
+    public static final String EXTRA_METRICS_COUNT = "count";
+    public static final String EXTRA_METRICS_ROWS = "rows";
+    public static final String EXTRA_METRICS_LATENCY_P50 = "latency_p50";
+    public static final String EXTRA_METRICS_LATENCY_P90 = "latency_p90";
+    public static final String EXTRA_METRICS_LATENCY_P99 = "latency_p99";
+    public static final String EXTRA_METRICS_LATENCY_MAX = "latency_max";
+
+    /**
+     * Bundle keys for the arguments and result of {@link #METHOD_CHECK_SUPPLIER_SUMMARY}
+     */
+    public static final String EXTRA_REPAIR = "repair";
+    public static final String EXTRA_MISMATCHES = "mismatches";
+
+    /**
+     * Bundle keys for the cache hit and miss counts returned by {@link #METHOD_CACHE_STATS}
+     */
+    public static final String EXTRA_CACHE_HITS = "cache_hits";
+    public static final String EXTRA_CACHE_MISSES = "cache_misses";
+
+    /**
+     * Bundle key for a quantity passed to or returned from a provider method
+     */
+    public static final String EXTRA_QUANTITY = "quantity";
+
+    /**
+     * Query parameter capping the number of rows returned for the inventory list
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Query parameter skipping the given number of rows of the inventory list.
+     * Prefer the keyset parameters below for deep pages, since skipped rows are still read.
+     */
+    public static final String QUERY_PARAMETER_OFFSET = "offset";
+
+    /**
+     * Keyset paging: only return items after the item with this ID. On its own the list is
+     * ordered by ID; together with {@link #QUERY_PARAMETER_AFTER_NAME} it is ordered by
+     * {@link InventoryEntry#SORT_ORDER_NAME}. The caller's sort order is ignored while paging.
+     */
+    public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+
+    /**
+     * Keyset paging: the name of the last item of the previous page. Requires
+     * {@link #QUERY_PARAMETER_AFTER_ID} to hold that item's ID.
+     */
+    public static final String QUERY_PARAMETER_AFTER_NAME = "after_name";
+
+    /**
+     * Query parameter holding the words to search for with {@link InventoryEntry#CONTENT_SEARCH_URI}.
+     * Each word matches the start of a word in the name or supplier of an item.
+     */
+    public static final String QUERY_PARAMETER_SEARCH = "q";
+
+    /**
+     * Query parameter for {@link InventoryEntry#CONTENT_LOW_STOCK_URI}: items with fewer units
+     * than this are low on stock. {@link #DEFAULT_LOW_STOCK_THRESHOLD} if not given.
+     */
+    public static final String QUERY_PARAMETER_THRESHOLD = "threshold";
+
+    /**
+     * Stock level below which items are low on stock, unless a threshold is given
+     */
+    public static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+
     private InventoryContract() {
     }
 
@@ -37,6 +177,60 @@ public final class InventoryContract {
          */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_INVENTORY);
 
+        /**
+         * The content URI to search the inventory by name and supplier. Items matching more of the
+         * search words come first. Supports the limit and offset query parameters.
+         */
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * The content URI to export the whole inventory as a CSV file. Open it for reading with
+         * {@link ContentResolver#openInputStream(Uri)}; the file is streamed as it is read.
+         */
+        public static final Uri CONTENT_EXPORT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_EXPORT);
+
+        /**
+         * The MIME types of the {@link #CONTENT_STATS_URI} and {@link #CONTENT_SUPPLIER_STATS_URI}.
+         */
+        public static final String CONTENT_STATS_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+        public static final String CONTENT_STATS_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_EXPORT_URI}.
+         */
+        public static final String CONTENT_EXPORT_TYPE = "text/csv";
+
+        /**
+         * The content URI to insert or restock items by ISBN with
+         * {@link ContentResolver#bulkInsert(Uri, android.content.ContentValues[])}. An item whose
+         * ISBN is already in the inventory gets the given quantity added to its stock and takes
+         * the given price, if any; other items are inserted as new items.
+         */
+        public static final Uri CONTENT_UPSERT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_UPSERT);
+
+        /**
+         * The content URI for the totals of the whole inventory. Returns a single row with the
+         * {@link #COLUMN_ITEM_COUNT}, {@link #COLUMN_TOTAL_UNITS} and {@link #COLUMN_TOTAL_VALUE}.
+         */
+        public static final Uri CONTENT_STATS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_STATS);
+
+        /**
+         * The content URI for the totals of each supplier. Returns one row per supplier, ordered
+         * by supplier, with the {@link #COLUMN_SUPPLIER_NAME} and the same totals as
+         * {@link #CONTENT_STATS_URI}. The totals are kept up to date on every write, so reading
+         * them costs the same however many items each supplier has.
+         */
+        public static final Uri CONTENT_SUPPLIER_STATS_URI = Uri.withAppendedPath(CONTENT_STATS_URI, PATH_SUPPLIER);
+
+        /**
+         * The content URI for the items with fewer units than
+         * {@link InventoryContract#QUERY_PARAMETER_THRESHOLD}, lowest stock first.
+         * Supports the limit and offset query parameters.
+         */
+        public static final Uri CONTENT_LOW_STOCK_URI = Uri.withAppendedPath(CONTENT_URI, PATH_LOW_STOCK);
+
         /**
          * The MIME type of the {@link #CONTENT_URI} for the inventory list.
          */
@@ -67,17 +261,164 @@ public final class InventoryContract {
         public static final String COLUMN_PRODUCT_NAME = "name";
 
         /**
-         * Product Price
+         * Product Price, in cents. Use {@link #parsePrice(String)} and {@link #formatPrice(long)}
+         * to convert to and from the decimal text shown to users.
          * Type: INTEGER
          */
         public static final String COLUMN_PRICE = "price";
 
         /**
-         * Product Quantity
+         * Product Quantity: the units in stock, less every sale. Selections and sort orders that
+         * use this column filter and sort by the same stock.
          * Type: INTEGER
          */
         public static final String COLUMN_QUANTITY = "quantity";
 
+        /**
+         * ID of the supplier of the product in the suppliers table
+         * Type: INTEGER
+         */
+        public static final String COLUMN_SUPPLIER_ID = SupplierEntry.COLUMN_SUPPLIER_ID;
+
+        /**
+         * Supplier Name, read from the supplier of the product. Writing a name and number
+         * links the product to the supplier with that name and number, adding it if needed.
+         * Type: TEXT
+         */
+        public static final String COLUMN_SUPPLIER_NAME = SupplierEntry.COLUMN_SUPPLIER_NAME;
+
+        /**
+         * Supplier Phone Number, read from the supplier of the product
+         * Type: TEXT
+         */
+        public static final String COLUMN_SUPPLIER_NUMBER = SupplierEntry.COLUMN_SUPPLIER_NUMBER;
+
+        /**
+         * ISBN of the product, unique across the inventory. Optional.
+         * Type: TEXT
+         */
+        public static final String COLUMN_ISBN = "isbn";
+
+        /**
+         * Number of items, in the stats
+         * Type: INTEGER
+         */
+        public static final String COLUMN_ITEM_COUNT = "item_count";
+
+        /**
+         * Number of units in stock, summed over the items, in the stats
+         * Type: INTEGER
+         */
+        public static final String COLUMN_TOTAL_UNITS = "total_units";
+
+        /**
+         * Value of the stock in cents (price times quantity, summed over the items), in the stats
+         * Type: INTEGER
+         */
+        public static final String COLUMN_TOTAL_VALUE = "total_value";
+
+        /**
+         * Sort order listing items by ID
+         */
+        public static final String SORT_ORDER_ID = _ID;
+
+        /**
+         * Sort order listing items alphabetically by name. Ties are broken by ID so that the
+         * order is stable for paging.
+         */
+        public static final String SORT_ORDER_NAME = COLUMN_PRODUCT_NAME + " COLLATE NOCASE, " + _ID;
+
+        /**
+         * Put a price in cents into the given values
+         */
+        public static void putPrice(ContentValues values, long priceCents) {
+            values.put(COLUMN_PRICE, priceCents);
+        }
+
+        /**
+         * Returns the price in cents held by the given values, or null if there is none
+         */
+        public static Long getPrice(ContentValues values) {
+            return values.getAsLong(COLUMN_PRICE);
+        }
+
+        /**
+         * Parse a decimal price such as "12", "12.5" or "12.50" into cents, without going through
+         * floating point. Returns -1 if the text isn't a non-negative price with at most two decimals.
+         */
+        public static long parsePrice(String text) {
+            if (text == null) {
+                return -1;
+            }
+            text = text.trim();
+            int point = text.indexOf('.');
+            int decimals = point == -1 ? 0 : text.length() - point - 1;
+            if (text.isEmpty() || point == 0 && text.length() == 1 || decimals > 2) {
+                return -1;
+            }
+
+            long cents = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (i == point) {
+                    continue;
+                }
+                if (c < '0' || c > '9' || cents > (Long.MAX_VALUE - 9) / 10) {
+                    return -1;
+                }
+                cents = cents * 10 + (c - '0');
+            }
+            //Scale to cents for prices with fewer than two decimals
+            for (int i = decimals; i < 2; i++) {
+                if (cents > Long.MAX_VALUE / 10) {
+                    return -1;
+                }
+                cents *= 10;
+            }
+            return cents;
+        }
+
+        /**
+         * Format a price in cents as decimal text with two decimals, such as "12.50"
+         */
+        public static String formatPrice(long priceCents) {
+            long remainder = priceCents % 100;
+            return (priceCents / 100) + (remainder < 10 ? ".0" : ".") + remainder;
+        }
+    }
+
+    /**
+     * Inner class to define the constant values for the suppliers database table.
+     * Each entry in the table is one supplier, shared by all of its products.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        /**
+         * The content URI to access the suppliers in the provider. Updating a supplier changes
+         * it for all of its products at once.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME types of the {@link #CONTENT_URI} for the list of suppliers and a single supplier.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * Name of the database table
+         */
+        public static final String TABLE_NAME = "suppliers";
+
+        /**
+         * Unique ID number for suppliers. Named apart from the product ID, so that both tables
+         * can be joined without qualifying column names. Also returned as _id.
+         * Type: INTEGER
+         */
+        public static final String COLUMN_SUPPLIER_ID = "supplier_id";
+
         /**
          * Supplier Name
          * Type: TEXT
@@ -91,4 +432,71 @@ public final class InventoryContract {
         public static final String COLUMN_SUPPLIER_NUMBER = "supplierNumber";
     }
 
+    /**
+     * Inner class to define the constant values for the sales ledger database tables.
+     * Every sale is appended to the sales events table, and never changed afterwards. A
+     * background job regularly subtracts the new events from the stock of their items and adds
+     * them to the daily totals. Reads add in the sales the job hasn't reached yet, so the stock,
+     * the totals and the {@link #CONTENT_URI} always include every sale.
+     */
+    public static final class SalesEntry implements BaseColumns {
+
+        /**
+         * The content URI to access the daily sales totals in the provider, one row for each
+         * item sold on each day
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SALES);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the daily sales totals.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SALES;
+
+        /**
+         * Name of the database table holding one row per sale
+         */
+        public static final String TABLE_NAME = "sales_events";
+
+        /**
+         * Name of the database table holding the daily totals
+         */
+        public static final String DAILY_TABLE_NAME = "sales_daily";
+
+        /**
+         * Unique ID number for sales, in the order they were made
+         * Type: INTEGER
+         */
+        public static final String _ID = BaseColumns._ID;
+
+        /**
+         * ID of the inventory item sold
+         * Type: INTEGER
+         */
+        public static final String COLUMN_ITEM_ID = "item_id";
+
+        /**
+         * Number of units sold
+         * Type: INTEGER
+         */
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        /**
+         * Time of the sale, in milliseconds since the epoch
+         * Type: INTEGER
+         */
+        public static final String COLUMN_SOLD_AT = "sold_at";
+
+        /**
+         * Day of the daily totals, as YYYY-MM-DD in local time
+         * Type: TEXT
+         */
+        public static final String COLUMN_DAY = "day";
+
+        /**
+         * Number of units of the item sold on the day
+         * Type: INTEGER
+         */
+        public static final String COLUMN_UNITS = "units";
+    }
 }
@@ -1,11 +1,20 @@
 package com.example.danae.bookstore.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.util.Log;
 
 import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SalesEntry;
+import com.example.danae.bookstore.data.InventoryContract.SupplierEntry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the database helper that manages database creations
@@ -23,13 +32,134 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
     /**
      * Database version. If you change the database schema, you must increment the database version.
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 8;
+
+    /**
+     * Name of the full-text search table that mirrors the names and suppliers of the inventory.
+     * The ID of each row (its docid) is the ID of the inventory item it mirrors.
+     */
+    static final String FTS_TABLE_NAME = "inventory_fts";
+
+    /**
+     * Name of the table holding the totals of each supplier: one row per supplier, with the
+     * supplier ID and the item count, total units and total value columns of the stats.
+     * Triggers on the inventory table keep it up to date.
+     */
+    static final String SUPPLIER_SUMMARY_TABLE_NAME = "supplier_summary";
+
+    /**
+     * Names of the secondary indexes on the inventory table
+     */
+    private static final String INDEX_NAME = "inventory_name_index";
+    private static final String INDEX_SUPPLIER = "inventory_supplier_index";
+    private static final String INDEX_QUANTITY = "inventory_quantity_index";
+    private static final String INDEX_ISBN = "inventory_isbn_index";
+    private static final String INDEX_SUPPLIER_ID = "inventory_supplier_id_index";
 
     /**
-     * Construct this helper
+     * Name of the index finding the sales events of an item
+     */
+    private static final String INDEX_SALES_ITEM = "sales_events_item_index";
+
+    /**
+     * Storage settings applied when the database is opened
+     */
+    private final InventoryStorageProfile mStorageProfile;
+
+    /**
+     * Number of writes committed since the last checkpoint of the write-ahead log
+     */
+    private final AtomicInteger mWritesSinceCheckpoint = new AtomicInteger();
+
+    /**
+     * Runs the checkpoints of the write-ahead log, away from the threads that write
+     */
+    private final ExecutorService mCheckpointExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Construct this helper with the default storage profile
      */
     public InventoryDbHelper(Context context) {
+        this(context, InventoryStorageProfile.DEFAULT);
+    }
+
+    /**
+     * Construct this helper with the given storage profile
+     */
+    public InventoryDbHelper(Context context, InventoryStorageProfile storageProfile) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mStorageProfile = storageProfile;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(storageProfile.isWriteAheadLogging());
+        }
+    }
+
+    // This is called before the database is created, upgraded or opened (API 16 and up)
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Check that every item refers to an existing supplier. The framework sets this on
+        // every connection it opens, including the ones WAL readers use later.
+        db.setForeignKeyConstraintsEnabled(true);
+        applyStorageProfile(db);
+    }
+
+    // This is called once the database is open
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        // Older versions don't call onConfigure(), so apply the profile here instead
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            if (mStorageProfile.isWriteAheadLogging() && !db.isReadOnly()) {
+                db.enableWriteAheadLogging();
+            }
+            runPragma(db, "foreign_keys = ON");
+            applyStorageProfile(db);
+        }
+    }
+
+    /**
+     * Apply the pragmas of the storage profile. They only configure the connection they run on:
+     * when the database is opened that is the primary connection, which every write uses. The
+     * extra connections the framework opens later for WAL readers keep SQLite's defaults.
+     */
+    private void applyStorageProfile(SQLiteDatabase db) {
+        runPragma(db, "synchronous = " + mStorageProfile.getSynchronous());
+        // A negative cache size is a number of kilobytes rather than pages
+        runPragma(db, "cache_size = " + -mStorageProfile.getCacheSizeKb());
+        runPragma(db, "temp_store = " + (mStorageProfile.isTempStoreInMemory() ? "MEMORY" : "DEFAULT"));
+        runPragma(db, "mmap_size = " + mStorageProfile.getMmapSizeBytes());
+    }
+
+    /**
+     * Run a pragma. Some pragmas return a row, which execSQL() doesn't allow, so read them as a query.
+     */
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Record that a write transaction was committed. Every so many commits, as set by the storage profile,
+     * the write-ahead log is checkpointed on a background thread. This keeps the log short, so
+     * that SQLite rarely has to checkpoint on the thread of a writer.
+     */
+    void onWriteCommitted() {
+        int interval = mStorageProfile.getCheckpointInterval();
+        if (!mStorageProfile.isWriteAheadLogging() || interval <= 0
+                || mWritesSinceCheckpoint.incrementAndGet() < interval) {
+            return;
+        }
+        mWritesSinceCheckpoint.set(0);
+        mCheckpointExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // A passive checkpoint copies what it can without waiting for readers or writers
+                runPragma(getWritableDatabase(), "wal_checkpoint");
+            }
+        });
     }
 
     // This is called when the database is created for the first time
@@ -47,11 +177,441 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
         //Log and execute the SQL statement
         Log.i(LOG_TAG, SQL_CREATE_ITEMS_TABLE);
         db.execSQL(SQL_CREATE_ITEMS_TABLE);
+
+        // The table above is the version one schema. Bring it up to date with the same
+        // migrations that existing databases go through.
+        onUpgrade(db, 1, DATABASE_VERSION);
     }
 
     // This is called when the database needs to be upgraded.
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version one, so there's nothing to be done here.
+        // Apply every migration between the old and the new version, one version at a time.
+        // Each migration is safe to run again on a database that already has its changes.
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Log.i(LOG_TAG, "Migrating database to version " + version);
+            migrate(db, version);
+        }
+    }
+
+    /**
+     * Apply the migration that brings the database from the previous version to the given one.
+     */
+    private static void migrate(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                createInventoryIndexes(db);
+                break;
+            case 3:
+                createSearchTable(db);
+                break;
+            case 4:
+                addIsbnColumn(db);
+                break;
+            case 5:
+                convertPricesToCents(db);
+                break;
+            case 6:
+                createSupplierSummary(db, InventoryEntry.COLUMN_SUPPLIER_NAME + " TEXT");
+                break;
+            case 7:
+                normalizeSuppliers(db);
+                break;
+            case 8:
+                createSalesLedger(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    /**
+     * Version 2: create the indexes used to search by name, look up suppliers and
+     * find low stock without scanning the whole inventory table.
+     */
+    private static void createInventoryIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SUPPLIER + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_SUPPLIER_NAME + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_QUANTITY + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_QUANTITY + ")");
+    }
+
+    /**
+     * Version 3: create the full-text search table, fill it with the existing inventory and
+     * keep it in sync with triggers on the inventory table.
+     */
+    private static void createSearchTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + FTS_TABLE_NAME + " USING fts4("
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + ")");
+
+        // Rebuild the contents, so that running this again doesn't duplicate rows
+        db.execSQL("DELETE FROM " + FTS_TABLE_NAME);
+        db.execSQL("INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ")"
+                + " SELECT " + InventoryEntry._ID + ", "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME
+                + " FROM " + InventoryEntry.TABLE_NAME);
+
+        createSearchTriggers(db);
+    }
+
+    /**
+     * Create the triggers that copy every insert, delete and name or supplier change of the
+     * inventory table into the full-text search table.
+     */
+    private static void createSearchTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_insert AFTER INSERT ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN"
+                + " INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ")"
+                + " VALUES (new." + InventoryEntry._ID + ", new." + InventoryEntry.COLUMN_PRODUCT_NAME
+                + ", new." + InventoryEntry.COLUMN_SUPPLIER_NAME + ");"
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_update AFTER UPDATE OF "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME
+                + " ON " + InventoryEntry.TABLE_NAME + " BEGIN"
+                + " UPDATE " + FTS_TABLE_NAME + " SET "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + " = new." + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + " = new." + InventoryEntry.COLUMN_SUPPLIER_NAME
+                + " WHERE docid = old." + InventoryEntry._ID + ";"
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_delete AFTER DELETE ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN"
+                + " DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + InventoryEntry._ID + ";"
+                + " END");
+    }
+
+    /**
+     * Version 4: add the ISBN column, with a unique index so that items can be found and
+     * restocked by ISBN. Items without an ISBN are left as they are.
+     */
+    private static void addIsbnColumn(SQLiteDatabase db) {
+        if (!hasColumn(db, InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_ISBN)) {
+            db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                    + InventoryEntry.COLUMN_ISBN + " TEXT");
+        }
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_ISBN + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_ISBN + ")");
+    }
+
+    /**
+     * Version 5: store prices as INTEGER cents instead of REAL. SQLite can't change the type of
+     * a column, so the table is copied into a new one with the same IDs, and the indexes and
+     * search triggers dropped with the old table are created again.
+     */
+    private static void convertPricesToCents(SQLiteDatabase db) {
+        if ("INTEGER".equalsIgnoreCase(getColumnType(db, InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_PRICE))) {
+            return;
+        }
+        String newTable = InventoryEntry.TABLE_NAME + "_new";
+        db.execSQL("DROP TABLE IF EXISTS " + newTable);
+        db.execSQL("CREATE TABLE " + newTable + " ("
+                + InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                + InventoryEntry.COLUMN_PRICE + " INTEGER NOT NULL, "
+                + InventoryEntry.COLUMN_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+                + InventoryEntry.COLUMN_SUPPLIER_NUMBER + " TEXT NOT NULL, "
+                + InventoryEntry.COLUMN_ISBN + " TEXT)");
+
+        // Prices could have been stored as text or with more than two decimals, so round them
+        String columns = InventoryEntry._ID + ", " + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + InventoryEntry.COLUMN_PRICE + ", " + InventoryEntry.COLUMN_QUANTITY + ", "
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NUMBER + ", "
+                + InventoryEntry.COLUMN_ISBN;
+        db.execSQL("INSERT INTO " + newTable + " (" + columns + ")"
+                + " SELECT " + InventoryEntry._ID + ", " + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + "CAST(ROUND(CAST(" + InventoryEntry.COLUMN_PRICE + " AS REAL) * 100) AS INTEGER), "
+                + InventoryEntry.COLUMN_QUANTITY + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                + InventoryEntry.COLUMN_SUPPLIER_NUMBER + ", " + InventoryEntry.COLUMN_ISBN
+                + " FROM " + InventoryEntry.TABLE_NAME);
+
+        db.execSQL("DROP TABLE " + InventoryEntry.TABLE_NAME);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + InventoryEntry.TABLE_NAME);
+
+        createInventoryIndexes(db);
+        addIsbnColumn(db);
+        createSearchTriggers(db);
+    }
+
+    /**
+     * Version 6: create the supplier summary table, fill it from the existing inventory and
+     * keep it up to date with triggers on the inventory table.
+     *
+     * @param keyColumn Definition of the column identifying the supplier: its name up to
+     *                  version 6, its ID from version 7
+     */
+    private static void createSupplierSummary(SQLiteDatabase db, String keyColumn) {
+        String key = keyColumn.substring(0, keyColumn.indexOf(' '));
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + SUPPLIER_SUMMARY_TABLE_NAME + " ("
+                + keyColumn + " PRIMARY KEY, "
+                + InventoryEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL, "
+                + InventoryEntry.COLUMN_TOTAL_UNITS + " INTEGER NOT NULL, "
+                + InventoryEntry.COLUMN_TOTAL_VALUE + " INTEGER NOT NULL)");
+        db.execSQL("DELETE FROM " + SUPPLIER_SUMMARY_TABLE_NAME);
+        db.execSQL("INSERT INTO " + SUPPLIER_SUMMARY_TABLE_NAME + " " + computeSupplierSummary(key));
+        createSupplierSummaryTriggers(db, key);
+    }
+
+    /**
+     * Create the triggers that apply every insert, delete and change of the supplier, quantity
+     * or price of an item to the totals of its supplier. Each trigger only touches the rows of
+     * the suppliers involved, so writes cost the same however large the inventory is.
+     */
+    private static void createSupplierSummaryTriggers(SQLiteDatabase db, String key) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SUPPLIER_SUMMARY_TABLE_NAME + "_insert AFTER INSERT ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN"
+                + addToSupplierSummary("new", key)
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SUPPLIER_SUMMARY_TABLE_NAME + "_update AFTER UPDATE OF "
+                + key + ", " + InventoryEntry.COLUMN_QUANTITY + ", "
+                + InventoryEntry.COLUMN_PRICE + " ON " + InventoryEntry.TABLE_NAME + " BEGIN"
+                + removeFromSupplierSummary("old", key)
+                + addToSupplierSummary("new", key)
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SUPPLIER_SUMMARY_TABLE_NAME + "_delete AFTER DELETE ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN"
+                + removeFromSupplierSummary("old", key)
+                + " END");
+    }
+
+    /**
+     * Trigger statements adding the "new" or "old" row to the totals of its supplier
+     */
+    private static String addToSupplierSummary(String row, String key) {
+        return " INSERT OR IGNORE INTO " + SUPPLIER_SUMMARY_TABLE_NAME + " VALUES ("
+                + row + "." + key + ", 0, 0, 0);"
+                + " UPDATE " + SUPPLIER_SUMMARY_TABLE_NAME + " SET "
+                + InventoryEntry.COLUMN_ITEM_COUNT + " = " + InventoryEntry.COLUMN_ITEM_COUNT + " + 1, "
+                + InventoryEntry.COLUMN_TOTAL_UNITS + " = " + InventoryEntry.COLUMN_TOTAL_UNITS
+                + " + " + row + "." + InventoryEntry.COLUMN_QUANTITY + ", "
+                + InventoryEntry.COLUMN_TOTAL_VALUE + " = " + InventoryEntry.COLUMN_TOTAL_VALUE
+                + " + " + row + "." + InventoryEntry.COLUMN_QUANTITY + " * " + row + "." + InventoryEntry.COLUMN_PRICE
+                + " WHERE " + key + " = " + row + "." + key + ";";
+    }
+
+    /**
+     * Trigger statements removing the "new" or "old" row from the totals of its supplier.
+     * Suppliers without items are dropped.
+     */
+    private static String removeFromSupplierSummary(String row, String key) {
+        return " UPDATE " + SUPPLIER_SUMMARY_TABLE_NAME + " SET "
+                + InventoryEntry.COLUMN_ITEM_COUNT + " = " + InventoryEntry.COLUMN_ITEM_COUNT + " - 1, "
+                + InventoryEntry.COLUMN_TOTAL_UNITS + " = " + InventoryEntry.COLUMN_TOTAL_UNITS
+                + " - " + row + "." + InventoryEntry.COLUMN_QUANTITY + ", "
+                + InventoryEntry.COLUMN_TOTAL_VALUE + " = " + InventoryEntry.COLUMN_TOTAL_VALUE
+                + " - " + row + "." + InventoryEntry.COLUMN_QUANTITY + " * " + row + "." + InventoryEntry.COLUMN_PRICE
+                + " WHERE " + key + " = " + row + "." + key + ";"
+                + " DELETE FROM " + SUPPLIER_SUMMARY_TABLE_NAME
+                + " WHERE " + key + " = " + row + "." + key
+                + " AND " + InventoryEntry.COLUMN_ITEM_COUNT + " = 0;";
+    }
+
+    /**
+     * Returns the query computing the totals of each supplier from the inventory table, in the
+     * column order of the supplier summary table
+     */
+    private static String computeSupplierSummary(String key) {
+        return "SELECT " + key + ", COUNT(*), "
+                + "SUM(" + InventoryEntry.COLUMN_QUANTITY + "), "
+                + "SUM(" + InventoryEntry.COLUMN_QUANTITY + " * " + InventoryEntry.COLUMN_PRICE + ")"
+                + " FROM " + InventoryEntry.TABLE_NAME
+                + " GROUP BY " + key;
+    }
+
+    /**
+     * Recompute the whole supplier summary table from the inventory table.
+     */
+    static void rebuildSupplierSummary(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + SUPPLIER_SUMMARY_TABLE_NAME);
+        db.execSQL("INSERT INTO " + SUPPLIER_SUMMARY_TABLE_NAME + " "
+                + computeSupplierSummary(InventoryEntry.COLUMN_SUPPLIER_ID));
+    }
+
+    /**
+     * Compare the supplier summary table with totals computed from the inventory table, and
+     * rebuild it if they differ and repair is true. This reads the whole inventory, so run it
+     * off the main thread, for example after restoring a backup or in a periodic check.
+     *
+     * @return The number of summary rows that are wrong or missing, 0 if the summary is consistent
+     */
+    static int checkSupplierSummary(SQLiteDatabase db, boolean repair) {
+        String columns = InventoryEntry.COLUMN_SUPPLIER_ID + ", " + InventoryEntry.COLUMN_ITEM_COUNT + ", "
+                + InventoryEntry.COLUMN_TOTAL_UNITS + ", " + InventoryEntry.COLUMN_TOTAL_VALUE;
+        String stored = "SELECT " + columns + " FROM " + SUPPLIER_SUMMARY_TABLE_NAME;
+        String computed = computeSupplierSummary(InventoryEntry.COLUMN_SUPPLIER_ID);
+
+        db.beginTransaction();
+        try {
+            //Rows of either side that have no equal row on the other side
+            int mismatches = (int) (DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM ("
+                    + stored + " EXCEPT " + computed + ")", null)
+                    + DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM ("
+                    + computed + " EXCEPT " + stored + ")", null));
+            if (mismatches != 0) {
+                Log.w(LOG_TAG, mismatches + " supplier summary rows are inconsistent");
+                if (repair) {
+                    rebuildSupplierSummary(db);
+                }
+            }
+            db.setTransactionSuccessful();
+            return mismatches;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Version 7: move the supplier names and numbers into their own table, each distinct pair
+     * stored once, and link every item to its supplier by ID. The inventory table is copied into
+     * one with a supplier ID column, keeping the item IDs. Everything that read the supplier
+     * columns of the inventory table is created again for the new schema: the indexes, the
+     * search triggers and the supplier summary, which is now keyed by supplier ID.
+     */
+    private static void normalizeSuppliers(SQLiteDatabase db) {
+        if (hasColumn(db, InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_SUPPLIER_ID)) {
+            return;
+        }
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + SupplierEntry.TABLE_NAME + " ("
+                + SupplierEntry.COLUMN_SUPPLIER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+                + SupplierEntry.COLUMN_SUPPLIER_NUMBER + " TEXT NOT NULL, "
+                + "UNIQUE (" + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_NUMBER + "))");
+        db.execSQL("INSERT OR IGNORE INTO " + SupplierEntry.TABLE_NAME + " ("
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_NUMBER + ")"
+                + " SELECT DISTINCT " + InventoryEntry.COLUMN_SUPPLIER_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NUMBER
+                + " FROM " + InventoryEntry.TABLE_NAME);
+
+        String newTable = InventoryEntry.TABLE_NAME + "_new";
+        db.execSQL("DROP TABLE IF EXISTS " + newTable);
+        db.execSQL("CREATE TABLE " + newTable + " ("
+                + InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                + InventoryEntry.COLUMN_PRICE + " INTEGER NOT NULL, "
+                + InventoryEntry.COLUMN_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + InventoryEntry.COLUMN_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+                + SupplierEntry.TABLE_NAME + " (" + SupplierEntry.COLUMN_SUPPLIER_ID + "), "
+                + InventoryEntry.COLUMN_ISBN + " TEXT)");
+
+        // The unique index on the supplier name and number finds each item's supplier
+        db.execSQL("INSERT INTO " + newTable + " ("
+                + InventoryEntry._ID + ", " + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + InventoryEntry.COLUMN_PRICE + ", " + InventoryEntry.COLUMN_QUANTITY + ", "
+                + InventoryEntry.COLUMN_SUPPLIER_ID + ", " + InventoryEntry.COLUMN_ISBN + ")"
+                + " SELECT i." + InventoryEntry._ID + ", i." + InventoryEntry.COLUMN_PRODUCT_NAME + ", i."
+                + InventoryEntry.COLUMN_PRICE + ", i." + InventoryEntry.COLUMN_QUANTITY + ", s."
+                + SupplierEntry.COLUMN_SUPPLIER_ID + ", i." + InventoryEntry.COLUMN_ISBN
+                + " FROM " + InventoryEntry.TABLE_NAME + " AS i JOIN " + SupplierEntry.TABLE_NAME + " AS s"
+                + " ON s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " = i." + InventoryEntry.COLUMN_SUPPLIER_NAME
+                + " AND s." + SupplierEntry.COLUMN_SUPPLIER_NUMBER + " = i." + InventoryEntry.COLUMN_SUPPLIER_NUMBER);
+
+        // Dropping the old table drops its indexes and triggers as well
+        db.execSQL("DROP TABLE " + InventoryEntry.TABLE_NAME);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + InventoryEntry.TABLE_NAME);
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SUPPLIER_ID + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_SUPPLIER_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_QUANTITY + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_QUANTITY + ")");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_ISBN + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_ISBN + ")");
+
+        createSupplierSearchTriggers(db);
+
+        db.execSQL("DROP TABLE IF EXISTS " + SUPPLIER_SUMMARY_TABLE_NAME);
+        createSupplierSummary(db, InventoryEntry.COLUMN_SUPPLIER_ID + " INTEGER");
+    }
+
+    /**
+     * Create the triggers that keep the full-text search table in sync once suppliers have
+     * their own table. The supplier name of an item is looked up by its supplier ID, and
+     * renaming a supplier renames it in the search rows of all of its items.
+     */
+    private static void createSupplierSearchTriggers(SQLiteDatabase db) {
+        String supplierName = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_NAME + " FROM " + SupplierEntry.TABLE_NAME
+                + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_ID + " = new." + InventoryEntry.COLUMN_SUPPLIER_ID + ")";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_insert AFTER INSERT ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN"
+                + " INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ")"
+                + " VALUES (new." + InventoryEntry._ID + ", new." + InventoryEntry.COLUMN_PRODUCT_NAME
+                + ", " + supplierName + ");"
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_update AFTER UPDATE OF "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_ID
+                + " ON " + InventoryEntry.TABLE_NAME + " BEGIN"
+                + " UPDATE " + FTS_TABLE_NAME + " SET "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + " = new." + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + " = " + supplierName
+                + " WHERE docid = old." + InventoryEntry._ID + ";"
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_delete AFTER DELETE ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN"
+                + " DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + InventoryEntry._ID + ";"
+                + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE_NAME + "_supplier_update AFTER UPDATE OF "
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + " ON " + SupplierEntry.TABLE_NAME + " BEGIN"
+                + " UPDATE " + FTS_TABLE_NAME + " SET " + InventoryEntry.COLUMN_SUPPLIER_NAME
+                + " = new." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                + " WHERE docid IN (SELECT " + InventoryEntry._ID + " FROM " + InventoryEntry.TABLE_NAME
+                + " WHERE " + InventoryEntry.COLUMN_SUPPLIER_ID + " = new." + SupplierEntry.COLUMN_SUPPLIER_ID + ");"
+                + " END");
+    }
+
+    /**
+     * Version 8: create the sales ledger. Events are never deleted, so their autoincrement IDs
+     * always grow and the compaction mark can be a single ID. The index on the item ID also
+     * holds the event ID, so the uncompacted events of an item are one range of the index.
+     */
+    private static void createSalesLedger(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + SalesEntry.TABLE_NAME + " ("
+                + SalesEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SalesEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                + SalesEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, "
+                + SalesEntry.COLUMN_SOLD_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SALES_ITEM + " ON " + SalesEntry.TABLE_NAME
+                + " (" + SalesEntry.COLUMN_ITEM_ID + ")");
+
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + SalesLedger.COMPACTION_TABLE_NAME + " ("
+                + SalesLedger.COLUMN_LAST_EVENT_ID + " INTEGER NOT NULL)");
+        db.execSQL("INSERT INTO " + SalesLedger.COMPACTION_TABLE_NAME
+                + " SELECT 0 WHERE NOT EXISTS (SELECT 1 FROM " + SalesLedger.COMPACTION_TABLE_NAME + ")");
+
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + SalesEntry.DAILY_TABLE_NAME + " ("
+                + SalesEntry.COLUMN_DAY + " TEXT NOT NULL, "
+                + SalesEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                + SalesEntry.COLUMN_UNITS + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + SalesEntry.COLUMN_DAY + ", " + SalesEntry.COLUMN_ITEM_ID + "))");
+    }
+
+    /**
+     * Returns true if the given table has a column with the given name.
+     */
+    private static boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        return getColumnType(db, table, column) != null;
+    }
+
+    /**
+     * Returns the declared type of a column of the given table, or null if there is no such column.
+     */
+    private static String getColumnType(SQLiteDatabase db, String table, String column) {
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int nameColumnIndex = cursor.getColumnIndexOrThrow("name");
+            int typeColumnIndex = cursor.getColumnIndexOrThrow("type");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameColumnIndex))) {
+                    return cursor.getString(typeColumnIndex);
+                }
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
     }
 }
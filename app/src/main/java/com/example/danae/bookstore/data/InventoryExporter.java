@@ -0,0 +1,234 @@
+package com.example.danae.bookstore.data;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SupplierEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes the whole inventory as CSV to a channel. The table is read in chunks ordered by ID,
+ * each continuing after the last ID of the previous one, so every chunk costs the same.
+ * Text columns are copied into a reused character buffer and encoded straight into a reused
+ * byte buffer, so no strings are created per row and memory stays flat for any catalog size.
+ * <p>
+ * Chunks are separate queries, so items inserted while the export runs may or may not be
+ * included, but no item is written twice.
+ */
+class InventoryExporter {
+
+    /**
+     * Number of rows read by each query
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Size of the output buffer, flushed to the channel whenever it fills up
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Columns written for each item, in order. The first line of the file names them.
+     */
+    private static final String[] COLUMNS = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_NUMBER,
+            InventoryEntry.COLUMN_ISBN};
+
+    /**
+     * Query reading the next chunk after the given ID. The stock includes the sales not
+     * compacted yet, as every other query of the provider does.
+     */
+    private static final String SQL_CHUNK = "SELECT " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + ", "
+            + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+            + InventoryEntry.COLUMN_PRICE + ", "
+            + SalesLedger.currentQuantity() + " AS " + InventoryEntry.COLUMN_QUANTITY + ", "
+            + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryEntry.COLUMN_SUPPLIER_NUMBER + ", "
+            + InventoryEntry.COLUMN_ISBN
+            + " FROM " + InventoryEntry.TABLE_NAME + " JOIN " + SupplierEntry.TABLE_NAME
+            + " USING (" + InventoryEntry.COLUMN_SUPPLIER_ID + ")"
+            + " WHERE " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " > ?"
+            + " ORDER BY " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+            + " LIMIT " + CHUNK_SIZE;
+
+    private final SQLiteDatabase mDatabase;
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharArrayBuffer mChars = new CharArrayBuffer(128);
+    private final char[] mDigits = new char[24];
+
+    /**
+     * Constructs a new {@link InventoryExporter} reading from the given database
+     * and writing to the given channel
+     */
+    InventoryExporter(SQLiteDatabase database, WritableByteChannel channel) {
+        mDatabase = database;
+        mChannel = channel;
+    }
+
+    /**
+     * Write the header line and every item. The channel is not closed.
+     */
+    void export() throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i != 0) {
+                writeByte(',');
+            }
+            writeAscii(COLUMNS[i]);
+        }
+        writeByte('\n');
+
+        String[] args = new String[1];
+        long lastId = -1;
+        int rowsRead;
+        do {
+            args[0] = String.valueOf(lastId);
+            Cursor cursor = mDatabase.rawQuery(SQL_CHUNK, args);
+            try {
+                rowsRead = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    writeRow(cursor, lastId);
+                }
+            } finally {
+                cursor.close();
+            }
+        } while (rowsRead == CHUNK_SIZE);
+
+        flush();
+    }
+
+    /**
+     * Write the current row of the cursor as one line
+     */
+    private void writeRow(Cursor cursor, long id) throws IOException {
+        writeNumber(id);
+        writeByte(',');
+        writeText(cursor, 1);
+        writeByte(',');
+        writePrice(cursor.getLong(2));
+        writeByte(',');
+        writeNumber(cursor.getLong(3));
+        writeByte(',');
+        writeText(cursor, 4);
+        writeByte(',');
+        writeText(cursor, 5);
+        writeByte(',');
+        writeText(cursor, 6);
+        writeByte('\n');
+    }
+
+    /**
+     * Write a text column in UTF-8, quoting it if it holds a comma, quote or line break
+     */
+    private void writeText(Cursor cursor, int column) throws IOException {
+        cursor.copyStringToBuffer(column, mChars);
+        char[] chars = mChars.data;
+        int length = mChars.sizeCopied;
+
+        boolean quote = false;
+        for (int i = 0; i < length && !quote; i++) {
+            char c = chars[i];
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (quote) {
+            writeByte('"');
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c == '"') {
+                writeByte('"');
+            }
+            if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(chars[i + 1])) {
+                int codePoint = Character.toCodePoint(c, chars[++i]);
+                writeByte(0xf0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                writeByte(0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                //Half of a pair has no UTF-8 encoding, so it's replaced as String.getBytes does
+                writeByte('?');
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        if (quote) {
+            writeByte('"');
+        }
+    }
+
+    /**
+     * Write a price in cents with two decimals
+     */
+    private void writePrice(long cents) throws IOException {
+        if (cents < 0) {
+            writeByte('-');
+            cents = -cents;
+        }
+        writeNumber(cents / 100);
+        writeByte('.');
+        writeByte('0' + (int) (cents / 10 % 10));
+        writeByte('0' + (int) (cents % 10));
+    }
+
+    /**
+     * Write the digits of a number
+     */
+    private void writeNumber(long number) throws IOException {
+        if (number < 0) {
+            writeByte('-');
+            number = -number;
+        }
+        int start = mDigits.length;
+        do {
+            mDigits[--start] = (char) ('0' + number % 10);
+            number /= 10;
+        } while (number != 0);
+        for (int i = start; i < mDigits.length; i++) {
+            writeByte(mDigits[i]);
+        }
+    }
+
+    private void writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (!mBuffer.hasRemaining()) {
+            flush();
+        }
+        mBuffer.put((byte) b);
+    }
+
+    /**
+     * Write the buffered bytes to the channel
+     */
+    private void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+}
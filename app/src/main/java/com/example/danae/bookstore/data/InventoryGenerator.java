@@ -0,0 +1,192 @@
+package com.example.danae.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates realistic inventory items for testing, from a seed: the same seed always gives the
+ * same items in the same order.
+ * <p>
+ * A few suppliers carry most of the items, as in a real store. Prices cluster around a typical
+ * book price with a long tail of expensive ones, most items have a small stock and some have
+ * none, and a few titles are very long. Every item gets a valid ISBN-13; the items of one
+ * generator never share an ISBN.
+ */
+public class InventoryGenerator {
+
+    /**
+     * Number of distinct suppliers
+     */
+    private static final int SUPPLIER_COUNT = 200;
+
+    /**
+     * Number of rows written in one transaction
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    /**
+     * Most items one generator hands out before its ISBNs would repeat
+     */
+    private static final int MAX_ITEMS = 100000000;
+
+    /**
+     * Typical price in cents, and how widely prices spread around it
+     */
+    private static final double MEDIAN_PRICE_CENTS = 1200;
+    private static final double PRICE_SPREAD = 0.6;
+    private static final long MAX_PRICE_CENTS = 50000;
+
+    /**
+     * Average stock, and the fraction of items that are sold out
+     */
+    private static final double MEAN_QUANTITY = 20;
+    private static final double SOLD_OUT_FRACTION = 0.1;
+
+    /**
+     * Fraction of titles that are much longer than usual
+     */
+    private static final double LONG_TITLE_FRACTION = 0.05;
+
+    private static final String[] TITLE_WORDS = {
+            "The", "A", "Of", "And", "In", "Night", "House", "River", "Garden", "Secret", "Last",
+            "First", "Little", "Dark", "Light", "City", "Winter", "Summer", "Journey", "History",
+            "Guide", "Art", "Science", "Kingdom", "Letters", "Stars", "Sea", "Mountain", "Stories",
+            "Silent", "Broken", "Golden", "Lost", "Road", "Home", "Fire", "Glass", "Memory", "Island",
+            "Forest", "Shadow", "Song", "Empire", "Children", "War", "Dreams", "Book", "Time", "World"};
+
+    private static final String[] SUPPLIER_WORDS = {
+            "Atlas", "Beacon", "Cedar", "Harbor", "Lantern", "Meridian", "Northwind", "Orchard",
+            "Pinnacle", "Quill", "Riverside", "Summit", "Tidewater", "Union", "Vista", "Willow"};
+
+    private final Random mRandom;
+    private final long mFirstIsbn;
+    private int mItemsGenerated;
+
+    /**
+     * Constructs a new {@link InventoryGenerator} for the given seed
+     */
+    public InventoryGenerator(long seed) {
+        mRandom = new Random(seed);
+        mFirstIsbn = (long) (mRandom.nextDouble() * (1000000000L - MAX_ITEMS));
+    }
+
+    /**
+     * Returns the next item
+     */
+    public ContentValues next() {
+        ContentValues values = new ContentValues(6);
+        next(values);
+        return values;
+    }
+
+    /**
+     * Put the columns of the next item into the given values, replacing the ones already there
+     */
+    public void next(ContentValues values) {
+        if (mItemsGenerated == MAX_ITEMS) {
+            throw new IllegalStateException("Generated " + MAX_ITEMS + " items, ISBNs would repeat");
+        }
+        int supplier = nextSupplier();
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, nextTitle());
+        InventoryEntry.putPrice(values, nextPrice());
+        values.put(InventoryEntry.COLUMN_QUANTITY, nextQuantity());
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, supplierName(supplier));
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, supplierNumber(supplier));
+        values.put(InventoryEntry.COLUMN_ISBN, getIsbn(mItemsGenerated));
+        mItemsGenerated++;
+    }
+
+    /**
+     * Returns the ISBN of the item with the given position in this generator's sequence. ISBNs
+     * grow with the position and have the same length, so the items of a range of positions
+     * are a range of ISBNs.
+     */
+    public String getIsbn(int position) {
+        long body = 978000000000L + mFirstIsbn + position;
+        String digits = String.valueOf(body);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Insert the given number of new items through the resolver, in chunks of one transaction
+     * each, so memory stays the same however many items are inserted. Items whose ISBN is
+     * already in the inventory restock it instead. Blocks until all items are written, so it
+     * must run on a worker thread.
+     *
+     * @return The number of items inserted or restocked
+     */
+    public int insert(ContentResolver contentResolver, int count) {
+        ContentValues[] chunk = new ContentValues[Math.min(count, CHUNK_SIZE)];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = new ContentValues(6);
+        }
+
+        int rowsInserted = 0;
+        int remaining = count;
+        while (remaining > 0) {
+            int size = Math.min(remaining, chunk.length);
+            for (int i = 0; i < size; i++) {
+                next(chunk[i]);
+            }
+            rowsInserted += contentResolver.bulkInsert(InventoryEntry.CONTENT_UPSERT_URI,
+                    size == chunk.length ? chunk : Arrays.copyOf(chunk, size));
+            remaining -= size;
+        }
+        return rowsInserted;
+    }
+
+    /**
+     * Pick a supplier. The chance of each falls with its rank, roughly as 1 / rank, so the
+     * first few suppliers carry most of the items.
+     */
+    private int nextSupplier() {
+        return (int) Math.pow(SUPPLIER_COUNT + 1, mRandom.nextDouble()) - 1;
+    }
+
+    private String nextTitle() {
+        int words = mRandom.nextDouble() < LONG_TITLE_FRACTION ? 20 + mRandom.nextInt(21) : 1 + mRandom.nextInt(6);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(TITLE_WORDS[mRandom.nextInt(TITLE_WORDS.length)]);
+        }
+        return title.toString();
+    }
+
+    /**
+     * Prices are log-normal around the median price
+     */
+    private long nextPrice() {
+        double price = MEDIAN_PRICE_CENTS * Math.exp(PRICE_SPREAD * mRandom.nextGaussian());
+        return Math.max(99, Math.min(MAX_PRICE_CENTS, Math.round(price)));
+    }
+
+    /**
+     * Stock is exponential around the mean, so most items have only a few units
+     */
+    private int nextQuantity() {
+        if (mRandom.nextDouble() < SOLD_OUT_FRACTION) {
+            return 0;
+        }
+        return 1 + (int) (-MEAN_QUANTITY * Math.log(1 - mRandom.nextDouble()));
+    }
+
+    private static String supplierName(int supplier) {
+        return SUPPLIER_WORDS[supplier % SUPPLIER_WORDS.length] + " Books " + (supplier / SUPPLIER_WORDS.length + 1);
+    }
+
+    private static String supplierNumber(int supplier) {
+        return String.valueOf(5550000000L + supplier);
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.danae.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Imports inventory items from a supplier catalog in CSV or JSON format.
+ * <p>
+ * The file is streamed: rows are parsed one at a time and written in chunks, so memory stays
+ * the same no matter how long the file is. Every row is checked with the same rules as an
+ * insert through {@link InventoryProvider}; invalid rows are counted and skipped. Each chunk is
+ * written with one {@link ContentResolver#bulkInsert} call, which runs in a single transaction.
+ * Items with an ISBN that is already in the inventory are restocked instead of duplicated, so
+ * the same feed can be imported again.
+ * <p>
+ * CSV files start with a header line naming the columns, using the column names of
+ * {@link InventoryEntry}. JSON files hold an array of objects with the same names as keys.
+ * Unknown columns and keys are ignored.
+ * <p>
+ * Imports block until the whole file is read, so they must run on a worker thread.
+ */
+public class InventoryImporter {
+
+    public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
+
+    /**
+     * Formats of the files that can be imported
+     */
+    public enum Format {
+        CSV,
+        JSON
+    }
+
+    /**
+     * Receives progress updates during an import. Called on the importing thread after each chunk.
+     */
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * Counts of the rows processed by an import so far
+     */
+    public static final class Progress {
+
+        private final int mRowsRead;
+        private final int mRowsImported;
+        private final int mRowsRejected;
+        private final long mElapsedMillis;
+
+        Progress(int rowsRead, int rowsImported, int rowsRejected, long elapsedMillis) {
+            mRowsRead = rowsRead;
+            mRowsImported = rowsImported;
+            mRowsRejected = rowsRejected;
+            mElapsedMillis = elapsedMillis;
+        }
+
+        public int getRowsRead() {
+            return mRowsRead;
+        }
+
+        public int getRowsImported() {
+            return mRowsImported;
+        }
+
+        public int getRowsRejected() {
+            return mRowsRejected;
+        }
+
+        public long getElapsedMillis() {
+            return mElapsedMillis;
+        }
+
+        /**
+         * Returns the number of rows read per second so far
+         */
+        public int getRowsPerSecond() {
+            return mElapsedMillis == 0 ? mRowsRead : (int) (mRowsRead * 1000L / mElapsedMillis);
+        }
+    }
+
+    /**
+     * Number of rows written in one transaction
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    /**
+     * Only the first rejected rows are logged, so that a bad file doesn't flood the log
+     */
+    private static final int MAX_LOGGED_REJECTS = 20;
+
+    /**
+     * Columns read from the file, in the order they are passed to {@link #addRow(String[])}
+     */
+    private static final String[] COLUMNS = {
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_NUMBER,
+            InventoryEntry.COLUMN_ISBN};
+
+    private final ContentResolver mContentResolver;
+
+    /**
+     * Rows waiting to be written. The values are reused for every chunk.
+     */
+    private final ContentValues[] mChunk = new ContentValues[CHUNK_SIZE];
+    private int mChunkSize;
+
+    private ProgressListener mListener;
+    private long mStartMillis;
+    private int mRowsRead;
+    private int mRowsImported;
+    private int mRowsRejected;
+
+    /**
+     * Constructs a new {@link InventoryImporter} writing through the given resolver
+     */
+    public InventoryImporter(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            mChunk[i] = new ContentValues(COLUMNS.length);
+        }
+    }
+
+    /**
+     * Import every row of the given file. Rows written before an error stay imported.
+     * The stream is not closed.
+     *
+     * @param in       The file to import, encoded in UTF-8
+     * @param format   The format of the file
+     * @param listener Receives progress updates after each chunk, or null
+     * @return The final counts of the import
+     */
+    public synchronized Progress importInventory(InputStream in, Format format,
+                                                 ProgressListener listener) throws IOException {
+        mListener = listener;
+        mStartMillis = SystemClock.elapsedRealtime();
+        mRowsRead = 0;
+        mRowsImported = 0;
+        mRowsRejected = 0;
+        mChunkSize = 0;
+
+        Reader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        switch (format) {
+            case CSV:
+                readCsv(reader);
+                break;
+            case JSON:
+                readJson(reader);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+        writeChunk();
+        mListener = null;
+        return getProgress();
+    }
+
+    /**
+     * Read a CSV file. Fields may be quoted with double quotes, in which case they can hold
+     * commas, line breaks and doubled quotes.
+     */
+    private void readCsv(Reader reader) throws IOException {
+        CsvParser parser = new CsvParser(reader);
+        String[] header = parser.readRecord();
+        if (header == null) {
+            return;
+        }
+        //The parser reuses its buffer for the next record
+        header = header.clone();
+
+        //Find where each column is in the file
+        int[] fieldIndices = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            fieldIndices[i] = indexOf(header, COLUMNS[i]);
+        }
+
+        String[] row = new String[COLUMNS.length];
+        String[] record;
+        while ((record = parser.readRecord()) != null) {
+            if (record.length == 1 && record[0].isEmpty()) {
+                //Skip blank lines
+                continue;
+            }
+            if (record.length != header.length) {
+                reject("Expected " + header.length + " fields but found " + record.length);
+                continue;
+            }
+            for (int i = 0; i < COLUMNS.length; i++) {
+                row[i] = fieldIndices[i] == -1 ? null : record[fieldIndices[i]];
+            }
+            addRow(row);
+        }
+    }
+
+    /**
+     * Read a JSON array of item objects. Numbers may be given as JSON numbers or strings.
+     */
+    private void readJson(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        String[] row = new String[COLUMNS.length];
+
+        json.beginArray();
+        while (json.hasNext()) {
+            Arrays.fill(row, null);
+            json.beginObject();
+            while (json.hasNext()) {
+                int column = indexOf(COLUMNS, json.nextName());
+                if (column == -1) {
+                    json.skipValue();
+                } else if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                } else {
+                    row[column] = json.nextString();
+                }
+            }
+            json.endObject();
+            addRow(row);
+        }
+        json.endArray();
+    }
+
+    /**
+     * Convert one row to content values and check it. Valid rows are queued for the next chunk.
+     *
+     * @param row The text of each column in {@link #COLUMNS}, or null for missing columns
+     */
+    private void addRow(String[] row) {
+        ContentValues values = mChunk[mChunkSize];
+        values.clear();
+        try {
+            values.put(InventoryEntry.COLUMN_PRODUCT_NAME, trim(row[0]));
+            String price = trim(row[1]);
+            if (price != null) {
+                long priceCents = InventoryEntry.parsePrice(price);
+                if (priceCents < 0) {
+                    throw new IllegalArgumentException("Valid Price Required");
+                }
+                InventoryEntry.putPrice(values, priceCents);
+            }
+            String quantity = trim(row[2]);
+            if (quantity != null) {
+                values.put(InventoryEntry.COLUMN_QUANTITY, Integer.parseInt(quantity));
+            }
+            values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, trim(row[3]));
+            values.put(InventoryEntry.COLUMN_SUPPLIER_NUMBER, trim(row[4]));
+            String isbn = trim(row[5]);
+            if (isbn != null) {
+                values.put(InventoryEntry.COLUMN_ISBN, isbn);
+            }
+
+            //Use the same checks as a single insert, so that bulkInsert never fails on this row
+            InventoryProvider.validateInventory(values);
+        } catch (IllegalArgumentException e) {
+            //NumberFormatException is an IllegalArgumentException as well
+            reject(e.getMessage());
+            return;
+        }
+
+        mRowsRead++;
+        mChunkSize++;
+        if (mChunkSize == CHUNK_SIZE) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Count a row that can't be imported
+     */
+    private void reject(String reason) {
+        mRowsRead++;
+        mRowsRejected++;
+        if (mRowsRejected <= MAX_LOGGED_REJECTS) {
+            Log.w(LOG_TAG, "Rejected row " + mRowsRead + ": " + reason);
+        }
+    }
+
+    /**
+     * Write the queued rows in one transaction and report progress.
+     */
+    private void writeChunk() {
+        if (mChunkSize != 0) {
+            ContentValues[] chunk = mChunkSize == CHUNK_SIZE ? mChunk : Arrays.copyOf(mChunk, mChunkSize);
+            mRowsImported += mContentResolver.bulkInsert(InventoryEntry.CONTENT_UPSERT_URI, chunk);
+            mChunkSize = 0;
+        }
+        if (mListener != null) {
+            mListener.onProgress(getProgress());
+        }
+    }
+
+    private Progress getProgress() {
+        return new Progress(mRowsRead, mRowsImported, mRowsRejected,
+                SystemClock.elapsedRealtime() - mStartMillis);
+    }
+
+    /**
+     * Returns the trimmed text, or null if there is no text
+     */
+    private static String trim(String text) {
+        if (text == null) {
+            return null;
+        }
+        text = text.trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the records of a CSV file one at a time. The buffers are reused between records.
+     * Package-private for its local unit tests.
+     */
+    static class CsvParser {
+
+        private final Reader mReader;
+        private final StringBuilder mField = new StringBuilder();
+        private String[] mFields = new String[8];
+
+        /**
+         * Character read ahead of the current record, or -2 if none
+         */
+        private int mPushedBack = -2;
+
+        CsvParser(Reader reader) {
+            mReader = reader;
+        }
+
+        /**
+         * Read the next record, or return null at the end of the file.
+         * The returned array is only valid until the next call.
+         */
+        String[] readRecord() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+
+            int fieldCount = 0;
+            boolean quoted = false;
+            mField.setLength(0);
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            mField.append('"');
+                        } else {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    } else {
+                        mField.append((char) c);
+                    }
+                } else if (c == '"' && mField.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fieldCount = addField(fieldCount);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n') {
+                            mPushedBack = next;
+                        }
+                    }
+                    fieldCount = addField(fieldCount);
+                    return fieldCount == mFields.length ? mFields : Arrays.copyOf(mFields, fieldCount);
+                } else {
+                    mField.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int addField(int fieldCount) {
+            if (fieldCount == mFields.length) {
+                mFields = Arrays.copyOf(mFields, fieldCount * 2);
+            }
+            mFields[fieldCount] = mField.toString();
+            mField.setLength(0);
+            return fieldCount + 1;
+        }
+
+        private int read() throws IOException {
+            if (mPushedBack != -2) {
+                int c = mPushedBack;
+                mPushedBack = -2;
+                return c;
+            }
+            return mReader.read();
+        }
+    }
+}
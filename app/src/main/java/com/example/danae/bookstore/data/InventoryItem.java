@@ -0,0 +1,85 @@
+package com.example.danae.bookstore.data;
+
+import android.database.Cursor;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+/**
+ * A single product of the inventory, decoded from a row of the inventory table.
+ */
+public final class InventoryItem {
+
+    private final long mId;
+    private final String mName;
+    private final long mPriceCents;
+    private final int mQuantity;
+    private final String mSupplierName;
+    private final String mSupplierNumber;
+
+    /**
+     * Construct a new item with the values of one inventory row
+     */
+    public InventoryItem(long id, String name, long priceCents, int quantity,
+                         String supplierName, String supplierNumber) {
+        mId = id;
+        mName = name;
+        mPriceCents = priceCents;
+        mQuantity = quantity;
+        mSupplierName = supplierName;
+        mSupplierNumber = supplierNumber;
+    }
+
+    /**
+     * Read every row of the given cursor into an item. Column indices are looked up once for the
+     * whole cursor, and columns that are missing from the projection are left empty.
+     */
+    public static InventoryItem[] fromCursor(Cursor cursor) {
+        //Find the columns of the item attributes
+        int idColumnIndex = cursor.getColumnIndex(InventoryEntry._ID);
+        int nameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
+        int priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE);
+        int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
+        int supplierNameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        int supplierNumberColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_NUMBER);
+
+        InventoryItem[] items = new InventoryItem[cursor.getCount()];
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            items[cursor.getPosition()] = new InventoryItem(
+                    cursor.getLong(idColumnIndex),
+                    nameColumnIndex == -1 ? null : cursor.getString(nameColumnIndex),
+                    priceColumnIndex == -1 ? 0 : cursor.getLong(priceColumnIndex),
+                    quantityColumnIndex == -1 ? 0 : cursor.getInt(quantityColumnIndex),
+                    supplierNameColumnIndex == -1 ? null : cursor.getString(supplierNameColumnIndex),
+                    supplierNumberColumnIndex == -1 ? null : cursor.getString(supplierNumberColumnIndex));
+        }
+        return items;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Returns the price in cents
+     */
+    public long getPriceCents() {
+        return mPriceCents;
+    }
+
+    public int getQuantity() {
+        return mQuantity;
+    }
+
+    public String getSupplierName() {
+        return mSupplierName;
+    }
+
+    public String getSupplierNumber() {
+        return mSupplierNumber;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.danae.bookstore.data;
+
+import android.database.CrossProcessCursorWrapper;
+import android.database.Cursor;
+import android.os.Bundle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts, rows and latencies of the provider's operations, kept per operation and content URI
+ * pattern. Recording takes no locks: each operation only adds to a few atomic counters, so it
+ * can stay on in release builds. Latencies go into a histogram with four buckets per power of
+ * two, which keeps every percentile within 25% of the true value in a fixed amount of memory.
+ */
+class InventoryMetrics {
+
+    /**
+     * Names of the recorded operations
+     */
+    static final String QUERY = "query";
+    static final String INSERT = "insert";
+    static final String BULK_INSERT = "bulk_insert";
+    static final String UPDATE = "update";
+    static final String DELETE = "delete";
+    static final String NOTIFY = "notify";
+    static final String CALL = "call";
+
+    /**
+     * Target recorded for provider methods and content URIs the provider doesn't know
+     */
+    static final String UNKNOWN = "unknown";
+
+    /**
+     * Latencies below this many microseconds get a bucket each
+     */
+    private static final int LINEAR_BUCKETS = 8;
+
+    /**
+     * Buckets per power of two above the linear buckets, as a power of two itself
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Longest latency told apart from longer ones, as a power of two of microseconds (about 18 minutes)
+     */
+    private static final int MAX_EXPONENT = 30;
+
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final ConcurrentHashMap<String, Stats> mStats = new ConcurrentHashMap<>();
+
+    /**
+     * Record an operation that started at the given {@link System#nanoTime()} and has just finished
+     *
+     * @param operation One of the operation names above
+     * @param target    The content URI pattern or method the operation was for
+     * @param rows      Rows inserted, updated or deleted
+     */
+    void record(String operation, String target, long startNanos, int rows) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        getStats(operation + " " + target).record(micros, rows);
+    }
+
+    /**
+     * Record a query that started at the given {@link System#nanoTime()} and has just returned
+     * the given cursor. A cursor only runs its query when it is first used, so its rows are
+     * added when the caller first asks for its count instead of being counted here, and the
+     * recorded latency doesn't include reading them.
+     *
+     * @param target The content URI pattern the query was for
+     * @return The cursor to return to the caller in place of the given one
+     */
+    Cursor recordQuery(String target, long startNanos, Cursor cursor) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        final Stats stats = getStats(QUERY + " " + target);
+        stats.record(micros, 0);
+        return new CrossProcessCursorWrapper(cursor) {
+            private boolean mCounted;
+
+            @Override
+            public int getCount() {
+                int count = super.getCount();
+                if (!mCounted) {
+                    mCounted = true;
+                    stats.mRows.addAndGet(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Count a change notification for the given content URI pattern
+     */
+    void recordNotification(String target) {
+        getStats(NOTIFY + " " + target).mCount.incrementAndGet();
+    }
+
+    /**
+     * Returns one bundle for each operation and target recorded so far, keyed by the operation
+     * name and target separated by a space, such as "query inventory/#".
+     */
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        for (Map.Entry<String, Stats> entry : mStats.entrySet()) {
+            bundle.putBundle(entry.getKey(), entry.getValue().toBundle());
+        }
+        return bundle;
+    }
+
+    private Stats getStats(String key) {
+        Stats stats = mStats.get(key);
+        if (stats == null) {
+            Stats newStats = new Stats();
+            stats = mStats.putIfAbsent(key, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the histogram bucket of a latency in microseconds
+     */
+    static int bucketOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT - 1);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        if (micros >= 1L << MAX_EXPONENT) {
+            subBucket = SUB_BUCKETS - 1;
+        }
+        return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest latency in microseconds that falls into the given bucket
+     */
+    static long highestOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * The counters of one operation and target
+     */
+    static final class Stats {
+
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mRows = new AtomicLong();
+        private final AtomicLong mMaxMicros = new AtomicLong();
+        private final AtomicLongArray mLatencies = new AtomicLongArray(BUCKET_COUNT);
+
+        void record(long micros, int rows) {
+            mCount.incrementAndGet();
+            mRows.addAndGet(rows);
+            mLatencies.incrementAndGet(bucketOf(micros));
+            long max = mMaxMicros.get();
+            while (micros > max && !mMaxMicros.compareAndSet(max, micros)) {
+                max = mMaxMicros.get();
+            }
+        }
+
+        /**
+         * Returns the number of operations recorded in each latency bucket so far
+         */
+        long[] getLatencies() {
+            long[] latencies = new long[BUCKET_COUNT];
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                latencies[bucket] = mLatencies.get(bucket);
+            }
+            return latencies;
+        }
+
+        /**
+         * Returns the latency in microseconds that the given fraction of operations stayed under.
+         * The buckets are read one by one while operations may still be recorded, so the result
+         * can be off by the operations recorded meanwhile.
+         */
+        long percentile(long[] latencies, long total, double fraction) {
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int bucket = 0; bucket < latencies.length; bucket++) {
+                seen += latencies[bucket];
+                if (seen >= rank && seen != 0) {
+                    return Math.min(highestOf(bucket), mMaxMicros.get());
+                }
+            }
+            return mMaxMicros.get();
+        }
+
+        Bundle toBundle() {
+            Bundle bundle = new Bundle();
+            bundle.putLong(InventoryContract.EXTRA_METRICS_COUNT, mCount.get());
+            bundle.putLong(InventoryContract.EXTRA_METRICS_ROWS, mRows.get());
+
+            long[] latencies = getLatencies();
+            long total = 0;
+            for (long latency : latencies) {
+                total += latency;
+            }
+            if (total != 0) {
+                bundle.putLong(InventoryContract.EXTRA_METRICS_LATENCY_P50, percentile(latencies, total, 0.5));
+                bundle.putLong(InventoryContract.EXTRA_METRICS_LATENCY_P90, percentile(latencies, total, 0.9));
+                bundle.putLong(InventoryContract.EXTRA_METRICS_LATENCY_P99, percentile(latencies, total, 0.99));
+                bundle.putLong(InventoryContract.EXTRA_METRICS_LATENCY_MAX, mMaxMicros.get());
+            }
+            return bundle;
+        }
+    }
+}
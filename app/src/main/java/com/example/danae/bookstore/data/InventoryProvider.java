@@ -1,16 +1,43 @@
 package com.example.danae.bookstore.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 
 import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SalesEntry;
+import com.example.danae.bookstore.data.InventoryContract.SupplierEntry;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.example.danae.bookstore.data.InventoryContract.CONTENT_AUTHORITY;
 
@@ -33,6 +60,39 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final int INVENTORY_ID = 101;
 
+    /**
+     * URI matcher code for the content URI to search the inventory
+     */
+    private static final int INVENTORY_SEARCH = 102;
+
+    /**
+     * URI matcher code for the content URI to export the inventory
+     */
+    private static final int INVENTORY_EXPORT = 103;
+
+    /**
+     * URI matcher code for the content URI to insert or restock items by ISBN
+     */
+    private static final int INVENTORY_UPSERT = 104;
+
+    /**
+     * URI matcher codes for the content URIs of the stock totals and the low stock items
+     */
+    private static final int INVENTORY_STATS = 105;
+    private static final int INVENTORY_SUPPLIER_STATS = 106;
+    private static final int INVENTORY_LOW_STOCK = 107;
+
+    /**
+     * URI matcher codes for the content URIs of the suppliers and of a single supplier
+     */
+    private static final int SUPPLIERS = 108;
+    private static final int SUPPLIER_ID = 109;
+
+    /**
+     * URI matcher code for the content URI of the daily sales totals
+     */
+    private static final int SALES = 110;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -40,27 +100,263 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
+    /**
+     * The path pattern of each URI matcher code, naming the code in the provider's metrics
+     */
+    private static final SparseArray<String> sUriPatterns = new SparseArray<>();
+
+    /**
+     * The provider methods, each named by itself in the provider's metrics. Calls of any other
+     * method are recorded under {@link InventoryMetrics#UNKNOWN}, so callers can't add keys.
+     */
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList(InventoryContract.METHOD_SELL,
+            InventoryContract.METHOD_CACHE_STATS, InventoryContract.METHOD_CHECK_SUPPLIER_SUMMARY,
+            InventoryContract.METHOD_METRICS));
+
     // Static initializer. This is run the first time anything is called from this class.
     static {
-        // The calls to addURI() go here, for all of the content URI patterns that the provider
+        // The calls to addUri() go here, for all of the content URI patterns that the provider
         // should recognize. All paths added to the UriMatcher have a corresponding code to return
         // when a match is found.
-        sUriMatcher.addURI(CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY, INVENTORY);
+        addUri(InventoryContract.PATH_INVENTORY, INVENTORY);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/#", INVENTORY_ID);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/"
+                + InventoryContract.PATH_SEARCH, INVENTORY_SEARCH);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/"
+                + InventoryContract.PATH_EXPORT, INVENTORY_EXPORT);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/"
+                + InventoryContract.PATH_UPSERT, INVENTORY_UPSERT);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/"
+                + InventoryContract.PATH_STATS, INVENTORY_STATS);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/"
+                + InventoryContract.PATH_STATS + "/" + InventoryContract.PATH_SUPPLIER, INVENTORY_SUPPLIER_STATS);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/"
+                + InventoryContract.PATH_LOW_STOCK, INVENTORY_LOW_STOCK);
+
+        addUri(InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+
+        addUri(InventoryContract.PATH_SUPPLIERS + "/#", SUPPLIER_ID);
+
+        addUri(InventoryContract.PATH_SALES, SALES);
+    }
+
+    /**
+     * Add a path pattern of this provider's authority to the URI matcher
+     */
+    private static void addUri(String path, int code) {
+        sUriMatcher.addURI(CONTENT_AUTHORITY, path, code);
+        sUriPatterns.put(code, path);
+    }
+
+    /**
+     * Join adding the supplier of each item to the inventory rows
+     */
+    private static final String SUPPLIER_JOIN = " JOIN " + SupplierEntry.TABLE_NAME
+            + " USING (" + InventoryEntry.COLUMN_SUPPLIER_ID + ")";
+
+    /**
+     * All columns of an item, used when a query asks for all columns
+     */
+    private static final String[] INVENTORY_COLUMNS = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_ID,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_NUMBER,
+            InventoryEntry.COLUMN_ISBN};
+
+    /**
+     * Maps the columns callers ask for to the table that holds them, so that the supplier
+     * columns can still be read as if they were part of the inventory table.
+     */
+    private static final Map<String, String> INVENTORY_PROJECTION_MAP = new HashMap<>();
+
+    /**
+     * Maps the columns of the suppliers, with the supplier ID also returned as _id
+     */
+    private static final Map<String, String> SUPPLIER_PROJECTION_MAP = new HashMap<>();
+
+    static {
+        for (String column : new String[]{InventoryEntry._ID, InventoryEntry.COLUMN_PRODUCT_NAME,
+                InventoryEntry.COLUMN_PRICE, InventoryEntry.COLUMN_SUPPLIER_ID, InventoryEntry.COLUMN_ISBN}) {
+            INVENTORY_PROJECTION_MAP.put(column, InventoryEntry.TABLE_NAME + "." + column + " AS " + column);
+        }
+        //The stock includes the sales not compacted yet
+        INVENTORY_PROJECTION_MAP.put(InventoryEntry.COLUMN_QUANTITY,
+                SalesLedger.currentQuantity() + " AS " + InventoryEntry.COLUMN_QUANTITY);
+        for (String column : new String[]{InventoryEntry.COLUMN_SUPPLIER_NAME,
+                InventoryEntry.COLUMN_SUPPLIER_NUMBER}) {
+            INVENTORY_PROJECTION_MAP.put(column, SupplierEntry.TABLE_NAME + "." + column + " AS " + column);
+        }
+        INVENTORY_PROJECTION_MAP.put("COUNT(*)", "COUNT(*)");
 
-        sUriMatcher.addURI(CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/#", INVENTORY_ID);
+        SUPPLIER_PROJECTION_MAP.put(SupplierEntry._ID, SupplierEntry.COLUMN_SUPPLIER_ID + " AS " + SupplierEntry._ID);
+        for (String column : new String[]{SupplierEntry.COLUMN_SUPPLIER_ID, SupplierEntry.COLUMN_SUPPLIER_NAME,
+                SupplierEntry.COLUMN_SUPPLIER_NUMBER}) {
+            SUPPLIER_PROJECTION_MAP.put(column, column);
+        }
     }
 
+    /**
+     * Tables used to search the inventory. The full-text match is ranked by the number of matched
+     * words (each match adds to the length of offsets()), and joined back to the inventory rows.
+     * The single "?" is the full-text match expression.
+     */
+    private static final String SEARCH_TABLES = InventoryEntry.TABLE_NAME + " JOIN (SELECT docid,"
+            + " length(offsets(" + InventoryDbHelper.FTS_TABLE_NAME + ")) AS rank"
+            + " FROM " + InventoryDbHelper.FTS_TABLE_NAME
+            + " WHERE " + InventoryDbHelper.FTS_TABLE_NAME + " MATCH ?) AS search"
+            + " ON " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " = search.docid";
+
+    /**
+     * Default order of search results: best match first, then by name
+     */
+    private static final String SEARCH_SORT_ORDER = "search.rank DESC, "
+            + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE";
+
+    /**
+     * Current units and value of a supplier: the compacted totals of the supplier summary less
+     * the sales not compacted yet
+     */
+    private static final String SUPPLIER_UNITS = InventoryEntry.COLUMN_TOTAL_UNITS
+            + " - IFNULL(" + SalesLedger.COLUMN_PENDING_UNITS + ", 0)";
+    private static final String SUPPLIER_VALUE = InventoryEntry.COLUMN_TOTAL_VALUE
+            + " - IFNULL(" + SalesLedger.COLUMN_PENDING_VALUE + ", 0)";
+
+    /**
+     * Join adding the sales not compacted yet of each supplier to the supplier summary
+     */
+    private static final String PENDING_SALES_JOIN = " LEFT JOIN " + SalesLedger.PENDING_BY_SUPPLIER
+            + " USING (" + InventoryEntry.COLUMN_SUPPLIER_ID + ")";
+
+    /**
+     * Totals of the whole inventory, added up from the totals of each supplier
+     */
+    static final String SQL_STATS = "SELECT "
+            + "IFNULL(SUM(" + InventoryEntry.COLUMN_ITEM_COUNT + "), 0) AS " + InventoryEntry.COLUMN_ITEM_COUNT + ", "
+            + "IFNULL(SUM(" + SUPPLIER_UNITS + "), 0) AS " + InventoryEntry.COLUMN_TOTAL_UNITS + ", "
+            + "IFNULL(SUM(" + SUPPLIER_VALUE + "), 0) AS " + InventoryEntry.COLUMN_TOTAL_VALUE
+            + " FROM " + InventoryDbHelper.SUPPLIER_SUMMARY_TABLE_NAME + PENDING_SALES_JOIN;
+
+    /**
+     * Totals of each supplier, read from the supplier summary with the name of each supplier
+     */
+    static final String SQL_SUPPLIER_STATS = "SELECT " + InventoryEntry.COLUMN_SUPPLIER_ID + ", "
+            + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryEntry.COLUMN_SUPPLIER_NUMBER + ", "
+            + InventoryEntry.COLUMN_ITEM_COUNT + ", "
+            + SUPPLIER_UNITS + " AS " + InventoryEntry.COLUMN_TOTAL_UNITS + ", "
+            + SUPPLIER_VALUE + " AS " + InventoryEntry.COLUMN_TOTAL_VALUE
+            + " FROM " + InventoryDbHelper.SUPPLIER_SUMMARY_TABLE_NAME + SUPPLIER_JOIN + PENDING_SALES_JOIN
+            + " ORDER BY " + InventoryEntry.COLUMN_SUPPLIER_NAME;
+
+    /**
+     * Default order of the daily sales totals: by day, then by item
+     */
+    private static final String SALES_SORT_ORDER = SalesEntry.COLUMN_DAY + ", " + SalesEntry.COLUMN_ITEM_ID;
+
+    /**
+     * Compacted stock of an item. Unlike the quantity column of the projection, it can use the
+     * quantity index.
+     */
+    private static final String STORED_QUANTITY = InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_QUANTITY;
+
+    /**
+     * Filter of the low stock items. Sales only lower the stock, so an item is low on stock if its
+     * compacted stock is, which the quantity index finds, or if it has sales not compacted yet and
+     * its current stock is. The threshold is bound twice.
+     */
+    static final String LOW_STOCK_SELECTION = "(" + STORED_QUANTITY + " < ? OR "
+            + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " IN (" + SalesLedger.SQL_PENDING_ITEMS + ")"
+            + " AND " + SalesLedger.currentQuantity() + " < ?)";
+
+    /**
+     * Order of the low stock items: lowest current stock first
+     */
+    private static final String LOW_STOCK_SORT_ORDER = SalesLedger.currentQuantity() + ", "
+            + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID;
+
     /**
      * Database helper object
      */
     private InventoryDbHelper mDbHelper;
 
+    /**
+     * Sends change notifications, coalescing the changes made within a short window
+     */
+    private InventoryChangeNotifier mChangeNotifier;
+
+    /**
+     * Number of items kept in the item cache
+     */
+    private static final int CACHE_SIZE = 512;
+
+    /**
+     * Cache of recently used items, kept up to date by every write
+     */
+    private final InventoryCache mCache = new InventoryCache(CACHE_SIZE);
+
+    /**
+     * Counts and latencies of every operation, reported by {@link InventoryContract#METHOD_METRICS}
+     */
+    private final InventoryMetrics mMetrics = new InventoryMetrics();
+
+    /**
+     * Runs every write on one thread, committing writes that arrive together in one transaction
+     */
+    private InventoryWriter mWriter;
+
+    /**
+     * Precompiled write statements. Statements hold their bound arguments, so each thread gets
+     * its own set; in practice only the writer thread uses them.
+     */
+    private final ThreadLocal<InventoryStatements> mStatements = new ThreadLocal<>();
+
+    /**
+     * URIs changed by the batch running on the current thread, or null when no batch is running.
+     * Changes made inside a batch are notified once when the batch finishes.
+     */
+    private final ThreadLocal<Set<Uri>> mBatchChanges = new ThreadLocal<>();
+
+    /**
+     * Writes exports into their pipes. Each export blocks until the reader has read it,
+     * so every export gets its own thread.
+     */
+    private final ExecutorService mExportExecutor = Executors.newCachedThreadPool();
+
+    /**
+     * Delay between a sale and the compaction of the sales ledger that includes it. Sales made
+     * within the delay are compacted together.
+     */
+    private static final long SALES_COMPACTION_DELAY_MS = 5000;
+
+    /**
+     * Runs the compaction of the sales ledger in the background
+     */
+    private final ScheduledExecutorService mCompactionExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * True while a compaction is scheduled and hasn't started yet
+     */
+    private final AtomicBoolean mCompactionScheduled = new AtomicBoolean();
+
     /**
      * Initialize the provider and the database helper object.
      */
     @Override
     public boolean onCreate() {
         mDbHelper = new InventoryDbHelper(getContext());
+        mChangeNotifier = new InventoryChangeNotifier(getContext().getContentResolver());
+        mWriter = new InventoryWriter(mDbHelper);
         return true;
     }
 
@@ -70,6 +366,8 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        long start = System.nanoTime();
+
         // Get readable database
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
@@ -78,38 +376,298 @@ public class InventoryProvider extends ContentProvider {
 
         // Figure out if the URI matcher can match the URI to a specific code
         int match = sUriMatcher.match(uri);
+        // Callers filter and sort items by the quantity they read, which includes recent sales
+        if (match == INVENTORY || match == INVENTORY_SEARCH || match == INVENTORY_LOW_STOCK) {
+            selection = SalesLedger.toCurrentQuantity(selection);
+            sortOrder = SalesLedger.toCurrentQuantity(sortOrder);
+        }
         switch (match) {
             case INVENTORY:
                 // For the INVENTORY code, query the inventory table directly with the given
                 // projection, selection, selection arguments, and sort order. The cursor
-                // could contain multiple rows of the inventory table.
-                cursor = database.query(InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, null);
+                // could contain multiple rows of the inventory table, optionally limited to
+                // one page by the paging query parameters.
+                cursor = queryInventoryPage(database, uri, projection, selection, selectionArgs,
+                        sortOrder);
                 break;
             case INVENTORY_ID:
                 // For the INVENTORY_ID code, extract out the ID from the URI.
                 // For an example URI such as "content://com.example.danae.bookstore.inventory/3",
-                // the selection will be "_id=?" and the selection argument will be a
-                // String array containing the actual ID of 3 in this case.
-                //
-                // For every "?" in the selection, we need to have an element in the selection
-                // arguments that will fill in the "?". Since we have 1 question mark in the
-                // selection, we have 1 String in the selection arguments' String array.
-                selection = InventoryEntry._ID + "=?";
+                // this returns a cursor containing the row of the item with _id 3, served from
+                // the item cache when possible.
+                cursor = queryInventoryItem(database, ContentUris.parseId(uri), projection);
+                break;
+            case INVENTORY_SEARCH:
+                // For the INVENTORY_SEARCH code, match the search words against the full-text
+                // table and return the matching inventory rows, best match first.
+                cursor = searchInventory(database, uri, projection, selection, selectionArgs,
+                        sortOrder);
+                break;
+            case INVENTORY_STATS:
+                // The totals are a single row, added up from one row per supplier, less the
+                // sales not compacted yet
+                cursor = database.rawQuery(SQL_STATS, null);
+                break;
+            case INVENTORY_SUPPLIER_STATS:
+                // One row per supplier, kept up to date by triggers on every write
+                cursor = database.rawQuery(SQL_SUPPLIER_STATS, null);
+                break;
+            case INVENTORY_LOW_STOCK:
+                cursor = queryLowStock(database, uri, projection, selection, selectionArgs);
+                break;
+            case SUPPLIERS:
+                cursor = supplierQueryBuilder().query(database, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                break;
+            case SUPPLIER_ID:
+                selection = SupplierEntry.COLUMN_SUPPLIER_ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-
-                // This will perform a query on the inventory table where the _id equals 3 to return
-                // a cursor containing that row of the table.
-                cursor = database.query(InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
+                cursor = supplierQueryBuilder().query(database, projection, selection, selectionArgs,
+                        null, null, null);
+                break;
+            case SALES:
+                // The compacted daily totals, with the sales of the last few seconds added in.
+                // Only the sales not compacted yet are read, not the whole history.
+                if (TextUtils.isEmpty(sortOrder)) {
+                    sortOrder = SALES_SORT_ORDER;
+                }
+                cursor = database.query(SalesLedger.DAILY_TOTALS, projection, selection, selectionArgs,
                         null, null, sortOrder);
                 break;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
-        //Set notification URI on cursor to track cursor and know when to update.
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        //Set notification URI on cursor to track cursor and know when to update. Totals and
+        //low stock depend on every item, so they follow changes to any part of the inventory.
+        if (match == INVENTORY_STATS || match == INVENTORY_SUPPLIER_STATS || match == INVENTORY_LOW_STOCK
+                || match == SALES) {
+            cursor.setNotificationUri(getContext().getContentResolver(), InventoryEntry.CONTENT_URI);
+        } else {
+            cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        }
+
+        //The rows are counted when the caller first asks for the count, so that recording them
+        //doesn't run the query here before the caller uses the cursor
+        return mMetrics.recordQuery(sUriPatterns.get(match), start, cursor);
+    }
+
+    /**
+     * Query a single item. Items are read from the cache when possible; otherwise the whole row
+     * is read and cached, so that later lookups with any projection are served from memory.
+     */
+    private Cursor queryInventoryItem(SQLiteDatabase database, long id, String[] projection) {
+        // The selection will be "_id=?" and the selection argument will be a
+        // String array containing the actual ID.
+        String selection = InventoryEntry._ID + "=?";
+        String[] selectionArgs = new String[]{String.valueOf(id)};
+
+        if (!InventoryCache.canServe(projection)) {
+            projection = getInventoryProjection(projection);
+            return inventoryQueryBuilder(InventoryEntry.TABLE_NAME, projection, null, null)
+                    .query(database, projection, selection, selectionArgs, null, null, null);
+        }
+
+        InventoryItem item = mCache.get(id);
+        if (item == null) {
+            long writeCount = mCache.getWriteCount();
+            Cursor cursor = inventoryQueryBuilder(InventoryEntry.TABLE_NAME, InventoryCache.ITEM_COLUMNS, null, null)
+                    .query(database, InventoryCache.ITEM_COLUMNS, selection, selectionArgs, null, null, null);
+            try {
+                InventoryItem[] items = InventoryItem.fromCursor(cursor);
+                if (items.length == 0) {
+                    return new MatrixCursor(projection == null ? InventoryCache.ITEM_COLUMNS : projection, 0);
+                }
+                item = items[0];
+            } finally {
+                cursor.close();
+            }
+            mCache.putIfUnchanged(item, writeCount);
+        }
+        return InventoryCache.toCursor(item, projection);
+    }
+
+    /**
+     * Query one page of the inventory list. The limit and offset query parameters of the URI cap
+     * and skip rows; the after_id and after_name parameters continue after the last item of the
+     * previous page, which costs the same no matter how deep the page is.
+     */
+    private Cursor queryInventoryPage(SQLiteDatabase database, Uri uri, String[] projection,
+                                      String selection, String[] selectionArgs, String sortOrder) {
+        String afterId = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_ID);
+        String afterName = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_NAME);
+
+        if (afterName != null) {
+            //Continue after the given name, using the ID to break ties between equal names.
+            //The first condition lets SQLite seek straight into the name index.
+            if (afterId == null) {
+                throw new IllegalArgumentException("Paging by name requires "
+                        + InventoryContract.QUERY_PARAMETER_AFTER_ID);
+            }
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE >= ? AND ("
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE > ? OR "
+                            + InventoryEntry._ID + " > ?)");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[]{afterName, afterName, String.valueOf(parseNumber(afterId))});
+            sortOrder = InventoryEntry.SORT_ORDER_NAME;
+        } else if (afterId != null) {
+            //Continue after the given ID
+            selection = DatabaseUtils.concatenateWhere(selection, InventoryEntry._ID + " > ?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[]{String.valueOf(parseNumber(afterId))});
+            sortOrder = InventoryEntry.SORT_ORDER_ID;
+        }
+
+        projection = getInventoryProjection(projection);
+        return inventoryQueryBuilder(InventoryEntry.TABLE_NAME, projection, selection, sortOrder)
+                .query(database, projection, selection, selectionArgs, null, null, sortOrder, buildLimit(uri));
+    }
+
+    /**
+     * Query the items with fewer units than the threshold query parameter, lowest stock first.
+     * The quantity index and the sales not compacted yet find them without reading the rest of
+     * the inventory.
+     */
+    private Cursor queryLowStock(SQLiteDatabase database, Uri uri, String[] projection,
+                                 String selection, String[] selectionArgs) {
+        String thresholdParameter = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_THRESHOLD);
+        long threshold = thresholdParameter == null
+                ? InventoryContract.DEFAULT_LOW_STOCK_THRESHOLD : parseNumber(thresholdParameter);
+
+        selection = DatabaseUtils.concatenateWhere(selection, LOW_STOCK_SELECTION);
+        selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                new String[]{String.valueOf(threshold), String.valueOf(threshold)});
+        projection = getInventoryProjection(projection);
+        return inventoryQueryBuilder(InventoryEntry.TABLE_NAME, projection, selection, null)
+                .query(database, projection, selection, selectionArgs, null, null,
+                        LOW_STOCK_SORT_ORDER, buildLimit(uri));
+    }
+
+    /**
+     * Search the inventory for items whose name or supplier has words starting with each of the
+     * search words. Without any search words this returns the whole inventory list.
+     */
+    private Cursor searchInventory(SQLiteDatabase database, Uri uri, String[] projection,
+                                   String selection, String[] selectionArgs, String sortOrder) {
+        String match = buildMatchExpression(uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SEARCH));
+        projection = getInventoryProjection(projection);
+        if (match == null) {
+            return inventoryQueryBuilder(InventoryEntry.TABLE_NAME, projection, selection, sortOrder)
+                    .query(database, projection, selection, selectionArgs, null, null, sortOrder, buildLimit(uri));
+        }
+
+        //The match expression comes first in the SQL, so its argument goes first as well
+        selectionArgs = DatabaseUtils.appendSelectionArgs(new String[]{match}, selectionArgs);
+        if (TextUtils.isEmpty(sortOrder)) {
+            sortOrder = SEARCH_SORT_ORDER;
+        }
+        return inventoryQueryBuilder(SEARCH_TABLES, projection, selection, sortOrder)
+                .query(database, projection, selection, selectionArgs, null, null, sortOrder, buildLimit(uri));
+    }
+
+    /**
+     * Returns the given projection, or all columns of an item if it is null
+     */
+    private static String[] getInventoryProjection(String[] projection) {
+        return projection == null ? INVENTORY_COLUMNS : projection;
+    }
+
+    /**
+     * Returns a query builder reading inventory rows from the given tables. The suppliers are
+     * only joined in when the projection, selection or sort order uses a supplier column, so
+     * that lists of names, prices and counts read nothing but the inventory table.
+     */
+    private static SQLiteQueryBuilder inventoryQueryBuilder(String tables, String[] projection,
+                                                            String selection, String sortOrder) {
+        boolean joinSuppliers = usesSupplier(selection) || usesSupplier(sortOrder);
+        for (int i = 0; i < projection.length && !joinSuppliers; i++) {
+            joinSuppliers = usesSupplier(projection[i]);
+        }
+
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(joinSuppliers ? tables + SUPPLIER_JOIN : tables);
+        builder.setProjectionMap(INVENTORY_PROJECTION_MAP);
+        return builder;
+    }
+
+    /**
+     * Returns true if the SQL may use a column of the suppliers table. All of their names
+     * start with the supplier name column, so this errs on the side of joining.
+     */
+    private static boolean usesSupplier(String sql) {
+        return sql != null && sql.contains(InventoryEntry.COLUMN_SUPPLIER_NAME);
+    }
+
+    /**
+     * Returns a query builder reading the suppliers table
+     */
+    private static SQLiteQueryBuilder supplierQueryBuilder() {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(SupplierEntry.TABLE_NAME);
+        builder.setProjectionMap(SUPPLIER_PROJECTION_MAP);
+        return builder;
+    }
+
+    /**
+     * Turn the words typed by the user into a full-text match expression that matches the start
+     * of every word. Characters with a meaning in the match syntax are dropped.
+     * Return null if there is nothing to search for.
+     */
+    private static String buildMatchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            StringBuilder token = new StringBuilder();
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    token.append(c);
+                }
+            }
+            if (token.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(token).append('*');
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Build the LIMIT clause for the limit and offset query parameters of the URI,
+     * or null if the URI has neither.
+     */
+    private static String buildLimit(Uri uri) {
+        String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+        String offset = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_OFFSET);
+
+        if (limit == null && offset == null) {
+            return null;
+        }
+        long rowCount = limit == null ? Long.MAX_VALUE : parseNumber(limit);
+        if (offset == null) {
+            return String.valueOf(rowCount);
+        }
+        //SQLite reads "a, b" as an offset of a rows followed by at most b rows
+        return parseNumber(offset) + ", " + rowCount;
+    }
 
-        return cursor;
+    /**
+     * Parse a non-negative number from a query parameter.
+     */
+    private static long parseNumber(String value) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid number " + value);
     }
 
     /**
@@ -120,37 +678,137 @@ public class InventoryProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case INVENTORY:
+            case INVENTORY_SEARCH:
+            case INVENTORY_UPSERT:
+            case INVENTORY_LOW_STOCK:
                 return InventoryEntry.CONTENT_LIST_TYPE;
+            case INVENTORY_STATS:
+                return InventoryEntry.CONTENT_STATS_TYPE;
+            case INVENTORY_SUPPLIER_STATS:
+                return InventoryEntry.CONTENT_STATS_LIST_TYPE;
             case INVENTORY_ID:
                 return InventoryEntry.CONTENT_ITEM_TYPE;
+            case INVENTORY_EXPORT:
+                return InventoryEntry.CONTENT_EXPORT_TYPE;
+            case SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ID:
+                return SupplierEntry.CONTENT_ITEM_TYPE;
+            case SALES:
+                return SalesEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
     }
 
+    /**
+     * Open the inventory export for reading. The CSV file is written into a pipe on a
+     * background thread while the caller reads the other end, so nothing is stored on disk
+     * and the caller can start reading right away.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != INVENTORY_EXPORT) {
+            throw new FileNotFoundException("No file for " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("The inventory export can only be read: " + uri);
+        }
+
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Failed to create pipe for " + uri + ": " + e.getMessage());
+        }
+        final SQLiteDatabase database = mDbHelper.getReadableDatabase();
+        mExportExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                FileChannel channel = new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]).getChannel();
+                try {
+                    new InventoryExporter(database, channel).export();
+                } catch (IOException e) {
+                    //The reader closed the pipe before reading everything
+                    Log.w(LOG_TAG, "Inventory export stopped: " + e.getMessage());
+                } finally {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        // The pipe is already closed
+                    }
+                }
+            }
+        });
+        return pipe[0];
+    }
+
     /**
      * Insert new data into the provider with the given ContentValues.
      */
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
+        long start = System.nanoTime();
+        Uri newUri;
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case INVENTORY:
-                return insertInventory(uri, contentValues);
+                newUri = insertInventory(uri, contentValues);
+                break;
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
+        mMetrics.record(InventoryMetrics.INSERT, sUriPatterns.get(match), start, newUri == null ? 0 : 1);
+        return newUri;
     }
 
     /**
      * Insert an inventory item into the database with the given content values. Return the new
      * content URI for that specific row in the database.
      */
-    private Uri insertInventory(Uri uri, ContentValues values) {
+    private Uri insertInventory(Uri uri, final ContentValues values) {
+
+        //Make sure all required fields are present and valid
+        validateInventory(values);
+
+        //Insert a new row for the product with the precompiled insert statement,
+        //returning the ID of that new row.
+        long newRowId;
+        try {
+            newRowId = mWriter.execute(new InventoryWriter.Write<Long>() {
+                @Override
+                public Long run(SQLiteDatabase database) {
+                    return getStatements().insert(values);
+                }
+            });
+        } catch (SQLiteConstraintException e) {
+            //Another item already has this ISBN
+            newRowId = -1;
+        }
 
-        //Get User input from edittext fields
+        // If the ID is -1, then the insertion failed. Log an error and return null.
+        if (newRowId == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+        // Once we know the ID of the new row in the table,
+        // get the new URI with the ID appended to the end of it
+        Uri newUri = ContentUris.withAppendedId(uri, newRowId);
+
+        //Notify listeners that the data has changed for the new item
+        notifyChange(newUri);
+        return newUri;
+    }
+
+    /**
+     * Check that the given content values describe a valid new inventory item.
+     * Throws an {@link IllegalArgumentException} naming the first missing or invalid field.
+     * Also used by {@link InventoryImporter} to reject invalid rows before they are written.
+     */
+    static void validateInventory(ContentValues values) {
+        //Get the values to validate
         String nameString = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
-        Integer priceString = values.getAsInteger(InventoryEntry.COLUMN_PRICE);
+        Long priceCents = InventoryEntry.getPrice(values);
         Integer quantityString = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
         String supplierNameString = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME);
         String supplierNumberString = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NUMBER);
@@ -159,7 +817,7 @@ public class InventoryProvider extends ContentProvider {
         if (TextUtils.isEmpty(nameString)) {
             throw new IllegalArgumentException("Name Required");
         }
-        if (priceString == null || priceString < 0) {
+        if (priceCents == null || priceCents < 0) {
             throw new IllegalArgumentException("Valid Price Required");
         }
         if (quantityString != null && quantityString < 0) {
@@ -171,25 +829,329 @@ public class InventoryProvider extends ContentProvider {
         if (TextUtils.isEmpty(supplierNumberString)) {
             throw new IllegalArgumentException("Supplier Phone Number Required");
         }
+    }
+
+    /**
+     * Insert all of the given inventory items in a single transaction.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long start = System.nanoTime();
+        int rowsInserted;
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
+            case INVENTORY:
+                rowsInserted = bulkInsertInventory(uri, values);
+                break;
+            case INVENTORY_UPSERT:
+                rowsInserted = upsertInventory(values);
+                break;
+            default:
+                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+        mMetrics.record(InventoryMetrics.BULK_INSERT, sUriPatterns.get(match), start, rowsInserted);
+        return rowsInserted;
+    }
 
+    /**
+     * Validate and insert every item inside one transaction, reusing one compiled insert
+     * statement for all rows. If any item is invalid, nothing is inserted. Listeners are
+     * notified once for the whole batch. Return the number of rows inserted.
+     */
+    private int bulkInsertInventory(Uri uri, final ContentValues[] values) {
+        //Validate before queueing the write, so that invalid items never reach the writer
+        for (ContentValues value : values) {
+            validateInventory(value);
+        }
 
-        //Insert a new inventory item into the inventory database table with the given ContentValues
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsInserted = mWriter.execute(new InventoryWriter.Write<Integer>() {
+            @Override
+            public Integer run(SQLiteDatabase database) {
+                InventoryStatements statements = getStatements();
+                int rowsInserted = 0;
+                database.beginTransaction();
+                try {
+                    for (ContentValues value : values) {
+                        if (statements.insert(value) != -1) {
+                            rowsInserted++;
+                        }
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                return rowsInserted;
+            }
+        });
 
-        //Insert a new row for each product, returning the ID of that new row.
-        long newRowId = database.insert(InventoryEntry.TABLE_NAME, null, values);
+        //Notify listeners once for all of the new rows
+        if (rowsInserted != 0) {
+            notifyChange(uri);
+        }
+        return rowsInserted;
+    }
 
-        // If the ID is -1, then the insertion failed. Log an error and return null.
-        if (newRowId == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
-            return null;
+    /**
+     * Insert or restock every item inside one transaction. An item whose ISBN is already in the
+     * inventory is restocked with one precompiled update, found through the unique ISBN index;
+     * any other item is validated and inserted. No item is read first, so a whole supplier feed
+     * is merged in one pass. If any item is invalid, nothing is written.
+     * Return the number of items inserted or restocked.
+     */
+    private int upsertInventory(final ContentValues[] values) {
+        //Validate before queueing the write, so that an invalid item fails only this call rather
+        //than the group of writes it is committed with. Whether an item with an ISBN is
+        //restocked or inserted is only known once the write runs, so such an item must be a
+        //valid restock, and is only inserted if it is also a valid new item.
+        final boolean[] insertable = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (TextUtils.isEmpty(values[i].getAsString(InventoryEntry.COLUMN_ISBN))) {
+                validateInventory(values[i]);
+                insertable[i] = true;
+            } else {
+                validateRestock(values[i]);
+                try {
+                    validateInventory(values[i]);
+                    insertable[i] = true;
+                } catch (IllegalArgumentException e) {
+                    //Only a restock
+                }
+            }
         }
-        //Notify listeners that the data has changed for the inventory content uri
-        getContext().getContentResolver().notifyChange(uri, null);
 
-        // Once we know the ID of the new row in the table,
-        // return the new URI with the ID appended to the end of it
-        return ContentUris.withAppendedId(uri, newRowId);
+        int rowsChanged = mWriter.execute(new InventoryWriter.Write<Integer>() {
+            @Override
+            public Integer run(SQLiteDatabase database) {
+                InventoryStatements statements = getStatements();
+                int rowsChanged = 0;
+                database.beginTransaction();
+                try {
+                    for (int i = 0; i < values.length; i++) {
+                        ContentValues value = values[i];
+                        String isbn = value.getAsString(InventoryEntry.COLUMN_ISBN);
+                        if (!TextUtils.isEmpty(isbn) && statements.restock(isbn, value) != 0) {
+                            rowsChanged++;
+                            continue;
+                        }
+                        if (!insertable[i]) {
+                            //Restocking an ISBN that isn't in the inventory
+                            throw new IllegalArgumentException("No item with ISBN " + isbn);
+                        }
+                        if (statements.insert(value) != -1) {
+                            rowsChanged++;
+                        }
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                return rowsChanged;
+            }
+        });
+
+        //Restocked items are only known by ISBN, so drop the cache rather than look them up
+        if (rowsChanged != 0) {
+            mCache.clear();
+            notifyChange(InventoryEntry.CONTENT_URI);
+        }
+        return rowsChanged;
+    }
+
+    /**
+     * Check the quantity and price used to restock an item by ISBN.
+     */
+    private static void validateRestock(ContentValues values) {
+        if (values.containsKey(InventoryEntry.COLUMN_PRICE)) {
+            Long price = InventoryEntry.getPrice(values);
+            if (price != null && price < 0) {
+                throw new IllegalArgumentException("Valid Price Required");
+            }
+        }
+        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("Valid Quantity Required");
+        }
+    }
+
+    /**
+     * Apply all of the given operations in a single transaction. If any operation fails, none
+     * of them are kept. Listeners are notified once after the whole batch has been committed.
+     * The batch runs on the writer thread, where the operations' own writes run inline.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(final ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final Set<Uri> changes = new HashSet<>();
+        ContentProviderResult[] results;
+        try {
+            //The operations update the cache and record notifications as they run, so the batch
+            //must not be grouped with other writes and run again if one of those fails
+            results = mWriter.executeAlone(new InventoryWriter.Write<ContentProviderResult[]>() {
+                @Override
+                public ContentProviderResult[] run(SQLiteDatabase database) {
+                    mBatchChanges.set(changes);
+                    try {
+                        return InventoryProvider.super.applyBatch(operations);
+                    } catch (OperationApplicationException e) {
+                        throw new BatchFailedException(e);
+                    } finally {
+                        mBatchChanges.remove();
+                    }
+                }
+            });
+        } catch (BatchFailedException e) {
+            throw (OperationApplicationException) e.getCause();
+        } finally {
+            //The operations dropped the items they changed from the cache before the batch
+            //committed, so a read in between may have cached them again. Drop the cache once
+            //the batch is over, whether it was committed or rolled back.
+            mCache.clear();
+        }
+
+        //Notify listeners once for everything the batch changed
+        if (changes.size() == 1) {
+            notifyChange(changes.iterator().next());
+        } else if (!changes.isEmpty()) {
+            notifyChange(InventoryEntry.CONTENT_URI);
+        }
+        return results;
+    }
+
+    /**
+     * Handle provider methods that don't fit the query/insert/update/delete model.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        long start = System.nanoTime();
+        Bundle result = callMethod(method, arg, extras);
+        mMetrics.record(InventoryMetrics.CALL, METHODS.contains(method) ? method : InventoryMetrics.UNKNOWN, start, 0);
+        return result;
+    }
+
+    /**
+     * Run the provider method with the given name, or defer to the default if it is unknown
+     */
+    private Bundle callMethod(String method, String arg, Bundle extras) {
+        if (InventoryContract.METHOD_SELL.equals(method)) {
+            int quantity = extras == null ? 1 : extras.getInt(InventoryContract.EXTRA_QUANTITY, 1);
+
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_QUANTITY, sellInventory(Long.parseLong(arg), quantity));
+            return result;
+        }
+        if (InventoryContract.METHOD_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_CACHE_HITS, mCache.hitCount());
+            result.putInt(InventoryContract.EXTRA_CACHE_MISSES, mCache.missCount());
+            return result;
+        }
+        if (InventoryContract.METHOD_METRICS.equals(method)) {
+            return mMetrics.toBundle();
+        }
+        if (InventoryContract.METHOD_CHECK_SUPPLIER_SUMMARY.equals(method)) {
+            final boolean repair = extras != null && extras.getBoolean(InventoryContract.EXTRA_REPAIR);
+            int mismatches = mWriter.execute(new InventoryWriter.Write<Integer>() {
+                @Override
+                public Integer run(SQLiteDatabase database) {
+                    return InventoryDbHelper.checkSupplierSummary(database, repair);
+                }
+            });
+            if (repair && mismatches != 0) {
+                notifyChange(InventoryEntry.CONTENT_URI);
+            }
+
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_MISMATCHES, mismatches);
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Sell the given number of units of an item. The stock is decremented in SQL only if enough
+     * is left, and the new stock level is read back in the same transaction.
+     * Return the new stock level, or -1 if the item doesn't exist or has too little stock.
+     */
+    private int sellInventory(final long id, final int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Valid Quantity Required");
+        }
+
+        int newQuantity = mWriter.execute(new InventoryWriter.Write<Integer>() {
+            @Override
+            public Integer run(SQLiteDatabase database) {
+                return getStatements().sell(id, quantity);
+            }
+        });
+
+        //If the sale went through, drop the cached item and notify all listeners of the item.
+        //Concurrent sales may get here in a different order than they committed, so the cache
+        //is never given the new quantity: the next read loads it from the database.
+        if (newQuantity != -1) {
+            mCache.remove(id);
+            notifyChange(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id));
+            scheduleSalesCompaction();
+        }
+        return newQuantity;
+    }
+
+    /**
+     * Schedule a compaction of the sales ledger, unless one is already waiting to run
+     */
+    private void scheduleSalesCompaction() {
+        if (!mCompactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        mCompactionExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mCompactionScheduled.set(false);
+                compactSales();
+            }
+        }, SALES_COMPACTION_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compact the sales made since the last compaction into the stock of their items and the
+     * daily totals. Queries read the sales not compacted yet as well, so nothing they return
+     * changes and nobody is notified.
+     */
+    private void compactSales() {
+        mWriter.execute(new InventoryWriter.Write<Integer>() {
+            @Override
+            public Integer run(SQLiteDatabase database) {
+                return SalesLedger.compact(database);
+            }
+        });
+    }
+
+    /**
+     * Returns the precompiled write statements of the current thread, compiling them on first use.
+     */
+    private InventoryStatements getStatements() {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        InventoryStatements statements = mStatements.get();
+        if (statements == null || statements.getDatabase() != database) {
+            statements = new InventoryStatements(database);
+            mStatements.set(statements);
+        }
+        return statements;
+    }
+
+    /**
+     * Notify listeners that the data at the given uri has changed. Changes to a single item
+     * should pass the item's uri, so that listeners can refresh just that item.
+     * While a batch is running on this thread the uri is only recorded, and the batch notifies
+     * once when it finishes. Notifications are coalesced by {@link InventoryChangeNotifier}.
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> batchChanges = mBatchChanges.get();
+        if (batchChanges != null) {
+            batchChanges.add(uri);
+            return;
+        }
+        mMetrics.recordNotification(sUriPatterns.get(sUriMatcher.match(uri), InventoryMetrics.UNKNOWN));
+        mChangeNotifier.notifyChange(uri);
     }
 
     /**
@@ -198,20 +1160,29 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        long start = System.nanoTime();
+        int rowsUpdated;
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case INVENTORY:
-                return updateInventory(uri, contentValues, selection, selectionArgs);
+                rowsUpdated = updateInventory(uri, contentValues, selection, selectionArgs);
+                break;
             case INVENTORY_ID:
                 // For the INVENTORY_ID code, extract out the ID from the URI,
                 // so we know which row to update. Selection will be "_id=?" and selection
                 // arguments will be a String array containing the actual ID.
                 selection = InventoryEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updateInventory(uri, contentValues, selection, selectionArgs);
+                rowsUpdated = updateInventory(uri, contentValues, selection, selectionArgs);
+                break;
+            case SUPPLIER_ID:
+                rowsUpdated = updateSupplier(uri, contentValues);
+                break;
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
+        mMetrics.record(InventoryMetrics.UPDATE, sUriPatterns.get(match), start, rowsUpdated);
+        return rowsUpdated;
     }
 
     /**
@@ -219,7 +1190,8 @@ public class InventoryProvider extends ContentProvider {
      * specified in the selection and selection arguments (which could be 0 or 1 or more items).
      * Return the number of rows that were successfully updated.
      */
-    private int updateInventory(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    private int updateInventory(final Uri uri, final ContentValues values, final String selection,
+                                final String[] selectionArgs) {
 
         //Update the selected inventory in the inventory database table with the given ContentValues
         //If the name key is present, check that the value is not null.
@@ -231,7 +1203,7 @@ public class InventoryProvider extends ContentProvider {
         }
         //If the price key is present, check that the value is not null.
         if (values.containsKey(InventoryEntry.COLUMN_PRICE)) {
-            Integer price = values.getAsInteger(InventoryEntry.COLUMN_PRICE);
+            Long price = InventoryEntry.getPrice(values);
             if (price != null && price < 0) {
                 throw new IllegalArgumentException("Price Required");
             }
@@ -240,7 +1212,7 @@ public class InventoryProvider extends ContentProvider {
         if (values.containsKey(InventoryEntry.COLUMN_QUANTITY)) {
             Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
             if (quantity != null && quantity < 0) {
-                throw new IllegalArgumentException("Price Required");
+                throw new IllegalArgumentException("Quantity Required");
             }
         }
         //If the supplier name key is present, check that the value is not null.
@@ -261,27 +1233,155 @@ public class InventoryProvider extends ContentProvider {
         if (values.size() == 0) {
             return 0;
         }
-        //Otherwise, get writable database to update the data
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
-
-        //Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
+        //Without an item to take the other one from, the supplier name and number must change together
+        if (sUriMatcher.match(uri) != INVENTORY_ID && values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)
+                != values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NUMBER)) {
+            throw new IllegalArgumentException("Supplier Name and Phone Number Required");
+        }
+        //Perform the update on the database and get the number of rows affected. Updates of a
+        //single item's quantity or of all its columns use precompiled statements.
+        final boolean singleItem = sUriMatcher.match(uri) == INVENTORY_ID;
+        final Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
+        int rowsUpdated = mWriter.execute(new InventoryWriter.Write<Integer>() {
+            @Override
+            public Integer run(SQLiteDatabase database) {
+                InventoryStatements statements = getStatements();
+                int rowsUpdated;
+                database.beginTransaction();
+                try {
+                    //A new quantity replaces the stock, including sales not compacted yet, so compact them first
+                    if (values.containsKey(InventoryEntry.COLUMN_QUANTITY)) {
+                        SalesLedger.compact(database);
+                    }
+                    if (singleItem && values.size() == 1 && quantity != null) {
+                        rowsUpdated = statements.updateQuantity(ContentUris.parseId(uri), quantity);
+                    } else if (singleItem && InventoryStatements.isFullItem(values)) {
+                        rowsUpdated = statements.updateItem(ContentUris.parseId(uri), values);
+                    } else {
+                        ContentValues columns = toInventoryColumns(statements, values,
+                                singleItem ? ContentUris.parseId(uri) : -1);
+                        rowsUpdated = columns == null ? 0 : database.update(InventoryEntry.TABLE_NAME,
+                                columns, SalesLedger.toCurrentQuantity(selection), selectionArgs);
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                return rowsUpdated;
+            }
+        });
 
-        //If 1 or more rows were updated, then notify all listeners
+        //If 1 or more rows were updated, then drop the changed items from the cache
+        //and notify all listeners
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            if (singleItem) {
+                mCache.remove(ContentUris.parseId(uri));
+            } else {
+                mCache.clear();
+            }
+            notifyChange(uri);
         }
         // Return the number of rows updated
         return rowsUpdated;
     }
 
+    /**
+     * Returns the values to write to the inventory table. A supplier name and number are
+     * replaced by the ID of that supplier, which is added if there is none yet. When only one
+     * of them changes for a single item, the other is kept from the item's current supplier.
+     * Returns null if that item doesn't exist.
+     *
+     * @param id The ID of the item being updated, or -1 when updating a selection of items
+     */
+    private static ContentValues toInventoryColumns(InventoryStatements statements, ContentValues values, long id) {
+        boolean hasName = values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        boolean hasNumber = values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NUMBER);
+        if (!hasName && !hasNumber) {
+            return values;
+        }
+
+        String supplierName = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        String supplierNumber = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NUMBER);
+        if (!hasName || !hasNumber) {
+            if (id == -1) {
+                throw new IllegalArgumentException("Supplier Name and Phone Number Required");
+            }
+            Cursor cursor = statements.getDatabase().query(InventoryEntry.TABLE_NAME + SUPPLIER_JOIN,
+                    new String[]{InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.COLUMN_SUPPLIER_NUMBER},
+                    InventoryEntry._ID + "=?", new String[]{String.valueOf(id)}, null, null, null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                if (!hasName) {
+                    supplierName = cursor.getString(0);
+                } else {
+                    supplierNumber = cursor.getString(1);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        ContentValues columns = new ContentValues(values);
+        columns.remove(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        columns.remove(InventoryEntry.COLUMN_SUPPLIER_NUMBER);
+        columns.put(InventoryEntry.COLUMN_SUPPLIER_ID, statements.getSupplierId(supplierName, supplierNumber));
+        return columns;
+    }
+
+    /**
+     * Update the name or number of a supplier, which changes it for all of its items in one
+     * row write. Return the number of suppliers updated: 0 if the supplier doesn't exist or
+     * another supplier already has the new name and number.
+     */
+    private int updateSupplier(final Uri uri, final ContentValues values) {
+        for (String key : values.keySet()) {
+            if (!key.equals(SupplierEntry.COLUMN_SUPPLIER_NAME) && !key.equals(SupplierEntry.COLUMN_SUPPLIER_NUMBER)) {
+                throw new IllegalArgumentException("Cannot update supplier column " + key);
+            }
+        }
+        if (values.containsKey(SupplierEntry.COLUMN_SUPPLIER_NAME)
+                && TextUtils.isEmpty(values.getAsString(SupplierEntry.COLUMN_SUPPLIER_NAME))) {
+            throw new IllegalArgumentException("Supplier Name Required");
+        }
+        if (values.containsKey(SupplierEntry.COLUMN_SUPPLIER_NUMBER)
+                && TextUtils.isEmpty(values.getAsString(SupplierEntry.COLUMN_SUPPLIER_NUMBER))) {
+            throw new IllegalArgumentException("Supplier Phone Number Required");
+        }
+        if (values.size() == 0) {
+            return 0;
+        }
+
+        int rowsUpdated;
+        try {
+            rowsUpdated = mWriter.execute(new InventoryWriter.Write<Integer>() {
+                @Override
+                public Integer run(SQLiteDatabase database) {
+                    return database.update(SupplierEntry.TABLE_NAME, values, SupplierEntry.COLUMN_SUPPLIER_ID + "=?",
+                            new String[]{String.valueOf(ContentUris.parseId(uri))});
+                }
+            });
+        } catch (SQLiteConstraintException e) {
+            Log.e(LOG_TAG, "Another supplier already has the name and number for " + uri);
+            return 0;
+        }
+
+        //Every cached item of the supplier is now stale, and so is every list showing them
+        if (rowsUpdated != 0) {
+            mCache.clear();
+            notifyChange(uri);
+            notifyChange(InventoryEntry.CONTENT_URI);
+        }
+        return rowsUpdated;
+    }
+
     /**
      * Delete the data at the given selection and selection arguments.
      */
     @Override
-    public int delete(Uri uri, String selection, String[] selectionArgs) {
-        //Get writable database
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+    public int delete(final Uri uri, final String selection, final String[] selectionArgs) {
+        long start = System.nanoTime();
 
         // Track the number of rows that were deleted
         int rowsDeleted;
@@ -290,13 +1390,24 @@ public class InventoryProvider extends ContentProvider {
         switch (match) {
             case INVENTORY:
                 //Delete rows that match the selection and selection args
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                rowsDeleted = mWriter.execute(new InventoryWriter.Write<Integer>() {
+                    @Override
+                    public Integer run(SQLiteDatabase database) {
+                        return database.delete(InventoryEntry.TABLE_NAME,
+                                SalesLedger.toCurrentQuantity(selection), selectionArgs);
+                    }
+                });
+                mCache.clear();
                 break;
             case INVENTORY_ID:
-                //Delete a single row given by the ID in the URI
-                selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                //Delete a single row given by the ID in the URI with the precompiled statement
+                rowsDeleted = mWriter.execute(new InventoryWriter.Write<Integer>() {
+                    @Override
+                    public Integer run(SQLiteDatabase database) {
+                        return getStatements().delete(ContentUris.parseId(uri));
+                    }
+                });
+                mCache.remove(ContentUris.parseId(uri));
                 break;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
@@ -304,9 +1415,19 @@ public class InventoryProvider extends ContentProvider {
         //If 1 or more rows were deleted, then notify all listeners that the data at that
         //uri has changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
+        mMetrics.record(InventoryMetrics.DELETE, sUriPatterns.get(match), start, rowsDeleted);
         //Return the number of rows deleted
         return rowsDeleted;
     }
+
+    /**
+     * Carries the failure of a batch out of the writer thread, which only passes on unchecked exceptions
+     */
+    private static final class BatchFailedException extends RuntimeException {
+        BatchFailedException(OperationApplicationException cause) {
+            super(cause);
+        }
+    }
 }
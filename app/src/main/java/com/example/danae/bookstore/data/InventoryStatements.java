@@ -0,0 +1,264 @@
+package com.example.danae.bookstore.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SalesEntry;
+import com.example.danae.bookstore.data.InventoryContract.SupplierEntry;
+
+/**
+ * Precompiled statements for the provider's most frequent writes. Each statement is compiled once
+ * and then reused, so these writes don't build and parse SQL or allocate a map of values on every
+ * call. Statements hold their bound arguments, so a set of statements must only be used by one
+ * thread; the provider keeps one set per thread.
+ */
+class InventoryStatements {
+
+    /**
+     * SQL used to insert a full inventory row
+     */
+    static final String SQL_INSERT = "INSERT INTO " + InventoryEntry.TABLE_NAME + " ("
+            + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+            + InventoryEntry.COLUMN_PRICE + ", "
+            + InventoryEntry.COLUMN_QUANTITY + ", "
+            + InventoryEntry.COLUMN_SUPPLIER_ID + ", "
+            + InventoryEntry.COLUMN_ISBN + ") VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * SQL used to find the supplier with a given name and number, through the unique index on both
+     */
+    private static final String SQL_SELECT_SUPPLIER = "SELECT " + SupplierEntry.COLUMN_SUPPLIER_ID
+            + " FROM " + SupplierEntry.TABLE_NAME
+            + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?"
+            + " AND " + SupplierEntry.COLUMN_SUPPLIER_NUMBER + " = ?";
+
+    /**
+     * SQL used to add a supplier
+     */
+    static final String SQL_INSERT_SUPPLIER = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + SupplierEntry.COLUMN_SUPPLIER_NUMBER + ") VALUES (?, ?)";
+
+    /**
+     * SQL used to restock the item with a given ISBN: the quantity is added to its stock,
+     * and the price replaces its price unless it is null. The ISBN index finds the row.
+     */
+    private static final String SQL_RESTOCK = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_QUANTITY + " = " + InventoryEntry.COLUMN_QUANTITY + " + ?, "
+            + InventoryEntry.COLUMN_PRICE + " = COALESCE(?, " + InventoryEntry.COLUMN_PRICE + ")"
+            + " WHERE " + InventoryEntry.COLUMN_ISBN + " = ?";
+
+    /**
+     * SQL used to replace every column of one inventory row
+     */
+    private static final String SQL_UPDATE_ITEM = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_PRODUCT_NAME + " = ?, "
+            + InventoryEntry.COLUMN_PRICE + " = ?, "
+            + InventoryEntry.COLUMN_QUANTITY + " = ?, "
+            + InventoryEntry.COLUMN_SUPPLIER_ID + " = ?"
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    /**
+     * SQL used to set the quantity of one inventory row
+     */
+    private static final String SQL_UPDATE_QUANTITY = "UPDATE " + InventoryEntry.TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_QUANTITY + " = ?"
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    /**
+     * SQL used to delete one inventory row
+     */
+    static final String SQL_DELETE = "DELETE FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    /**
+     * SQL used to sell stock of one item by appending a sale to the sales ledger. The stock check
+     * and the append happen in the same statement, so concurrent sales can never read a stale
+     * quantity or oversell. Nothing is appended if the item doesn't have enough stock.
+     */
+    static final String SQL_SELL = "INSERT INTO " + SalesEntry.TABLE_NAME + " ("
+            + SalesEntry.COLUMN_ITEM_ID + ", " + SalesEntry.COLUMN_QUANTITY + ", " + SalesEntry.COLUMN_SOLD_AT + ")"
+            + " SELECT " + InventoryEntry._ID + ", ?, ? FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " = ? AND " + SalesLedger.currentQuantity() + " >= ?";
+
+    /**
+     * SQL used to read the stock level of one item, including the sales not compacted yet
+     */
+    static final String SQL_SELECT_QUANTITY = "SELECT " + SalesLedger.currentQuantity()
+            + " FROM " + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry._ID + " = ?";
+
+    private final SQLiteDatabase mDatabase;
+    private final SQLiteStatement mInsert;
+    private final SQLiteStatement mSelectSupplier;
+    private final SQLiteStatement mInsertSupplier;
+    private final SQLiteStatement mRestock;
+    private final SQLiteStatement mUpdateItem;
+    private final SQLiteStatement mUpdateQuantity;
+    private final SQLiteStatement mDelete;
+    private final SQLiteStatement mSell;
+    private final SQLiteStatement mSelectQuantity;
+
+    /**
+     * Compile all statements for the given database
+     */
+    InventoryStatements(SQLiteDatabase database) {
+        mDatabase = database;
+        mInsert = database.compileStatement(SQL_INSERT);
+        mSelectSupplier = database.compileStatement(SQL_SELECT_SUPPLIER);
+        mInsertSupplier = database.compileStatement(SQL_INSERT_SUPPLIER);
+        mRestock = database.compileStatement(SQL_RESTOCK);
+        mUpdateItem = database.compileStatement(SQL_UPDATE_ITEM);
+        mUpdateQuantity = database.compileStatement(SQL_UPDATE_QUANTITY);
+        mDelete = database.compileStatement(SQL_DELETE);
+        mSell = database.compileStatement(SQL_SELL);
+        mSelectQuantity = database.compileStatement(SQL_SELECT_QUANTITY);
+    }
+
+    /**
+     * Returns the database the statements were compiled for
+     */
+    SQLiteDatabase getDatabase() {
+        return mDatabase;
+    }
+
+    /**
+     * Returns true if the values set every column of an item, so that they can be written
+     * with {@link #updateItem(long, ContentValues)}.
+     */
+    static boolean isFullItem(ContentValues values) {
+        return values.size() == 5
+                && values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME) != null
+                && InventoryEntry.getPrice(values) != null
+                && values.getAsInteger(InventoryEntry.COLUMN_QUANTITY) != null
+                && values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME) != null
+                && values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NUMBER) != null;
+    }
+
+    /**
+     * Returns the ID of the supplier with the given name and number, adding the supplier
+     * if there is none yet.
+     */
+    long getSupplierId(String name, String number) {
+        mSelectSupplier.bindString(1, name);
+        mSelectSupplier.bindString(2, number);
+        try {
+            return mSelectSupplier.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            //No supplier with this name and number yet
+            mInsertSupplier.bindString(1, name);
+            mInsertSupplier.bindString(2, number);
+            return mInsertSupplier.executeInsert();
+        }
+    }
+
+    /**
+     * Insert an already validated item, linked to the supplier with its supplier name and number.
+     * Return the ID of the new row, or -1 on failure.
+     */
+    long insert(ContentValues values) {
+        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
+        String isbn = values.getAsString(InventoryEntry.COLUMN_ISBN);
+        //A new supplier is only kept if the item is inserted as well
+        mDatabase.beginTransaction();
+        try {
+            long supplierId = getSupplierId(values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME),
+                    values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NUMBER));
+            mInsert.bindString(1, values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME));
+            mInsert.bindLong(2, InventoryEntry.getPrice(values));
+            mInsert.bindLong(3, quantity == null ? 0 : quantity);
+            mInsert.bindLong(4, supplierId);
+            if (isbn == null) {
+                mInsert.bindNull(5);
+            } else {
+                mInsert.bindString(5, isbn);
+            }
+            long newRowId = mInsert.executeInsert();
+            mDatabase.setTransactionSuccessful();
+            return newRowId;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Add the quantity of the values to the stock of the item with the given ISBN, and set its
+     * price if the values have one. Return the number of rows updated: 0 if no item has the ISBN.
+     */
+    int restock(String isbn, ContentValues values) {
+        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
+        Long price = InventoryEntry.getPrice(values);
+        mRestock.bindLong(1, quantity == null ? 0 : quantity);
+        if (price == null) {
+            mRestock.bindNull(2);
+        } else {
+            mRestock.bindLong(2, price);
+        }
+        mRestock.bindString(3, isbn);
+        return mRestock.executeUpdateDelete();
+    }
+
+    /**
+     * Replace every column of an item. The values must pass {@link #isFullItem(ContentValues)}.
+     * Return the number of rows updated.
+     */
+    int updateItem(long id, ContentValues values) {
+        mDatabase.beginTransaction();
+        try {
+            long supplierId = getSupplierId(values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME),
+                    values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NUMBER));
+            mUpdateItem.bindString(1, values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME));
+            mUpdateItem.bindLong(2, InventoryEntry.getPrice(values));
+            mUpdateItem.bindLong(3, values.getAsInteger(InventoryEntry.COLUMN_QUANTITY));
+            mUpdateItem.bindLong(4, supplierId);
+            mUpdateItem.bindLong(5, id);
+            int rowsUpdated = mUpdateItem.executeUpdateDelete();
+            mDatabase.setTransactionSuccessful();
+            return rowsUpdated;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Set the quantity of an item. Return the number of rows updated.
+     */
+    int updateQuantity(long id, int quantity) {
+        mUpdateQuantity.bindLong(1, quantity);
+        mUpdateQuantity.bindLong(2, id);
+        return mUpdateQuantity.executeUpdateDelete();
+    }
+
+    /**
+     * Delete an item. Return the number of rows deleted.
+     */
+    int delete(long id) {
+        mDelete.bindLong(1, id);
+        return mDelete.executeUpdateDelete();
+    }
+
+    /**
+     * Sell the given number of units of an item, and read the new stock level back in the same
+     * transaction. Return the new stock level, or -1 if the item doesn't exist or has too little stock.
+     */
+    int sell(long id, int quantity) {
+        mDatabase.beginTransaction();
+        try {
+            int newQuantity = -1;
+            mSell.bindLong(1, quantity);
+            mSell.bindLong(2, System.currentTimeMillis());
+            mSell.bindLong(3, id);
+            mSell.bindLong(4, quantity);
+            if (mSell.executeInsert() != -1) {
+                mSelectQuantity.bindLong(1, id);
+                newQuantity = (int) mSelectQuantity.simpleQueryForLong();
+            }
+            mDatabase.setTransactionSuccessful();
+            return newQuantity;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+}
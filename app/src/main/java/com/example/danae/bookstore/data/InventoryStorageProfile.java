@@ -0,0 +1,71 @@
+package com.example.danae.bookstore.data;
+
+/**
+ * Storage settings applied to the inventory database each time it is opened. The pragmas are
+ * set on the primary connection, which runs every write; connections opened later for WAL
+ * readers use SQLite's defaults.
+ */
+public final class InventoryStorageProfile {
+
+    /**
+     * Profile used by the app: write-ahead logging, so that list reads don't wait for quick sales,
+     * with synchronous=NORMAL, which in WAL mode only syncs at checkpoints instead of every commit.
+     * The benchmark module's StorageProfileBenchmark compares it with the rollback journal and
+     * with synchronous=FULL.
+     */
+    public static final InventoryStorageProfile DEFAULT =
+            new InventoryStorageProfile(true, "NORMAL", 4096, true, 8 * 1024 * 1024, 500);
+
+    private final boolean mWriteAheadLogging;
+    private final String mSynchronous;
+    private final int mCacheSizeKb;
+    private final boolean mTempStoreInMemory;
+    private final long mMmapSizeBytes;
+    private final int mCheckpointInterval;
+
+    /**
+     * Constructs a new storage profile.
+     *
+     * @param writeAheadLogging  True to use write-ahead logging instead of a rollback journal
+     * @param synchronous        Value of PRAGMA synchronous: OFF, NORMAL or FULL
+     * @param cacheSizeKb        Page cache size of the primary connection, in kilobytes
+     * @param tempStoreInMemory  True to keep temporary tables and indices in memory
+     * @param mmapSizeBytes      Maximum number of bytes of the database file to memory-map, 0 for none.
+     *                           Ignored by SQLite versions without memory-mapped I/O.
+     * @param checkpointInterval Number of committed writes between background checkpoints of the
+     *                           write-ahead log, 0 to leave checkpoints to SQLite
+     */
+    public InventoryStorageProfile(boolean writeAheadLogging, String synchronous, int cacheSizeKb,
+                                   boolean tempStoreInMemory, long mmapSizeBytes, int checkpointInterval) {
+        mWriteAheadLogging = writeAheadLogging;
+        mSynchronous = synchronous;
+        mCacheSizeKb = cacheSizeKb;
+        mTempStoreInMemory = tempStoreInMemory;
+        mMmapSizeBytes = mmapSizeBytes;
+        mCheckpointInterval = checkpointInterval;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    public String getSynchronous() {
+        return mSynchronous;
+    }
+
+    public int getCacheSizeKb() {
+        return mCacheSizeKb;
+    }
+
+    public boolean isTempStoreInMemory() {
+        return mTempStoreInMemory;
+    }
+
+    public long getMmapSizeBytes() {
+        return mMmapSizeBytes;
+    }
+
+    public int getCheckpointInterval() {
+        return mCheckpointInterval;
+    }
+}
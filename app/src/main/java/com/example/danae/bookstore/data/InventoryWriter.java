@@ -0,0 +1,301 @@
+package com.example.danae.bookstore.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every write of the provider on one writer thread. Writes that arrive within a few
+ * milliseconds of each other are committed together in a single transaction (group commit),
+ * so a burst of writes from several threads pays for one commit instead of one each, and no
+ * caller ever waits on the database lock held by another.
+ * <p>
+ * If a write in a group fails, the group is rolled back and each of its writes is run again in
+ * a transaction of its own, so one failing write never takes others down with it. Writes must
+ * therefore only change the database; caches and notifications are updated by the caller once
+ * {@link #execute(Write)} returns.
+ */
+class InventoryWriter {
+
+    public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
+
+    /**
+     * A write run on the writer thread, inside a transaction
+     */
+    interface Write<T> {
+        T run(SQLiteDatabase database);
+    }
+
+    /**
+     * How long the writer waits for more writes to join a group, in milliseconds. Chosen with
+     * InventoryWriterBenchmarkTest, which compares windows and group sizes for 1, 4 and 16
+     * writing threads.
+     */
+    private static final long GROUP_COMMIT_WINDOW_MS = 2;
+
+    /**
+     * Most writes committed in one group
+     */
+    private static final int MAX_GROUP_SIZE = 64;
+
+    private final InventoryDbHelper mDbHelper;
+    private final long mGroupCommitWindowNanos;
+    private final int mMaxGroupSize;
+    private final BlockingQueue<Request<?>> mQueue = new LinkedBlockingQueue<>();
+    private final Thread mThread;
+
+    /**
+     * A write that must run alone, taken from the queue while a group was being collected
+     */
+    private Request<?> mNextRequest;
+
+    /**
+     * Set once the writer thread should end
+     */
+    private volatile boolean mQuitting;
+
+    /**
+     * Constructs a new {@link InventoryWriter} and starts its thread
+     */
+    InventoryWriter(InventoryDbHelper dbHelper) {
+        this(dbHelper, GROUP_COMMIT_WINDOW_MS, MAX_GROUP_SIZE);
+    }
+
+    /**
+     * Constructs a new {@link InventoryWriter} with the given group commit window, in
+     * milliseconds, and largest group, and starts its thread. Used by benchmarks to compare
+     * other settings with the defaults.
+     */
+    InventoryWriter(InventoryDbHelper dbHelper, long groupCommitWindowMillis, int maxGroupSize) {
+        mDbHelper = dbHelper;
+        mGroupCommitWindowNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitWindowMillis);
+        mMaxGroupSize = maxGroupSize;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWrites();
+            }
+        }, "InventoryWriter");
+        mThread.start();
+    }
+
+    /**
+     * Run a write on the writer thread and wait until it is committed. A write may be grouped
+     * with others. Exceptions and errors thrown by the write are thrown here.
+     */
+    <T> T execute(Write<T> write) {
+        return execute(write, false);
+    }
+
+    /**
+     * Run a write on the writer thread in a transaction of its own, and wait until it is
+     * committed. Used for writes that can't be run twice, such as batches that update the
+     * cache as they go.
+     */
+    <T> T executeAlone(Write<T> write) {
+        return execute(write, true);
+    }
+
+    private <T> T execute(Write<T> write, boolean alone) {
+        if (Thread.currentThread() == mThread) {
+            //Called by a write that is already running, such as an operation of a batch:
+            //it is part of that write's transaction
+            return write.run(mDbHelper.getWritableDatabase());
+        }
+        Request<T> request = new Request<>(write, alone);
+        mQueue.add(request);
+        return request.get();
+    }
+
+    /**
+     * Stop the writer thread once the writes already queued are committed. The provider's
+     * writer runs as long as the process; writers made by benchmarks are stopped when done.
+     */
+    void quit() {
+        mQuitting = true;
+        mThread.interrupt();
+    }
+
+    /**
+     * The loop of the writer thread: collect a group of writes and commit it, until quit
+     */
+    private void runWrites() {
+        List<Request<?>> group = new ArrayList<>(mMaxGroupSize);
+        while (!mQuitting || mNextRequest != null || !mQueue.isEmpty()) {
+            group.clear();
+            try {
+                collectGroup(group);
+            } catch (InterruptedException e) {
+                //Only quit interrupts the writer; commit whatever was collected
+                if (group.isEmpty()) {
+                    continue;
+                }
+            }
+            commitGroup(group);
+        }
+    }
+
+    /**
+     * Wait for the next write, then add the writes that arrive within the group commit window.
+     * A write that must run alone ends the group.
+     */
+    private void collectGroup(List<Request<?>> group) throws InterruptedException {
+        Request<?> first = mNextRequest != null ? mNextRequest : mQueue.take();
+        mNextRequest = null;
+        group.add(first);
+        if (first.mAlone) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + mGroupCommitWindowNanos;
+        while (group.size() < mMaxGroupSize) {
+            Request<?> next = mQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            if (next.mAlone) {
+                mNextRequest = next;
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    /**
+     * Commit the group in one transaction and complete its writes. If that fails, run each
+     * write in its own transaction instead.
+     */
+    private void commitGroup(List<Request<?>> group) {
+        try {
+            SQLiteDatabase database = mDbHelper.getWritableDatabase();
+            if (group.size() > 1 && commit(database, group)) {
+                mDbHelper.onWriteCommitted();
+            } else {
+                for (Request<?> request : group) {
+                    if (commit(database, request)) {
+                        mDbHelper.onWriteCommitted();
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            //The database couldn't be opened, so none of the writes ran
+            Log.e(LOG_TAG, "Failed to open the database for " + group.size() + " writes", e);
+            for (Request<?> request : group) {
+                request.fail(e);
+            }
+        } finally {
+            //Always release the callers, so that no caller waits forever and the thread goes on
+            for (Request<?> request : group) {
+                request.complete();
+            }
+        }
+    }
+
+    /**
+     * Run all of the writes in one transaction. Return true if it was committed.
+     */
+    private static boolean commit(SQLiteDatabase database, List<Request<?>> group) {
+        try {
+            database.beginTransaction();
+            try {
+                for (Request<?> request : group) {
+                    request.run(database);
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            return true;
+        } catch (Throwable e) {
+            //Errors too, such as running out of memory on a large write: they belong to one
+            //write, and must not end the writer thread that every other caller waits on
+            Log.w(LOG_TAG, "Group of " + group.size() + " writes failed, retrying one by one", e);
+            return false;
+        }
+    }
+
+    /**
+     * Run one write in its own transaction, recording its result or error. Return true if it
+     * was committed.
+     */
+    private static boolean commit(SQLiteDatabase database, Request<?> request) {
+        try {
+            database.beginTransaction();
+            try {
+                request.run(database);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            return true;
+        } catch (Throwable e) {
+            request.fail(e);
+            return false;
+        }
+    }
+
+    /**
+     * A write waiting for the writer thread, and its result once committed
+     */
+    private static final class Request<T> {
+
+        private final Write<T> mWrite;
+        private final boolean mAlone;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private T mResult;
+        private Throwable mError;
+
+        Request(Write<T> write, boolean alone) {
+            mWrite = write;
+            mAlone = alone;
+        }
+
+        void run(SQLiteDatabase database) {
+            mError = null;
+            mResult = mWrite.run(database);
+        }
+
+        void fail(Throwable error) {
+            mResult = null;
+            mError = error;
+        }
+
+        void complete() {
+            mDone.countDown();
+        }
+
+        /**
+         * Wait until the write is committed or has failed. The write can't be taken back once
+         * queued, so interrupts are kept for later rather than ending the wait.
+         */
+        T get() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mDone.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (mError instanceof RuntimeException) {
+                throw (RuntimeException) mError;
+            } else if (mError instanceof Error) {
+                throw (Error) mError;
+            } else if (mError != null) {
+                //Writes can't throw checked exceptions, but keep the cause if one does
+                throw new IllegalStateException(mError);
+            }
+            return mResult;
+        }
+    }
+}
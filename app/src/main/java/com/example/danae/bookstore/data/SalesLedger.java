@@ -0,0 +1,319 @@
+package com.example.danae.bookstore.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+import com.example.danae.bookstore.data.InventoryContract.SalesEntry;
+
+import java.util.Locale;
+
+/**
+ * The sales ledger. A sale only appends a row to the sales events table, so sales of the same
+ * item don't rewrite its inventory row. The stock of an item is its quantity in the inventory
+ * table minus the units of its events that have not been compacted yet.
+ * <p>
+ * Compaction subtracts the new events from the quantity of their items, adds them to the daily
+ * totals and moves the compaction mark past them, all in one transaction. Queries read the
+ * compacted tables together with the events after the mark, so nothing they return changes when
+ * a compaction runs. Events are kept after compaction as the history of every sale.
+ */
+class SalesLedger {
+
+    /**
+     * Name of the single-row table holding the ID of the last compacted event
+     */
+    static final String COMPACTION_TABLE_NAME = "sales_compaction";
+    static final String COLUMN_LAST_EVENT_ID = "last_event_id";
+
+    /**
+     * Expression for the day of a sale
+     */
+    private static final String SALE_DAY = "date(" + SalesEntry.COLUMN_SOLD_AT + " / 1000, 'unixepoch', 'localtime')";
+
+    /**
+     * Query reading the ID of the last compacted event
+     */
+    static final String SQL_LAST_EVENT_ID = "SELECT " + COLUMN_LAST_EVENT_ID
+            + " FROM " + COMPACTION_TABLE_NAME;
+
+    /**
+     * Query reading the ID of the last event, 0 if there are none
+     */
+    static final String SQL_MAX_EVENT_ID = "SELECT IFNULL(MAX(" + SalesEntry._ID + "), 0)"
+            + " FROM " + SalesEntry.TABLE_NAME;
+
+    /**
+     * Statement moving the compaction mark to the given event ID
+     */
+    static final String SQL_SET_LAST_EVENT_ID = "UPDATE " + COMPACTION_TABLE_NAME
+            + " SET " + COLUMN_LAST_EVENT_ID + " = ?";
+
+    /**
+     * Query counting the events after the first ID up to the second ID
+     */
+    private static final String SQL_COUNT_EVENTS = "SELECT COUNT(*) FROM " + SalesEntry.TABLE_NAME
+            + " WHERE " + SalesEntry._ID + " > ? AND " + SalesEntry._ID + " <= ?";
+
+    /**
+     * Query reading the units of the events after the first ID up to the second ID, for each item
+     * and day
+     */
+    static final String SQL_DAILY_UNITS = "SELECT " + SALE_DAY + ", "
+            + SalesEntry.COLUMN_ITEM_ID + ", SUM(" + SalesEntry.COLUMN_QUANTITY + ")"
+            + " FROM " + SalesEntry.TABLE_NAME
+            + " WHERE " + SalesEntry._ID + " > ? AND " + SalesEntry._ID + " <= ?"
+            + " GROUP BY 1, 2";
+
+    /**
+     * Statement subtracting the units of the events after the first ID up to the second ID from
+     * the quantity of their items. Both IDs are bound twice.
+     */
+    static final String SQL_SUBTRACT_UNITS = "UPDATE " + InventoryEntry.TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_QUANTITY + " = " + InventoryEntry.COLUMN_QUANTITY
+            + " - (SELECT SUM(" + SalesEntry.COLUMN_QUANTITY + ") FROM " + SalesEntry.TABLE_NAME
+            + " WHERE " + SalesEntry.COLUMN_ITEM_ID + " = " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+            + " AND " + SalesEntry._ID + " > ? AND " + SalesEntry._ID + " <= ?)"
+            + " WHERE " + InventoryEntry._ID + " IN (SELECT " + SalesEntry.COLUMN_ITEM_ID
+            + " FROM " + SalesEntry.TABLE_NAME
+            + " WHERE " + SalesEntry._ID + " > ? AND " + SalesEntry._ID + " <= ?)";
+
+    /**
+     * Statements adding units to the daily total of a day and item: the first adds the total if
+     * there is none yet, the second adds the units to it
+     */
+    static final String SQL_INSERT_DAY = "INSERT OR IGNORE INTO " + SalesEntry.DAILY_TABLE_NAME
+            + " (" + SalesEntry.COLUMN_DAY + ", " + SalesEntry.COLUMN_ITEM_ID + ", " + SalesEntry.COLUMN_UNITS
+            + ") VALUES (?, ?, 0)";
+
+    static final String SQL_ADD_DAY_UNITS = "UPDATE " + SalesEntry.DAILY_TABLE_NAME
+            + " SET " + SalesEntry.COLUMN_UNITS + " = " + SalesEntry.COLUMN_UNITS + " + ?"
+            + " WHERE " + SalesEntry.COLUMN_DAY + " = ? AND " + SalesEntry.COLUMN_ITEM_ID + " = ?";
+
+    /**
+     * Query for the IDs of the items with sales not compacted yet
+     */
+    static final String SQL_PENDING_ITEMS = "SELECT " + SalesEntry.COLUMN_ITEM_ID
+            + " FROM " + SalesEntry.TABLE_NAME + " WHERE " + isPending(SalesEntry._ID);
+
+    /**
+     * Columns of {@link #PENDING_BY_SUPPLIER}: the units sold and their value in cents
+     */
+    static final String COLUMN_PENDING_UNITS = "pending_units";
+    static final String COLUMN_PENDING_VALUE = "pending_value";
+
+    /**
+     * Table of the sales not compacted yet, with one row for each supplier that has any. The
+     * supplier summary holds the compacted stock, so its totals less these are the current totals.
+     */
+    static final String PENDING_BY_SUPPLIER = "(SELECT "
+            + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_SUPPLIER_ID + " AS " + InventoryEntry.COLUMN_SUPPLIER_ID + ", "
+            + "SUM(" + SalesEntry.TABLE_NAME + "." + SalesEntry.COLUMN_QUANTITY + ") AS " + COLUMN_PENDING_UNITS + ", "
+            + "SUM(" + SalesEntry.TABLE_NAME + "." + SalesEntry.COLUMN_QUANTITY + " * "
+            + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_PRICE + ") AS " + COLUMN_PENDING_VALUE
+            + " FROM " + SalesEntry.TABLE_NAME + " JOIN " + InventoryEntry.TABLE_NAME
+            + " ON " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " = "
+            + SalesEntry.TABLE_NAME + "." + SalesEntry.COLUMN_ITEM_ID
+            + " WHERE " + isPending(SalesEntry.TABLE_NAME + "." + SalesEntry._ID)
+            + " GROUP BY " + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_SUPPLIER_ID + ") AS pending_sales";
+
+    /**
+     * Units of the sales not compacted yet, for each day and item
+     */
+    private static final String PENDING_DAILY_UNITS = "(SELECT " + SALE_DAY + " AS " + SalesEntry.COLUMN_DAY + ", "
+            + SalesEntry.COLUMN_ITEM_ID + ", SUM(" + SalesEntry.COLUMN_QUANTITY + ") AS " + SalesEntry.COLUMN_UNITS
+            + " FROM " + SalesEntry.TABLE_NAME + " WHERE " + isPending(SalesEntry._ID) + " GROUP BY 1, 2) AS pending";
+
+    /**
+     * Table of the daily totals including the sales not compacted yet, named like the table of
+     * the compacted totals so that it can be read in its place. The compacted totals are joined
+     * with the pending sales of the same day and item, followed by the pending sales of days and
+     * items without compacted totals; only the few pending sales are grouped on every read.
+     */
+    static final String DAILY_TOTALS = "(SELECT "
+            + "compacted." + SalesEntry.COLUMN_DAY + " AS " + SalesEntry.COLUMN_DAY + ", "
+            + "compacted." + SalesEntry.COLUMN_ITEM_ID + " AS " + SalesEntry.COLUMN_ITEM_ID + ", "
+            + "compacted." + SalesEntry.COLUMN_UNITS + " + IFNULL(pending." + SalesEntry.COLUMN_UNITS + ", 0)"
+            + " AS " + SalesEntry.COLUMN_UNITS
+            + " FROM " + SalesEntry.DAILY_TABLE_NAME + " AS compacted LEFT JOIN " + PENDING_DAILY_UNITS
+            + " ON " + dailyTotalsMatch()
+            + " UNION ALL SELECT pending." + SalesEntry.COLUMN_DAY + ", pending." + SalesEntry.COLUMN_ITEM_ID
+            + ", pending." + SalesEntry.COLUMN_UNITS
+            + " FROM " + PENDING_DAILY_UNITS
+            + " LEFT JOIN " + SalesEntry.DAILY_TABLE_NAME + " AS compacted ON " + dailyTotalsMatch()
+            + " WHERE compacted." + SalesEntry.COLUMN_DAY + " IS NULL) AS " + SalesEntry.DAILY_TABLE_NAME;
+
+    private SalesLedger() {
+    }
+
+    /**
+     * Returns a condition holding for the events not compacted yet
+     *
+     * @param eventId Expression for the ID of the event
+     */
+    private static String isPending(String eventId) {
+        return eventId + " > (" + SQL_LAST_EVENT_ID + ")";
+    }
+
+    /**
+     * Returns the condition joining the compacted daily totals with the pending ones
+     */
+    private static String dailyTotalsMatch() {
+        return "pending." + SalesEntry.COLUMN_DAY + " = compacted." + SalesEntry.COLUMN_DAY
+                + " AND pending." + SalesEntry.COLUMN_ITEM_ID + " = compacted." + SalesEntry.COLUMN_ITEM_ID;
+    }
+
+    /**
+     * Returns an expression for the units of an item sold since the last compaction. The index
+     * on the item ID of the events finds them without reading older sales of other items.
+     *
+     * @param itemId Expression for the ID of the item
+     */
+    static String pendingUnits(String itemId) {
+        return "IFNULL((SELECT SUM(" + SalesEntry.COLUMN_QUANTITY + ") FROM " + SalesEntry.TABLE_NAME
+                + " WHERE " + SalesEntry.COLUMN_ITEM_ID + " = " + itemId
+                + " AND " + isPending(SalesEntry._ID) + "), 0)";
+    }
+
+    /**
+     * Returns an expression for the current stock of the items of the inventory table
+     */
+    static String currentQuantity() {
+        return InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_QUANTITY + " - "
+                + pendingUnits(InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID);
+    }
+
+    /**
+     * Returns the SQL of a caller's selection or sort order with every reference to the quantity
+     * column of the inventory, as quantity or inventory.quantity, replaced by the current stock.
+     * Callers then filter and sort by the stock they read rather than the compacted stock.
+     * Text in quotes and columns of other tables are left as they are.
+     */
+    static String toCurrentQuantity(String sql) {
+        if (sql == null || !sql.toLowerCase(Locale.US).contains(InventoryEntry.COLUMN_QUANTITY)) {
+            return sql;
+        }
+        StringBuilder result = new StringBuilder(sql.length() + 128);
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            int end;
+            if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                end = endOfQuoted(sql, i);
+            } else if (isNameStart(c)) {
+                //A name, with the table it is qualified with if any
+                end = endOfName(sql, i);
+                if (end < sql.length() - 1 && sql.charAt(end) == '.' && isNameStart(sql.charAt(end + 1))) {
+                    end = endOfName(sql, end + 1);
+                }
+                String name = sql.substring(i, end);
+                if (name.equalsIgnoreCase(InventoryEntry.COLUMN_QUANTITY) || name.equalsIgnoreCase(
+                        InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_QUANTITY)) {
+                    result.append('(').append(currentQuantity()).append(')');
+                    i = end;
+                    continue;
+                }
+            } else if (Character.isDigit(c)) {
+                //A number, which may end in letters such as the exponent of 1e5
+                end = endOfName(sql, i);
+            } else {
+                end = i + 1;
+            }
+            result.append(sql, i, end);
+            i = end;
+        }
+        return result.toString();
+    }
+
+    private static boolean isNameStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    /**
+     * Returns the index after the letters, digits and underscores starting at the given index
+     */
+    private static int endOfName(String sql, int start) {
+        int end = start;
+        while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the index after the quoted text or name starting at the given index. Quotes inside
+     * are doubled; text that is never closed runs to the end.
+     */
+    private static int endOfQuoted(String sql, int start) {
+        char close = sql.charAt(start) == '[' ? ']' : sql.charAt(start);
+        int end = start + 1;
+        while (end < sql.length()) {
+            if (sql.charAt(end++) == close) {
+                if (end < sql.length() && sql.charAt(end) == close && close != ']') {
+                    end++;
+                } else {
+                    return end;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Compact every event appended since the last compaction. May be called inside another
+     * transaction, for example by a write that replaces the quantity of an item.
+     *
+     * @return The number of events compacted
+     */
+    static int compact(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            long lastEventId = DatabaseUtils.longForQuery(db, SQL_LAST_EVENT_ID, null);
+            long newLastEventId = DatabaseUtils.longForQuery(db, SQL_MAX_EVENT_ID, null);
+            if (newLastEventId <= lastEventId) {
+                db.setTransactionSuccessful();
+                return 0;
+            }
+            String first = String.valueOf(lastEventId);
+            String last = String.valueOf(newLastEventId);
+            int events = (int) DatabaseUtils.longForQuery(db, SQL_COUNT_EVENTS, new String[]{first, last});
+
+            db.execSQL(SQL_SUBTRACT_UNITS, new Object[]{first, last, first, last});
+            addDailyUnits(db, first, last);
+            db.execSQL(SQL_SET_LAST_EVENT_ID, new Object[]{newLastEventId});
+
+            db.setTransactionSuccessful();
+            return events;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Add the units of the events after the first ID up to the last ID to the daily totals
+     */
+    private static void addDailyUnits(SQLiteDatabase db, String first, String last) {
+        SQLiteStatement insertDay = db.compileStatement(SQL_INSERT_DAY);
+        SQLiteStatement addDayUnits = db.compileStatement(SQL_ADD_DAY_UNITS);
+        Cursor cursor = db.rawQuery(SQL_DAILY_UNITS, new String[]{first, last});
+        try {
+            while (cursor.moveToNext()) {
+                String day = cursor.getString(0);
+                long itemId = cursor.getLong(1);
+                insertDay.bindString(1, day);
+                insertDay.bindLong(2, itemId);
+                insertDay.executeInsert();
+                addDayUnits.bindLong(1, cursor.getLong(2));
+                addDayUnits.bindString(2, day);
+                addDayUnits.bindLong(3, itemId);
+                addDayUnits.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            insertDay.close();
+            addDayUnits.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.danae.bookstore;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests of the price and quantity formatting used to bind the rows of the list.
+ */
+public class InventoryPagedAdapterTest {
+
+    @Test
+    public void formatPrice_matchesContract() {
+        char[] buffer = new char[24];
+        for (long cents = 0; cents < 100000; cents += 3) {
+            int start = InventoryPagedAdapter.formatPrice(cents, buffer);
+            assertEquals(InventoryEntry.formatPrice(cents), new String(buffer, start, buffer.length - start));
+        }
+    }
+
+    @Test
+    public void formatPrice_largestPriceFits() {
+        char[] buffer = new char[24];
+        int start = InventoryPagedAdapter.formatPrice(Long.MAX_VALUE, buffer);
+        assertEquals(InventoryEntry.formatPrice(Long.MAX_VALUE), new String(buffer, start, buffer.length - start));
+    }
+
+    @Test
+    public void formatNumber_writesBeforeEnd() {
+        char[] buffer = new char[11];
+        int start = InventoryPagedAdapter.formatNumber(0, buffer, buffer.length);
+        assertEquals("0", new String(buffer, start, buffer.length - start));
+        start = InventoryPagedAdapter.formatNumber(Integer.MAX_VALUE, buffer, buffer.length);
+        assertEquals(String.valueOf(Integer.MAX_VALUE), new String(buffer, start, buffer.length - start));
+        start = InventoryPagedAdapter.formatNumber(42, buffer, 5);
+        assertEquals(3, start);
+        assertEquals("42", new String(buffer, start, 2));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.danae.bookstore.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit tests of the CSV parser of {@link InventoryImporter}.
+ */
+public class CsvParserTest {
+
+    @Test
+    public void splitsFields() throws IOException {
+        List<String[]> records = parse("name,price,quantity\nBook,12.50,3\n");
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"name", "price", "quantity"}, records.get(0));
+        assertArrayEquals(new String[]{"Book", "12.50", "3"}, records.get(1));
+    }
+
+    @Test
+    public void lastLineNeedsNoLineBreak() throws IOException {
+        List<String[]> records = parse("a,b\nc,d");
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"c", "d"}, records.get(1));
+    }
+
+    @Test
+    public void keepsEmptyFields() throws IOException {
+        List<String[]> records = parse(",,\na,,b\n");
+        assertArrayEquals(new String[]{"", "", ""}, records.get(0));
+        assertArrayEquals(new String[]{"a", "", "b"}, records.get(1));
+    }
+
+    @Test
+    public void blankLineIsOneEmptyField() throws IOException {
+        List<String[]> records = parse("a\n\nb\n");
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[]{""}, records.get(1));
+    }
+
+    @Test
+    public void quotedFieldsHoldSeparatorsAndQuotes() throws IOException {
+        List<String[]> records = parse("\"Comma, Inc.\",\"Say \"\"hi\"\"\",\"two\nlines\",\"\"\n");
+        assertEquals(1, records.size());
+        assertArrayEquals(new String[]{"Comma, Inc.", "Say \"hi\"", "two\nlines", ""}, records.get(0));
+    }
+
+    @Test
+    public void quoteInsideUnquotedFieldIsText() throws IOException {
+        assertArrayEquals(new String[]{"5\" ruler", "x"}, parse("5\" ruler,x\n").get(0));
+    }
+
+    @Test
+    public void acceptsEveryLineBreak() throws IOException {
+        List<String[]> records = parse("a,b\r\nc,d\re,f\n");
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[]{"a", "b"}, records.get(0));
+        assertArrayEquals(new String[]{"c", "d"}, records.get(1));
+        assertArrayEquals(new String[]{"e", "f"}, records.get(2));
+    }
+
+    @Test
+    public void readsManyFields() throws IOException {
+        //More fields than the parser starts with room for
+        StringBuilder line = new StringBuilder();
+        String[] expected = new String[20];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = String.valueOf(i);
+            line.append(i == 0 ? "" : ",").append(i);
+        }
+        assertArrayEquals(expected, parse(line + "\n").get(0));
+    }
+
+    @Test
+    public void keepsSurrogatePairs() throws IOException {
+        assertArrayEquals(new String[]{"Café 📚", "€"}, parse("\"Café 📚\",€\n").get(0));
+    }
+
+    @Test
+    public void emptyFileHasNoRecords() throws IOException {
+        assertEquals(0, parse("").size());
+    }
+
+    @Test
+    public void unterminatedQuoteFails() {
+        try {
+            parse("a,b\n\"never closed,c\n");
+            fail("Parsed an unterminated quoted field");
+        } catch (IOException expected) {
+            // The file is malformed
+        }
+    }
+
+    /**
+     * Returns copies of every record of the text, since the parser reuses its arrays
+     */
+    private static List<String[]> parse(String csv) throws IOException {
+        InventoryImporter.CsvParser parser = new InventoryImporter.CsvParser(new StringReader(csv));
+        List<String[]> records = new ArrayList<>();
+        String[] record;
+        while ((record = parser.readRecord()) != null) {
+            records.add(record.clone());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.danae.bookstore.data;
+
+import com.example.danae.bookstore.data.InventoryContract.InventoryEntry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests of the price conversions in {@link InventoryEntry}.
+ */
+public class InventoryContractTest {
+
+    @Test
+    public void parsePrice_wholeAndDecimalPrices() {
+        assertEquals(1200, InventoryEntry.parsePrice("12"));
+        assertEquals(1250, InventoryEntry.parsePrice("12.5"));
+        assertEquals(1250, InventoryEntry.parsePrice("12.50"));
+        assertEquals(1200, InventoryEntry.parsePrice("12."));
+        assertEquals(5, InventoryEntry.parsePrice(".05"));
+        assertEquals(0, InventoryEntry.parsePrice("0"));
+        assertEquals(1999, InventoryEntry.parsePrice(" 19.99 "));
+    }
+
+    @Test
+    public void parsePrice_invalidPrices() {
+        assertEquals(-1, InventoryEntry.parsePrice(null));
+        assertEquals(-1, InventoryEntry.parsePrice(""));
+        assertEquals(-1, InventoryEntry.parsePrice("."));
+        assertEquals(-1, InventoryEntry.parsePrice("12.345"));
+        assertEquals(-1, InventoryEntry.parsePrice("-1"));
+        assertEquals(-1, InventoryEntry.parsePrice("1,50"));
+        assertEquals(-1, InventoryEntry.parsePrice("1.2.3"));
+        assertEquals(-1, InventoryEntry.parsePrice("abc"));
+    }
+
+    @Test
+    public void parsePrice_overflow() {
+        assertEquals(-1, InventoryEntry.parsePrice("99999999999999999999"));
+        //Fits as a number, but not once scaled to cents
+        assertEquals(-1, InventoryEntry.parsePrice(String.valueOf(Long.MAX_VALUE / 10)));
+        assertEquals(Long.MAX_VALUE / 100 * 100, InventoryEntry.parsePrice(String.valueOf(Long.MAX_VALUE / 100)));
+    }
+
+    @Test
+    public void formatPrice_twoDecimals() {
+        assertEquals("0.00", InventoryEntry.formatPrice(0));
+        assertEquals("0.05", InventoryEntry.formatPrice(5));
+        assertEquals("12.50", InventoryEntry.formatPrice(1250));
+        assertEquals("19.99", InventoryEntry.formatPrice(1999));
+        assertEquals("100.00", InventoryEntry.formatPrice(10000));
+    }
+
+    @Test
+    public void formatPrice_parsesBack() {
+        for (long cents = 0; cents < 100000; cents += 7) {
+            assertEquals(cents, InventoryEntry.parsePrice(InventoryEntry.formatPrice(cents)));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.danae.bookstore.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the ISBNs handed out by {@link InventoryGenerator}.
+ */
+public class InventoryGeneratorTest {
+
+    @Test
+    public void isbnsAreValidIsbn13() {
+        InventoryGenerator generator = new InventoryGenerator(42);
+        for (int position = 0; position < 10000; position++) {
+            String isbn = generator.getIsbn(position);
+            assertTrue(isbn, isValidIsbn13(isbn));
+            assertTrue(isbn, isbn.startsWith("978"));
+        }
+    }
+
+    @Test
+    public void isbnsGrowWithPosition() {
+        InventoryGenerator generator = new InventoryGenerator(7);
+        String previous = generator.getIsbn(0);
+        for (int position = 1; position < 10000; position++) {
+            String isbn = generator.getIsbn(position);
+            //Same length, so the text order is the numeric order and positions are ISBN ranges
+            assertEquals(previous.length(), isbn.length());
+            assertTrue(isbn, isbn.compareTo(previous) > 0);
+            previous = isbn;
+        }
+    }
+
+    @Test
+    public void sameSeedSameIsbns() {
+        assertEquals(new InventoryGenerator(42).getIsbn(123), new InventoryGenerator(42).getIsbn(123));
+        assertNotEquals(new InventoryGenerator(42).getIsbn(0), new InventoryGenerator(43).getIsbn(0));
+    }
+
+    @Test
+    public void checkDigitOfKnownIsbn() {
+        assertTrue(isValidIsbn13("9780306406157"));
+        assertFalse(isValidIsbn13("9780306406158"));
+    }
+
+    /**
+     * Returns true if the text is 13 digits whose weighted sum, alternating weights 1 and 3,
+     * is a multiple of 10
+     */
+    private static boolean isValidIsbn13(String isbn) {
+        if (isbn.length() != 13) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            char digit = isbn.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return false;
+            }
+            sum += (digit - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return sum % 10 == 0;
+    }
+}
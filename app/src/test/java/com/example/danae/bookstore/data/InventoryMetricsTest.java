@@ -0,0 +1,106 @@
+package com.example.danae.bookstore.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the latency histogram of {@link InventoryMetrics}: every latency falls
+ * into exactly one bucket no more than 25% wide, and percentiles are read back within that.
+ */
+public class InventoryMetricsTest {
+
+    @Test
+    public void shortLatenciesHaveBucketEach() {
+        for (int micros = 0; micros < 8; micros++) {
+            assertEquals(micros, InventoryMetrics.bucketOf(micros));
+            assertEquals(micros, InventoryMetrics.highestOf(micros));
+        }
+    }
+
+    @Test
+    public void bucketsFollowEachOther() {
+        int previous = InventoryMetrics.bucketOf(0);
+        for (long micros = 1; micros < 1L << 22; micros++) {
+            int bucket = InventoryMetrics.bucketOf(micros);
+            assertTrue("Bucket of " + micros, bucket == previous || bucket == previous + 1);
+            if (bucket != previous) {
+                //The previous bucket ended right before this latency
+                assertEquals(micros - 1, InventoryMetrics.highestOf(previous));
+            }
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void bucketsAreAtMostAQuarterWide() {
+        for (long micros = 1; micros < 1L << 30; micros = micros * 3 / 2 + 1) {
+            long highest = InventoryMetrics.highestOf(InventoryMetrics.bucketOf(micros));
+            assertTrue("Bucket of " + micros, highest >= micros);
+            assertTrue("Bucket of " + micros, highest - micros <= micros / 4);
+        }
+    }
+
+    @Test
+    public void longLatenciesShareLastBucket() {
+        int last = InventoryMetrics.BUCKET_COUNT - 1;
+        assertEquals(last, InventoryMetrics.bucketOf((1L << 30) - 1));
+        assertEquals(last, InventoryMetrics.bucketOf(1L << 30));
+        assertEquals(last, InventoryMetrics.bucketOf(Long.MAX_VALUE));
+        assertEquals((1L << 30) - 1, InventoryMetrics.highestOf(last));
+    }
+
+    @Test
+    public void percentilesOfEvenLatencies() {
+        InventoryMetrics.Stats stats = new InventoryMetrics.Stats();
+        for (int micros = 1; micros <= 1000; micros++) {
+            stats.record(micros, 1);
+        }
+        assertPercentile(500, percentile(stats, 0.5));
+        assertPercentile(900, percentile(stats, 0.9));
+        assertPercentile(990, percentile(stats, 0.99));
+        //No percentile is above the longest latency recorded
+        assertEquals(1000, percentile(stats, 1));
+    }
+
+    @Test
+    public void percentilesOfOutlier() {
+        InventoryMetrics.Stats stats = new InventoryMetrics.Stats();
+        for (int i = 0; i < 99; i++) {
+            stats.record(3, 1);
+        }
+        stats.record(5000000, 1);
+        assertEquals(3, percentile(stats, 0.5));
+        assertEquals(3, percentile(stats, 0.99));
+        assertEquals(5000000, percentile(stats, 1));
+    }
+
+    @Test
+    public void singleLatency() {
+        InventoryMetrics.Stats stats = new InventoryMetrics.Stats();
+        stats.record(0, 0);
+        assertEquals(0, percentile(stats, 0.5));
+        assertEquals(0, percentile(stats, 0.99));
+    }
+
+    /**
+     * Returns the percentile of the stats as their bundle reports it
+     */
+    private static long percentile(InventoryMetrics.Stats stats, double fraction) {
+        long[] latencies = stats.getLatencies();
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        return stats.percentile(latencies, total, fraction);
+    }
+
+    /**
+     * Check that a percentile is no lower than the true one and no more than 25% above it
+     */
+    private static void assertPercentile(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 4);
+    }
+}
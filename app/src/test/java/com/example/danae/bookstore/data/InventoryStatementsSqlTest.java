@@ -0,0 +1,64 @@
+package com.example.danae.bookstore.data;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests that the SQL of the precompiled statements, the compaction and the stats
+ * matches the snapshot in schemas/inventory.properties, which the benchmark module checks
+ * its copy of the SQL against.
+ */
+public class InventoryStatementsSqlTest {
+
+    private static final Properties sSnapshot = new Properties();
+
+    @BeforeClass
+    public static void loadSnapshot() throws IOException {
+        //Local unit tests run in the module directory
+        InputStream in = new FileInputStream("schemas/inventory.properties");
+        try {
+            sSnapshot.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void statementsMatchSnapshot() {
+        assertEquals(sSnapshot.getProperty("sql.insert"), InventoryStatements.SQL_INSERT);
+        assertEquals(sSnapshot.getProperty("sql.insert_supplier"), InventoryStatements.SQL_INSERT_SUPPLIER);
+        assertEquals(sSnapshot.getProperty("sql.sell"), InventoryStatements.SQL_SELL);
+        assertEquals(sSnapshot.getProperty("sql.select_quantity"), InventoryStatements.SQL_SELECT_QUANTITY);
+        assertEquals(sSnapshot.getProperty("sql.delete"), InventoryStatements.SQL_DELETE);
+    }
+
+    @Test
+    public void currentQuantityMatchesSnapshot() {
+        assertEquals(sSnapshot.getProperty("sql.current_quantity"), SalesLedger.currentQuantity());
+    }
+
+    @Test
+    public void compactionMatchesSnapshot() {
+        assertEquals(sSnapshot.getProperty("sql.last_event_id"), SalesLedger.SQL_LAST_EVENT_ID);
+        assertEquals(sSnapshot.getProperty("sql.max_event_id"), SalesLedger.SQL_MAX_EVENT_ID);
+        assertEquals(sSnapshot.getProperty("sql.subtract_units"), SalesLedger.SQL_SUBTRACT_UNITS);
+        assertEquals(sSnapshot.getProperty("sql.daily_units"), SalesLedger.SQL_DAILY_UNITS);
+        assertEquals(sSnapshot.getProperty("sql.insert_day"), SalesLedger.SQL_INSERT_DAY);
+        assertEquals(sSnapshot.getProperty("sql.add_day_units"), SalesLedger.SQL_ADD_DAY_UNITS);
+        assertEquals(sSnapshot.getProperty("sql.set_last_event_id"), SalesLedger.SQL_SET_LAST_EVENT_ID);
+    }
+
+    @Test
+    public void statsMatchSnapshot() {
+        assertEquals(sSnapshot.getProperty("sql.supplier_stats"), InventoryProvider.SQL_SUPPLIER_STATS);
+        assertEquals(sSnapshot.getProperty("sql.stats"), InventoryProvider.SQL_STATS);
+        assertEquals(sSnapshot.getProperty("sql.low_stock_selection"), InventoryProvider.LOW_STOCK_SELECTION);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.danae.bookstore.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Local unit tests of {@link SalesLedger#toCurrentQuantity(String)}, which makes callers'
+ * selections and sort orders on the quantity use the current stock.
+ */
+public class SalesLedgerQuantityTest {
+
+    private static final String CURRENT = "(" + SalesLedger.currentQuantity() + ")";
+
+    @Test
+    public void replacesQuantity() {
+        assertEquals(CURRENT + " < ?", SalesLedger.toCurrentQuantity("quantity < ?"));
+        assertEquals(CURRENT + " DESC, name", SalesLedger.toCurrentQuantity("inventory.quantity DESC, name"));
+        assertEquals("name = ? AND " + CURRENT + ">0", SalesLedger.toCurrentQuantity("name = ? AND QUANTITY>0"));
+        assertEquals("(" + CURRENT + " = 0)", SalesLedger.toCurrentQuantity("(Inventory.Quantity = 0)"));
+    }
+
+    @Test
+    public void keepsOtherNames() {
+        assertKept("quantity_sold > 2");
+        assertKept("min_quantity > 2 OR quantity2 = 1");
+        assertKept("sales_events.quantity > 2");
+        assertKept("price * 1e5 > 3");
+    }
+
+    @Test
+    public void keepsQuotedText() {
+        assertKept("name = 'quantity'");
+        assertKept("name = 'it''s quantity'");
+        assertKept("\"quantity\" > 1");
+        assertKept("[quantity] > 1 OR `quantity` > 1");
+        assertEquals("name = 'a''quantity' OR " + CURRENT + " = 1",
+                SalesLedger.toCurrentQuantity("name = 'a''quantity' OR quantity = 1"));
+    }
+
+    @Test
+    public void keepsSqlWithoutQuantity() {
+        String sql = "name LIKE ?";
+        assertSame(sql, SalesLedger.toCurrentQuantity(sql));
+        assertNull(SalesLedger.toCurrentQuantity(null));
+    }
+
+    private static void assertKept(String sql) {
+        assertEquals(sql, SalesLedger.toCurrentQuantity(sql));
+    }
+}
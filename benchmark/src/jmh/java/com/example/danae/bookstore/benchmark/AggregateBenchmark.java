@@ -0,0 +1,168 @@
+package com.example.danae.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The provider's stats and low stock queries on 1k, 100k and 1M items, against reading the whole
+ * list and adding it up, as users did before. The same 100 items are low on stock at every size
+ * and some sales are not compacted yet, so the provider's queries should cost about the same at
+ * every size while the whole list grows with the inventory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AggregateBenchmark {
+
+    private static final int SUPPLIERS = 50;
+    private static final long SEED = 42;
+
+    /**
+     * Items below this stock are low on stock, as with the provider's default threshold
+     */
+    private static final int THRESHOLD = 5;
+
+    /**
+     * Items kept low on stock, at every inventory size
+     */
+    private static final int LOW_STOCK_ITEMS = 100;
+
+    /**
+     * Sales not compacted yet, so that the queries add them as they do in the app
+     */
+    private static final int PENDING_SALES = 200;
+
+    /**
+     * The provider's low stock items: threshold and threshold
+     */
+    static final String SQL_LOW_STOCK = "SELECT inventory._id, name, price, " + InventorySchema.CURRENT_QUANTITY
+            + " AS quantity FROM inventory WHERE " + InventorySchema.LOW_STOCK_SELECTION
+            + " ORDER BY " + InventorySchema.CURRENT_QUANTITY + ", inventory._id";
+
+    @Param({"1000", "100000", "1000000"})
+    public int items;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mStats;
+    private PreparedStatement mLowStock;
+    private PreparedStatement mSelectList;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        mDatabase = new BenchmarkDatabase();
+        Random random = new Random(SEED);
+        mDatabase.fill(items, SUPPLIERS, random);
+        Connection connection = mDatabase.getConnection();
+
+        //Only the first items are low on stock
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("UPDATE inventory SET quantity = " + THRESHOLD + " + quantity"
+                    + " WHERE quantity < " + THRESHOLD + " AND _id > " + LOW_STOCK_ITEMS);
+            statement.execute("UPDATE inventory SET quantity = 0 WHERE _id <= " + LOW_STOCK_ITEMS);
+        } finally {
+            statement.close();
+        }
+
+        //Sell one unit of random items with plenty of stock, leaving the sales pending
+        PreparedStatement sell = connection.prepareStatement(InventorySchema.SQL_SELL);
+        try {
+            for (int sale = 0; sale < PENDING_SALES; sale++) {
+                sell.setInt(1, 1);
+                sell.setLong(2, System.currentTimeMillis());
+                sell.setLong(3, LOW_STOCK_ITEMS + 1 + random.nextInt(items - LOW_STOCK_ITEMS));
+                sell.setInt(4, 1);
+                sell.executeUpdate();
+            }
+        } finally {
+            sell.close();
+        }
+
+        mStats = connection.prepareStatement(InventorySchema.SQL_STATS);
+        mLowStock = connection.prepareStatement(SQL_LOW_STOCK);
+        mSelectList = connection.prepareStatement(InventorySchema.SQL_SELECT_LIST);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        mDatabase.delete();
+    }
+
+    @Benchmark
+    public void stats(Blackhole blackhole) throws SQLException {
+        ResultSet result = mStats.executeQuery();
+        try {
+            result.next();
+            blackhole.consume(result.getLong(1));
+            blackhole.consume(result.getLong(2));
+            blackhole.consume(result.getLong(3));
+        } finally {
+            result.close();
+        }
+    }
+
+    @Benchmark
+    public void lowStock(Blackhole blackhole) throws SQLException {
+        mLowStock.setInt(1, THRESHOLD);
+        mLowStock.setInt(2, THRESHOLD);
+        ResultSet result = mLowStock.executeQuery();
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getLong(1));
+                blackhole.consume(result.getString(2));
+                blackhole.consume(result.getLong(4));
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Read the whole list and add up the totals and low stock items in Java
+     */
+    @Benchmark
+    public void wholeList(Blackhole blackhole) throws SQLException {
+        long count = 0;
+        long units = 0;
+        long value = 0;
+        int lowStock = 0;
+        ResultSet result = mSelectList.executeQuery();
+        try {
+            while (result.next()) {
+                long price = result.getLong(3);
+                long quantity = result.getLong(4);
+                count++;
+                units += quantity;
+                value += quantity * price;
+                if (quantity < THRESHOLD) {
+                    lowStock++;
+                }
+                blackhole.consume(result.getString(2));
+            }
+        } finally {
+            result.close();
+        }
+        blackhole.consume(count);
+        blackhole.consume(units);
+        blackhole.consume(value);
+        blackhole.consume(lowStock);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.danae.bookstore.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * An inventory database in a temporary file, configured like the app's, for the benchmarks that
+ * only read or sell the items they start with. Items are named with words from a fixed list and
+ * a volume number, so that searches find some of them and not others.
+ */
+final class BenchmarkDatabase {
+
+    /**
+     * Words the item names are made of
+     */
+    static final String[] WORDS = {
+            "garden", "river", "night", "winter", "stone", "silver", "shadow", "light", "house", "road",
+            "city", "storm", "glass", "iron", "forest", "ocean", "island", "mountain", "fire", "snow",
+            "letters", "history", "secret", "lost", "last", "first", "hidden", "golden", "broken", "quiet",
+            "summer", "autumn", "spring", "empire", "kingdom", "story", "journey", "dream", "voices", "echo",
+            "harbor", "valley", "garnet", "gardener", "rivers", "nightingale", "stonework", "lighthouse",
+            "roads"};
+
+    /**
+     * First ISBN handed out; each item gets the next one
+     */
+    static final long FIRST_ISBN = 9780000000000L;
+
+    private final File mFile;
+    private final Connection mConnection;
+
+    /**
+     * Create the database in a temporary file, with the app's schema and connection settings
+     */
+    BenchmarkDatabase() throws IOException, SQLException {
+        mFile = File.createTempFile("inventory", ".db");
+        mConnection = openConnection();
+        InventorySchema.create(mConnection);
+    }
+
+    /**
+     * Returns the connection the database was created with
+     */
+    Connection getConnection() {
+        return mConnection;
+    }
+
+    /**
+     * Open another connection to the database, with the app's connection settings
+     */
+    Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+        InventorySchema.configure(connection);
+        return connection;
+    }
+
+    /**
+     * Open another connection to the database, with the app's connection settings but the given
+     * journal mode and synchronous setting
+     */
+    Connection openConnection(String journalMode, String synchronous) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+        InventorySchema.configure(connection, journalMode, synchronous);
+        return connection;
+    }
+
+    /**
+     * Returns the size of the database file, without its write-ahead log
+     */
+    long getFileSize() {
+        return mFile.length();
+    }
+
+    /**
+     * Add the suppliers and the items, each sold by a random supplier, in one transaction
+     */
+    void fill(int items, int suppliers, Random random) throws SQLException {
+        mConnection.setAutoCommit(false);
+        try {
+            PreparedStatement insertSupplier = mConnection.prepareStatement(InventorySchema.SQL_INSERT_SUPPLIER);
+            try {
+                for (int supplier = 1; supplier <= suppliers; supplier++) {
+                    insertSupplier.setString(1, WORDS[supplier % WORDS.length] + " Books " + supplier);
+                    insertSupplier.setString(2, String.format("555%07d", supplier));
+                    insertSupplier.executeUpdate();
+                }
+            } finally {
+                insertSupplier.close();
+            }
+            PreparedStatement insert = mConnection.prepareStatement(InventorySchema.SQL_INSERT);
+            try {
+                for (int row = 0; row < items; row++) {
+                    insert.setString(1, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                            + " " + WORDS[random.nextInt(WORDS.length)] + " vol " + row);
+                    insert.setLong(2, 100 + random.nextInt(10000));
+                    insert.setInt(3, random.nextInt(500));
+                    insert.setLong(4, 1 + random.nextInt(suppliers));
+                    insert.setString(5, String.valueOf(FIRST_ISBN + row));
+                    insert.addBatch();
+                    if (row % 10000 == 9999) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            } finally {
+                insert.close();
+            }
+            mConnection.commit();
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Close the connection and delete the database with its write-ahead log
+     */
+    void delete() throws SQLException {
+        mConnection.close();
+        String path = mFile.getAbsolutePath();
+        mFile.delete();
+        new File(path + "-wal").delete();
+        new File(path + "-shm").delete();
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.danae.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the inventory database's most common operations, each on an inventory of 1k,
+ * 100k and 1M items. Every write runs in a transaction of its own, as a single write through
+ * the provider does when no other write joins it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InventoryBenchmark {
+
+    /**
+     * Number of suppliers the items are spread over
+     */
+    private static final int SUPPLIERS = 50;
+
+    /**
+     * Number of items inserted by each bulk insert
+     */
+    private static final int BULK_SIZE = 100;
+
+    /**
+     * First ISBN handed out; each item gets the next one
+     */
+    private static final long FIRST_ISBN = 9780000000000L;
+
+    /**
+     * Seed of the random items and lookups, so that every run reads and writes the same rows
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Put stock back on items that are nearly sold out
+     */
+    static final String SQL_RESTOCK = "UPDATE inventory SET quantity = quantity + 100 WHERE quantity < 10";
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private File mFile;
+    private Connection mConnection;
+    private PreparedStatement mInsert;
+    private PreparedStatement mSelectItem;
+    private PreparedStatement mSelectList;
+    private PreparedStatement mSell;
+    private PreparedStatement mSelectQuantity;
+    private PreparedStatement mDelete;
+    private Random mRandom;
+    private long mNextIsbn;
+
+    /**
+     * Create a database in a temporary file and fill it with the given number of items
+     */
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        mFile = File.createTempFile("inventory", ".db");
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+        InventorySchema.configure(mConnection);
+        InventorySchema.create(mConnection);
+
+        mInsert = mConnection.prepareStatement(InventorySchema.SQL_INSERT);
+        mSelectItem = mConnection.prepareStatement(InventorySchema.SQL_SELECT_ITEM);
+        mSelectList = mConnection.prepareStatement(InventorySchema.SQL_SELECT_LIST);
+        mSell = mConnection.prepareStatement(InventorySchema.SQL_SELL);
+        mSelectQuantity = mConnection.prepareStatement(InventorySchema.SQL_SELECT_QUANTITY);
+        mDelete = mConnection.prepareStatement(InventorySchema.SQL_DELETE);
+        mRandom = new Random(SEED);
+        mNextIsbn = FIRST_ISBN;
+
+        mConnection.setAutoCommit(false);
+        PreparedStatement insertSupplier = mConnection.prepareStatement(InventorySchema.SQL_INSERT_SUPPLIER);
+        try {
+            for (int supplier = 1; supplier <= SUPPLIERS; supplier++) {
+                insertSupplier.setString(1, "Supplier " + supplier);
+                insertSupplier.setString(2, String.format("555-%04d", supplier));
+                insertSupplier.executeUpdate();
+            }
+        } finally {
+            insertSupplier.close();
+        }
+        for (int row = 0; row < rows; row++) {
+            bindItem(mInsert);
+            mInsert.addBatch();
+            if (row % 10000 == 9999) {
+                mInsert.executeBatch();
+            }
+        }
+        mInsert.executeBatch();
+        mConnection.commit();
+        mConnection.setAutoCommit(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        mConnection.close();
+        String path = mFile.getAbsolutePath();
+        mFile.delete();
+        new File(path + "-wal").delete();
+        new File(path + "-shm").delete();
+    }
+
+    /**
+     * Compact the sales of the last iteration and put stock back on sold out items, as the
+     * provider's background compaction and restocking would, so that every iteration of the
+     * quick sale benchmark starts from the same kind of inventory.
+     */
+    @TearDown(Level.Iteration)
+    public void compactSales() throws SQLException {
+        InventorySchema.compact(mConnection);
+        Statement statement = mConnection.createStatement();
+        try {
+            statement.execute(SQL_RESTOCK);
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+        bindItem(mInsert);
+        return mInsert.executeUpdate();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public void bulkInsert() throws SQLException {
+        mConnection.setAutoCommit(false);
+        try {
+            for (int row = 0; row < BULK_SIZE; row++) {
+                bindItem(mInsert);
+                mInsert.addBatch();
+            }
+            mInsert.executeBatch();
+            mConnection.commit();
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public void pointQuery(Blackhole blackhole) throws SQLException {
+        mSelectItem.setLong(1, randomId());
+        ResultSet result = mSelectItem.executeQuery();
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getString(2));
+                blackhole.consume(result.getLong(4));
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+    @Benchmark
+    public void fullScan(Blackhole blackhole) throws SQLException {
+        ResultSet result = mSelectList.executeQuery();
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getLong(1));
+                blackhole.consume(result.getString(2));
+                blackhole.consume(result.getLong(3));
+                blackhole.consume(result.getLong(4));
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Sell one unit of a random item and read back its stock, in one transaction like the
+     * provider's sell method
+     */
+    @Benchmark
+    public long quickSale() throws SQLException {
+        long id = randomId();
+        mConnection.setAutoCommit(false);
+        try {
+            mSell.setInt(1, 1);
+            mSell.setLong(2, System.currentTimeMillis());
+            mSell.setLong(3, id);
+            mSell.setInt(4, 1);
+            long quantity = -1;
+            if (mSell.executeUpdate() != 0) {
+                mSelectQuantity.setLong(1, id);
+                ResultSet result = mSelectQuantity.executeQuery();
+                try {
+                    quantity = result.next() ? result.getLong(1) : -1;
+                } finally {
+                    result.close();
+                }
+            }
+            mConnection.commit();
+            return quantity;
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public long delete(DeleteTarget target) throws SQLException {
+        mDelete.setLong(1, target.mId);
+        return mDelete.executeUpdate();
+    }
+
+    /**
+     * An item inserted before each delete, so that deletes never run out of items or shrink
+     * the inventory below its size. Setting up each invocation adds a little noise, which is
+     * small next to the commit of the delete.
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+
+        private long mId;
+
+        @Setup(Level.Invocation)
+        public void insertItem(InventoryBenchmark benchmark) throws SQLException {
+            benchmark.bindItem(benchmark.mInsert);
+            benchmark.mInsert.executeUpdate();
+            Statement statement = benchmark.mConnection.createStatement();
+            try {
+                ResultSet result = statement.executeQuery("SELECT last_insert_rowid()");
+                result.next();
+                mId = result.getLong(1);
+                result.close();
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Bind the values of a new random item to the insert statement
+     */
+    private void bindItem(PreparedStatement insert) throws SQLException {
+        insert.setString(1, "Book " + Long.toString(mRandom.nextLong() & Long.MAX_VALUE, 36));
+        insert.setLong(2, 100 + mRandom.nextInt(10000));
+        insert.setInt(3, mRandom.nextInt(500));
+        insert.setLong(4, 1 + mRandom.nextInt(SUPPLIERS));
+        insert.setString(5, String.valueOf(mNextIsbn++));
+    }
+
+    /**
+     * Returns the ID of one of the items the database was filled with
+     */
+    private long randomId() {
+        return 1 + mRandom.nextInt(rows);
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.danae.bookstore.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The inventory database at version 8 of InventoryDbHelper, and the SQL the provider runs on it.
+ * The app's classes need the Android framework, so the benchmarks run the same SQL through
+ * sqlite-jdbc instead. {@link InventorySchemaCheck} fails the build if this differs from the
+ * snapshot of the app's database in app/schemas, which the app's tests keep in step with
+ * InventoryDbHelper, InventoryStatements and SalesLedger.
+ */
+final class InventorySchema {
+
+    /**
+     * Statements creating every table, index and trigger, in the state the migrations leave them
+     */
+    private static final String[] SQL_CREATE = {
+            "CREATE TABLE suppliers ("
+                    + "supplier_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "supplier TEXT NOT NULL, "
+                    + "supplierNumber TEXT NOT NULL, "
+                    + "UNIQUE (supplier, supplierNumber))",
+            "CREATE TABLE inventory ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "name TEXT NOT NULL, "
+                    + "price INTEGER NOT NULL, "
+                    + "quantity INTEGER NOT NULL DEFAULT 0, "
+                    + "supplier_id INTEGER NOT NULL REFERENCES suppliers (supplier_id), "
+                    + "isbn TEXT)",
+            "CREATE INDEX inventory_name_index ON inventory (name COLLATE NOCASE)",
+            "CREATE INDEX inventory_supplier_id_index ON inventory (supplier_id)",
+            "CREATE INDEX inventory_quantity_index ON inventory (quantity)",
+            "CREATE UNIQUE INDEX inventory_isbn_index ON inventory (isbn)",
+
+            "CREATE VIRTUAL TABLE inventory_fts USING fts4(name, supplier)",
+            "CREATE TRIGGER inventory_fts_insert AFTER INSERT ON inventory BEGIN"
+                    + " INSERT INTO inventory_fts (docid, name, supplier) VALUES (new._id, new.name,"
+                    + " (SELECT supplier FROM suppliers WHERE supplier_id = new.supplier_id)); END",
+            "CREATE TRIGGER inventory_fts_update AFTER UPDATE OF name, supplier_id ON inventory BEGIN"
+                    + " UPDATE inventory_fts SET name = new.name, supplier ="
+                    + " (SELECT supplier FROM suppliers WHERE supplier_id = new.supplier_id)"
+                    + " WHERE docid = old._id; END",
+            "CREATE TRIGGER inventory_fts_delete AFTER DELETE ON inventory BEGIN"
+                    + " DELETE FROM inventory_fts WHERE docid = old._id; END",
+            "CREATE TRIGGER inventory_fts_supplier_update AFTER UPDATE OF supplier ON suppliers BEGIN"
+                    + " UPDATE inventory_fts SET supplier = new.supplier"
+                    + " WHERE docid IN (SELECT _id FROM inventory WHERE supplier_id = new.supplier_id); END",
+
+            "CREATE TABLE supplier_summary ("
+                    + "supplier_id INTEGER PRIMARY KEY, "
+                    + "item_count INTEGER NOT NULL, "
+                    + "total_units INTEGER NOT NULL, "
+                    + "total_value INTEGER NOT NULL)",
+            "CREATE TRIGGER supplier_summary_insert AFTER INSERT ON inventory BEGIN"
+                    + addToSupplierSummary("new") + " END",
+            "CREATE TRIGGER supplier_summary_update AFTER UPDATE OF supplier_id, quantity, price ON inventory BEGIN"
+                    + removeFromSupplierSummary("old") + addToSupplierSummary("new") + " END",
+            "CREATE TRIGGER supplier_summary_delete AFTER DELETE ON inventory BEGIN"
+                    + removeFromSupplierSummary("old") + " END",
+
+            "CREATE TABLE sales_events ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "item_id INTEGER NOT NULL, "
+                    + "quantity INTEGER NOT NULL, "
+                    + "sold_at INTEGER NOT NULL)",
+            "CREATE INDEX sales_events_item_index ON sales_events (item_id)",
+            "CREATE TABLE sales_compaction (last_event_id INTEGER NOT NULL)",
+            "INSERT INTO sales_compaction VALUES (0)",
+            "CREATE TABLE sales_daily ("
+                    + "day TEXT NOT NULL, "
+                    + "item_id INTEGER NOT NULL, "
+                    + "units INTEGER NOT NULL, "
+                    + "PRIMARY KEY (day, item_id))"
+    };
+
+    /**
+     * Expression for the current stock of an inventory row, including sales not compacted yet
+     */
+    static final String CURRENT_QUANTITY = "inventory.quantity - IFNULL((SELECT SUM(quantity)"
+            + " FROM sales_events WHERE item_id = inventory._id"
+            + " AND _id > (SELECT last_event_id FROM sales_compaction)), 0)";
+
+    /**
+     * Insert one item: name, price, quantity, supplier ID and ISBN
+     */
+    static final String SQL_INSERT = "INSERT INTO inventory (name, price, quantity, supplier_id, isbn)"
+            + " VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Add a supplier: name and number
+     */
+    static final String SQL_INSERT_SUPPLIER = "INSERT INTO suppliers (supplier, supplierNumber) VALUES (?, ?)";
+
+    /**
+     * Read one item with its supplier, as the editor and the item cache do
+     */
+    static final String SQL_SELECT_ITEM = "SELECT inventory._id, name, price, " + CURRENT_QUANTITY
+            + " AS quantity, supplier, supplierNumber, isbn"
+            + " FROM inventory JOIN suppliers USING (supplier_id) WHERE inventory._id = ?";
+
+    /**
+     * Read the columns of the catalog list for every item, in name order
+     */
+    static final String SQL_SELECT_LIST = "SELECT inventory._id, name, price, " + CURRENT_QUANTITY
+            + " AS quantity FROM inventory ORDER BY name COLLATE NOCASE";
+
+    /**
+     * Sell units of an item: quantity, time of sale, item ID and quantity again
+     */
+    static final String SQL_SELL = "INSERT INTO sales_events (item_id, quantity, sold_at)"
+            + " SELECT _id, ?, ? FROM inventory WHERE _id = ? AND " + CURRENT_QUANTITY + " >= ?";
+
+    /**
+     * Read the stock of an item after a sale
+     */
+    static final String SQL_SELECT_QUANTITY = "SELECT " + CURRENT_QUANTITY + " FROM inventory WHERE _id = ?";
+
+    /**
+     * Delete one item
+     */
+    static final String SQL_DELETE = "DELETE FROM inventory WHERE _id = ?";
+
+    /**
+     * Read the ID of the last compacted sale
+     */
+    static final String SQL_LAST_EVENT_ID = "SELECT last_event_id FROM sales_compaction";
+
+    /**
+     * Read the ID of the last sale, 0 if there are none
+     */
+    static final String SQL_MAX_EVENT_ID = "SELECT IFNULL(MAX(_id), 0) FROM sales_events";
+
+    /**
+     * Take the units of the sales after the first ID up to the second ID off the stock of their
+     * items: both IDs, then both IDs again
+     */
+    static final String SQL_SUBTRACT_UNITS = "UPDATE inventory SET quantity = quantity - (SELECT SUM(quantity)"
+            + " FROM sales_events WHERE item_id = inventory._id AND _id > ? AND _id <= ?)"
+            + " WHERE _id IN (SELECT item_id FROM sales_events WHERE _id > ? AND _id <= ?)";
+
+    /**
+     * Read the units of the sales after the first ID up to the second ID, for each day and item
+     */
+    static final String SQL_DAILY_UNITS = "SELECT date(sold_at / 1000, 'unixepoch', 'localtime'), item_id,"
+            + " SUM(quantity) FROM sales_events WHERE _id > ? AND _id <= ? GROUP BY 1, 2";
+
+    /**
+     * Add the daily total of an item if it's missing: day and item ID
+     */
+    static final String SQL_INSERT_DAY = "INSERT OR IGNORE INTO sales_daily (day, item_id, units) VALUES (?, ?, 0)";
+
+    /**
+     * Add units to the daily total of an item: units, day and item ID
+     */
+    static final String SQL_ADD_DAY_UNITS = "UPDATE sales_daily SET units = units + ? WHERE day = ? AND item_id = ?";
+
+    /**
+     * Move the compaction mark to the given sale ID
+     */
+    static final String SQL_SET_LAST_EVENT_ID = "UPDATE sales_compaction SET last_event_id = ?";
+
+    /**
+     * Join adding the units and value of the sales not compacted yet of each supplier to the
+     * supplier summary
+     */
+    private static final String PENDING_SALES_JOIN = " LEFT JOIN (SELECT inventory.supplier_id AS supplier_id,"
+            + " SUM(sales_events.quantity) AS pending_units,"
+            + " SUM(sales_events.quantity * inventory.price) AS pending_value"
+            + " FROM sales_events JOIN inventory ON inventory._id = sales_events.item_id"
+            + " WHERE sales_events._id > (SELECT last_event_id FROM sales_compaction)"
+            + " GROUP BY inventory.supplier_id) AS pending_sales USING (supplier_id)";
+
+    /**
+     * Read the totals of each supplier from the supplier summary, less the sales not compacted
+     * yet, as the provider's supplier stats do
+     */
+    static final String SQL_SUPPLIER_STATS = "SELECT supplier_id, supplier, supplierNumber, item_count,"
+            + " total_units - IFNULL(pending_units, 0) AS total_units,"
+            + " total_value - IFNULL(pending_value, 0) AS total_value"
+            + " FROM supplier_summary JOIN suppliers USING (supplier_id)" + PENDING_SALES_JOIN
+            + " ORDER BY supplier";
+
+    /**
+     * Read the totals of the whole inventory, added up from the supplier summary, as the
+     * provider's stats do
+     */
+    static final String SQL_STATS = "SELECT IFNULL(SUM(item_count), 0) AS item_count,"
+            + " IFNULL(SUM(total_units - IFNULL(pending_units, 0)), 0) AS total_units,"
+            + " IFNULL(SUM(total_value - IFNULL(pending_value, 0)), 0) AS total_value"
+            + " FROM supplier_summary" + PENDING_SALES_JOIN;
+
+    /**
+     * Filter of the provider's low stock items: threshold and threshold
+     */
+    static final String LOW_STOCK_SELECTION = "(inventory.quantity < ? OR inventory._id IN"
+            + " (SELECT item_id FROM sales_events WHERE _id > (SELECT last_event_id FROM sales_compaction))"
+            + " AND " + CURRENT_QUANTITY + " < ?)";
+
+    private InventorySchema() {
+    }
+
+    /**
+     * Apply the connection settings of the app's default storage profile
+     */
+    static void configure(Connection connection) throws SQLException {
+        configure(connection, "WAL", "NORMAL");
+    }
+
+    /**
+     * Apply the connection settings of the app's default storage profile, with the given
+     * journal mode and synchronous setting instead of its own
+     */
+    static void configure(Connection connection, String journalMode, String synchronous) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("PRAGMA journal_mode = " + journalMode);
+            statement.execute("PRAGMA synchronous = " + synchronous);
+            statement.execute("PRAGMA cache_size = -4096");
+            statement.execute("PRAGMA temp_store = MEMORY");
+            statement.execute("PRAGMA mmap_size = " + 8 * 1024 * 1024);
+            statement.execute("PRAGMA foreign_keys = ON");
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Create the schema in an empty database
+     */
+    static void create(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            for (String sql : SQL_CREATE) {
+                statement.execute(sql);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Move the sales not compacted yet into the stock and the daily totals in one transaction, as
+     * the app's SalesLedger does, and return the ID of the last sale compacted
+     */
+    static long compact(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            long first = longForQuery(connection, SQL_LAST_EVENT_ID);
+            long last = longForQuery(connection, SQL_MAX_EVENT_ID);
+            if (last > first) {
+                PreparedStatement subtractUnits = connection.prepareStatement(SQL_SUBTRACT_UNITS);
+                try {
+                    subtractUnits.setLong(1, first);
+                    subtractUnits.setLong(2, last);
+                    subtractUnits.setLong(3, first);
+                    subtractUnits.setLong(4, last);
+                    subtractUnits.executeUpdate();
+                } finally {
+                    subtractUnits.close();
+                }
+                addDailyUnits(connection, first, last);
+                PreparedStatement setLastEventId = connection.prepareStatement(SQL_SET_LAST_EVENT_ID);
+                try {
+                    setLastEventId.setLong(1, last);
+                    setLastEventId.executeUpdate();
+                } finally {
+                    setLastEventId.close();
+                }
+            }
+            connection.commit();
+            return last;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void addDailyUnits(Connection connection, long first, long last) throws SQLException {
+        PreparedStatement dailyUnits = connection.prepareStatement(SQL_DAILY_UNITS);
+        PreparedStatement insertDay = connection.prepareStatement(SQL_INSERT_DAY);
+        PreparedStatement addDayUnits = connection.prepareStatement(SQL_ADD_DAY_UNITS);
+        try {
+            dailyUnits.setLong(1, first);
+            dailyUnits.setLong(2, last);
+            ResultSet result = dailyUnits.executeQuery();
+            try {
+                while (result.next()) {
+                    String day = result.getString(1);
+                    long itemId = result.getLong(2);
+                    insertDay.setString(1, day);
+                    insertDay.setLong(2, itemId);
+                    insertDay.executeUpdate();
+                    addDayUnits.setLong(1, result.getLong(3));
+                    addDayUnits.setString(2, day);
+                    addDayUnits.setLong(3, itemId);
+                    addDayUnits.executeUpdate();
+                }
+            } finally {
+                result.close();
+            }
+        } finally {
+            dailyUnits.close();
+            insertDay.close();
+            addDayUnits.close();
+        }
+    }
+
+    private static long longForQuery(Connection connection, String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery(sql);
+            return result.next() ? result.getLong(1) : 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static String addToSupplierSummary(String row) {
+        return " INSERT OR IGNORE INTO supplier_summary VALUES (" + row + ".supplier_id, 0, 0, 0);"
+                + " UPDATE supplier_summary SET item_count = item_count + 1,"
+                + " total_units = total_units + " + row + ".quantity,"
+                + " total_value = total_value + " + row + ".quantity * " + row + ".price"
+                + " WHERE supplier_id = " + row + ".supplier_id;";
+    }
+
+    private static String removeFromSupplierSummary(String row) {
+        return " UPDATE supplier_summary SET item_count = item_count - 1,"
+                + " total_units = total_units - " + row + ".quantity,"
+                + " total_value = total_value - " + row + ".quantity * " + row + ".price"
+                + " WHERE supplier_id = " + row + ".supplier_id;"
+                + " DELETE FROM supplier_summary WHERE supplier_id = " + row + ".supplier_id AND item_count = 0;";
+    }
+}
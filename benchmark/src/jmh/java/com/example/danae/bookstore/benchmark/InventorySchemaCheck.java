@@ -0,0 +1,114 @@
+package com.example.danae.bookstore.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Checks that {@link InventorySchema} creates the same tables, indexes and triggers and runs the
+ * same statements as the app, by comparing both with the snapshot of the app's database in
+ * app/schemas. The app's tests compare the snapshot with InventoryDbHelper, InventoryStatements
+ * and SalesLedger, so a change to either side that isn't made to the other fails a build.
+ * Run with ./gradlew :benchmark:checkSchema, which is part of the check task.
+ */
+public final class InventorySchemaCheck {
+
+    /**
+     * Reads what the snapshot holds from sqlite_master: everything created by the schema, but
+     * not SQLite's and Android's own tables or the shadow tables of the full-text table
+     */
+    private static final String SQL_SCHEMA = "SELECT type, name, sql FROM sqlite_master"
+            + " WHERE sql IS NOT NULL AND name NOT GLOB 'sqlite_*' AND name != 'android_metadata'"
+            + " AND NOT (type = 'table' AND name GLOB '*_fts_*')";
+
+    private InventorySchemaCheck() {
+    }
+
+    /**
+     * Compare the benchmark's schema and statements with the snapshot file given as the only
+     * argument, and exit with an error listing every difference if they don't match
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        Properties snapshot = new Properties();
+        InputStream in = new FileInputStream(args[0]);
+        try {
+            snapshot.load(in);
+        } finally {
+            in.close();
+        }
+
+        Properties benchmark = new Properties();
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            InventorySchema.create(connection);
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet schema = statement.executeQuery(SQL_SCHEMA);
+                while (schema.next()) {
+                    benchmark.setProperty(schema.getString(1) + "." + schema.getString(2),
+                            normalize(schema.getString(3)));
+                }
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+        benchmark.setProperty("sql.insert", InventorySchema.SQL_INSERT);
+        benchmark.setProperty("sql.insert_supplier", InventorySchema.SQL_INSERT_SUPPLIER);
+        benchmark.setProperty("sql.sell", InventorySchema.SQL_SELL);
+        benchmark.setProperty("sql.select_quantity", InventorySchema.SQL_SELECT_QUANTITY);
+        benchmark.setProperty("sql.delete", InventorySchema.SQL_DELETE);
+        benchmark.setProperty("sql.current_quantity", InventorySchema.CURRENT_QUANTITY);
+        benchmark.setProperty("sql.last_event_id", InventorySchema.SQL_LAST_EVENT_ID);
+        benchmark.setProperty("sql.max_event_id", InventorySchema.SQL_MAX_EVENT_ID);
+        benchmark.setProperty("sql.subtract_units", InventorySchema.SQL_SUBTRACT_UNITS);
+        benchmark.setProperty("sql.daily_units", InventorySchema.SQL_DAILY_UNITS);
+        benchmark.setProperty("sql.insert_day", InventorySchema.SQL_INSERT_DAY);
+        benchmark.setProperty("sql.add_day_units", InventorySchema.SQL_ADD_DAY_UNITS);
+        benchmark.setProperty("sql.set_last_event_id", InventorySchema.SQL_SET_LAST_EVENT_ID);
+        benchmark.setProperty("sql.supplier_stats", InventorySchema.SQL_SUPPLIER_STATS);
+        benchmark.setProperty("sql.stats", InventorySchema.SQL_STATS);
+        benchmark.setProperty("sql.low_stock_selection", InventorySchema.LOW_STOCK_SELECTION);
+
+        Set<String> keys = new TreeSet<>(snapshot.stringPropertyNames());
+        keys.addAll(benchmark.stringPropertyNames());
+        List<String> differences = new ArrayList<>();
+        for (String key : keys) {
+            String expected = snapshot.getProperty(key);
+            String actual = benchmark.getProperty(key);
+            if (expected == null) {
+                differences.add(key + " is only in the benchmark:\n  " + actual);
+            } else if (actual == null) {
+                differences.add(key + " is missing from the benchmark:\n  " + expected);
+            } else if (!expected.equals(actual)) {
+                differences.add(key + " differs:\n  app:       " + expected + "\n  benchmark: " + actual);
+            }
+        }
+        if (!differences.isEmpty()) {
+            System.err.println("InventorySchema doesn't match " + args[0] + ":");
+            for (String difference : differences) {
+                System.err.println(difference);
+            }
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the SQL of a schema entry without the differences that don't change the schema:
+     * quotes that renaming a table adds, IF NOT EXISTS clauses and runs of whitespace
+     */
+    private static String normalize(String sql) {
+        return sql.replace("\"", "").replace("IF NOT EXISTS ", "").replaceAll("\\s+", " ").trim();
+    }
+}
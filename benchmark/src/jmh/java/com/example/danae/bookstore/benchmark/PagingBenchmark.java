@@ -0,0 +1,141 @@
+package com.example.danae.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One page of the list sorted by name, on 100k items: the whole list, as the catalog's cursor
+ * loader read it before paging, against a page read with an offset and a page read after the
+ * last item of the previous page, as the provider's limit/offset and after_id/after_name query
+ * parameters do. Pages near the end show how the cost of each grows with the page's depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PagingBenchmark {
+
+    private static final int ITEMS = 100000;
+    private static final int SUPPLIERS = 50;
+    private static final long SEED = 42;
+
+    /**
+     * Items on a page, as in the catalog's paged list
+     */
+    private static final int PAGE_SIZE = 50;
+
+    private static final String PAGE_COLUMNS = "SELECT inventory._id, name, price, "
+            + InventorySchema.CURRENT_QUANTITY + " AS quantity FROM inventory";
+
+    private static final String SORT_ORDER = " ORDER BY name COLLATE NOCASE, inventory._id";
+
+    /**
+     * Read a page after skipping rows: offset and page size
+     */
+    static final String SQL_OFFSET_PAGE = PAGE_COLUMNS + SORT_ORDER + " LIMIT ?, ?";
+
+    /**
+     * Read the page after the item with the given name and ID: name, name, ID and page size. The
+     * first condition lets SQLite seek into the name index, as in the provider.
+     */
+    static final String SQL_KEYSET_PAGE = PAGE_COLUMNS
+            + " WHERE name COLLATE NOCASE >= ? AND (name COLLATE NOCASE > ? OR inventory._id > ?)"
+            + SORT_ORDER + " LIMIT ?";
+
+    @Param({"0", "100", "1999"})
+    public int page;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mSelectList;
+    private PreparedStatement mOffsetPage;
+    private PreparedStatement mKeysetPage;
+
+    /**
+     * Name and ID of the last item before the page
+     */
+    private String mAfterName;
+    private long mAfterId;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        mDatabase = new BenchmarkDatabase();
+        mDatabase.fill(ITEMS, SUPPLIERS, new Random(SEED));
+        mSelectList = mDatabase.getConnection().prepareStatement(InventorySchema.SQL_SELECT_LIST);
+        mOffsetPage = mDatabase.getConnection().prepareStatement(SQL_OFFSET_PAGE);
+        mKeysetPage = mDatabase.getConnection().prepareStatement(SQL_KEYSET_PAGE);
+
+        //The first page starts before every name
+        mAfterName = "";
+        mAfterId = 0;
+        if (page > 0) {
+            mOffsetPage.setInt(1, page * PAGE_SIZE - 1);
+            mOffsetPage.setInt(2, 1);
+            ResultSet result = mOffsetPage.executeQuery();
+            try {
+                result.next();
+                mAfterId = result.getLong(1);
+                mAfterName = result.getString(2);
+            } finally {
+                result.close();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        mDatabase.delete();
+    }
+
+    @Benchmark
+    public void wholeList(Blackhole blackhole) throws SQLException {
+        read(mSelectList, blackhole);
+    }
+
+    @Benchmark
+    public void offsetPage(Blackhole blackhole) throws SQLException {
+        mOffsetPage.setInt(1, page * PAGE_SIZE);
+        mOffsetPage.setInt(2, PAGE_SIZE);
+        read(mOffsetPage, blackhole);
+    }
+
+    @Benchmark
+    public void keysetPage(Blackhole blackhole) throws SQLException {
+        mKeysetPage.setString(1, mAfterName);
+        mKeysetPage.setString(2, mAfterName);
+        mKeysetPage.setLong(3, mAfterId);
+        mKeysetPage.setInt(4, PAGE_SIZE);
+        read(mKeysetPage, blackhole);
+    }
+
+    /**
+     * Read every row of the query, as a cursor window is filled
+     */
+    private static void read(PreparedStatement query, Blackhole blackhole) throws SQLException {
+        ResultSet result = query.executeQuery();
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getLong(1));
+                blackhole.consume(result.getString(2));
+                blackhole.consume(result.getLong(3));
+                blackhole.consume(result.getLong(4));
+            }
+        } finally {
+            result.close();
+        }
+    }
+}
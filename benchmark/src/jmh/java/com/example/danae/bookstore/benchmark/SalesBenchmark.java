@@ -0,0 +1,208 @@
+package com.example.danae.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained throughput of sales on an inventory of 100k items: appending each sale to the sales
+ * ledger and compacting the ledger every so many sales, as the provider does, against taking the
+ * units off the item's row in place, as the provider did before the ledger. Compaction runs
+ * inline, so its cost is spread over the sales that led to it. The in-place sale doesn't use the
+ * compaction interval and gives the same result for each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SalesBenchmark {
+
+    /**
+     * Number of items and of the suppliers they are spread over
+     */
+    private static final int ITEMS = 100000;
+    private static final int SUPPLIERS = 50;
+
+    /**
+     * Seed of the random items and sales, so that every run sells the same items
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Sell units of an item in place: quantity, item ID and quantity again
+     */
+    private static final String SQL_SELL_IN_PLACE = "UPDATE inventory SET quantity = quantity - ?"
+            + " WHERE _id = ? AND quantity >= ?";
+
+    /**
+     * Read the stock of an item sold in place
+     */
+    private static final String SQL_SELECT_STORED_QUANTITY = "SELECT quantity FROM inventory WHERE _id = ?";
+
+    /**
+     * Sales appended between two compactions of the ledger
+     */
+    @Param({"100", "1000", "10000"})
+    public int compactionInterval;
+
+    private File mFile;
+    private Connection mConnection;
+    private PreparedStatement mSell;
+    private PreparedStatement mSelectQuantity;
+    private PreparedStatement mSellInPlace;
+    private PreparedStatement mSelectStoredQuantity;
+    private Random mRandom;
+    private int mSalesSinceCompaction;
+
+    /**
+     * Create a database in a temporary file and fill it with the items
+     */
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        mFile = File.createTempFile("sales", ".db");
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+        InventorySchema.configure(mConnection);
+        InventorySchema.create(mConnection);
+        mRandom = new Random(SEED);
+
+        mConnection.setAutoCommit(false);
+        PreparedStatement insertSupplier = mConnection.prepareStatement(InventorySchema.SQL_INSERT_SUPPLIER);
+        try {
+            for (int supplier = 1; supplier <= SUPPLIERS; supplier++) {
+                insertSupplier.setString(1, "Supplier " + supplier);
+                insertSupplier.setString(2, String.format("555-%04d", supplier));
+                insertSupplier.executeUpdate();
+            }
+        } finally {
+            insertSupplier.close();
+        }
+        PreparedStatement insert = mConnection.prepareStatement(InventorySchema.SQL_INSERT);
+        try {
+            for (int row = 0; row < ITEMS; row++) {
+                insert.setString(1, "Book " + row);
+                insert.setLong(2, 100 + mRandom.nextInt(10000));
+                insert.setInt(3, 10 + mRandom.nextInt(500));
+                insert.setLong(4, 1 + mRandom.nextInt(SUPPLIERS));
+                insert.setString(5, String.valueOf(9780000000000L + row));
+                insert.addBatch();
+                if (row % 10000 == 9999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        } finally {
+            insert.close();
+        }
+        mConnection.commit();
+        mConnection.setAutoCommit(true);
+
+        mSell = mConnection.prepareStatement(InventorySchema.SQL_SELL);
+        mSelectQuantity = mConnection.prepareStatement(InventorySchema.SQL_SELECT_QUANTITY);
+        mSellInPlace = mConnection.prepareStatement(SQL_SELL_IN_PLACE);
+        mSelectStoredQuantity = mConnection.prepareStatement(SQL_SELECT_STORED_QUANTITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        mConnection.close();
+        String path = mFile.getAbsolutePath();
+        mFile.delete();
+        new File(path + "-wal").delete();
+        new File(path + "-shm").delete();
+    }
+
+    /**
+     * Compact what is left of the ledger and put stock back on nearly sold out items, so that
+     * every iteration starts with an empty ledger and items to sell
+     */
+    @TearDown(Level.Iteration)
+    public void restock() throws SQLException {
+        InventorySchema.compact(mConnection);
+        mSalesSinceCompaction = 0;
+        Statement statement = mConnection.createStatement();
+        try {
+            statement.execute(InventoryBenchmark.SQL_RESTOCK);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Append the sale of one unit of a random item to the ledger and read back its stock, in one
+     * transaction like the provider's sell method, then compact the ledger if the interval is up
+     */
+    @Benchmark
+    public long ledgerSale() throws SQLException {
+        long id = randomId();
+        long quantity;
+        mConnection.setAutoCommit(false);
+        try {
+            mSell.setInt(1, 1);
+            mSell.setLong(2, System.currentTimeMillis());
+            mSell.setLong(3, id);
+            mSell.setInt(4, 1);
+            quantity = mSell.executeUpdate() != 0 ? readQuantity(mSelectQuantity, id) : -1;
+            mConnection.commit();
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+        if (++mSalesSinceCompaction >= compactionInterval) {
+            InventorySchema.compact(mConnection);
+            mSalesSinceCompaction = 0;
+        }
+        return quantity;
+    }
+
+    /**
+     * Take one unit of a random item off its row and read back its stock, in one transaction
+     */
+    @Benchmark
+    public long inPlaceSale() throws SQLException {
+        long id = randomId();
+        mConnection.setAutoCommit(false);
+        try {
+            mSellInPlace.setInt(1, 1);
+            mSellInPlace.setLong(2, id);
+            mSellInPlace.setInt(3, 1);
+            long quantity = mSellInPlace.executeUpdate() != 0 ? readQuantity(mSelectStoredQuantity, id) : -1;
+            mConnection.commit();
+            return quantity;
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+    }
+
+    private static long readQuantity(PreparedStatement selectQuantity, long id) throws SQLException {
+        selectQuantity.setLong(1, id);
+        ResultSet result = selectQuantity.executeQuery();
+        try {
+            return result.next() ? result.getLong(1) : -1;
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Returns the ID of one of the items the database was filled with
+     */
+    private long randomId() {
+        return 1 + mRandom.nextInt(ITEMS);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.danae.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searching 100k items by the words of their name and supplier, with the full-text table the
+ * provider searches against a LIKE '%word%' scan of both columns. Both read the first page of
+ * results, best match or name first, as the catalog's search field does. The terms are a
+ * common word, a prefix of several words, and a number found in a single name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    private static final int ITEMS = 100000;
+    private static final int SUPPLIERS = 50;
+    private static final long SEED = 42;
+
+    /**
+     * Rows of one page of results
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * The provider's search: the full-text match ranked by the number of matched words and
+     * joined back to the items. The only argument is the match expression.
+     */
+    private static final String SQL_SEARCH_FTS = "SELECT inventory._id, inventory.name FROM inventory"
+            + " JOIN (SELECT docid, length(offsets(inventory_fts)) AS rank FROM inventory_fts"
+            + " WHERE inventory_fts MATCH ?) AS search ON inventory._id = search.docid"
+            + " ORDER BY search.rank DESC, inventory.name COLLATE NOCASE LIMIT " + PAGE_SIZE;
+
+    /**
+     * The same page found by scanning the names and suppliers: the pattern, twice
+     */
+    private static final String SQL_SEARCH_LIKE = "SELECT inventory._id, inventory.name FROM inventory"
+            + " JOIN suppliers USING (supplier_id) WHERE inventory.name LIKE ? OR supplier LIKE ?"
+            + " ORDER BY inventory.name COLLATE NOCASE LIMIT " + PAGE_SIZE;
+
+    @Param({"garden", "gar", "4242"})
+    public String term;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mSearchFts;
+    private PreparedStatement mSearchLike;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        mDatabase = new BenchmarkDatabase();
+        mDatabase.fill(ITEMS, SUPPLIERS, new Random(SEED));
+        mSearchFts = mDatabase.getConnection().prepareStatement(SQL_SEARCH_FTS);
+        mSearchLike = mDatabase.getConnection().prepareStatement(SQL_SEARCH_LIKE);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        mDatabase.delete();
+    }
+
+    /**
+     * Search with the match expression the provider builds for the term: a prefix query
+     */
+    @Benchmark
+    public void fullText(Blackhole blackhole) throws SQLException {
+        mSearchFts.setString(1, term + "*");
+        consume(mSearchFts.executeQuery(), blackhole);
+    }
+
+    @Benchmark
+    public void like(Blackhole blackhole) throws SQLException {
+        mSearchLike.setString(1, "%" + term + "%");
+        mSearchLike.setString(2, "%" + term + "%");
+        consume(mSearchLike.executeQuery(), blackhole);
+    }
+
+    private static void consume(ResultSet result, Blackhole blackhole) throws SQLException {
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getLong(1));
+                blackhole.consume(result.getString(2));
+            }
+        } finally {
+            result.close();
+        }
+    }
+}
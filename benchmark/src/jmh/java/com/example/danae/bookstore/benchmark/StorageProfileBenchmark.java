@@ -0,0 +1,219 @@
+package com.example.danae.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent reads and writes on 100k items for each journal mode and synchronous setting of
+ * the storage profile: three threads read single items, as the catalog and the editor do, while
+ * one thread sells, as quick sales do. JMH reports the throughput of each. With write-ahead
+ * logging the log is checkpointed on a background thread every 500 sales, as the app's
+ * default profile does; the app's default is WAL with synchronous=NORMAL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StorageProfileBenchmark {
+
+    private static final int ITEMS = 100000;
+    private static final int SUPPLIERS = 50;
+    private static final long SEED = 42;
+
+    /**
+     * Committed sales between checkpoints of the write-ahead log
+     */
+    private static final int CHECKPOINT_INTERVAL = 500;
+
+    /**
+     * How long a connection waits for a lock held by another before failing, in milliseconds
+     */
+    private static final int BUSY_TIMEOUT_MILLIS = 10000;
+
+    @Param({"WAL", "DELETE"})
+    public String journalMode;
+
+    @Param({"NORMAL", "FULL"})
+    public String synchronous;
+
+    private BenchmarkDatabase mDatabase;
+    private Connection mCheckpointConnection;
+    private ExecutorService mCheckpointExecutor;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        mDatabase = new BenchmarkDatabase();
+        mDatabase.fill(ITEMS, SUPPLIERS, new Random(SEED));
+        //Only the creating connection is open, so the journal mode can change
+        execute(mDatabase.getConnection(), "PRAGMA journal_mode = " + journalMode);
+        mCheckpointConnection = openConnection();
+        mCheckpointExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        mCheckpointExecutor.shutdown();
+        mCheckpointConnection.close();
+        mDatabase.delete();
+    }
+
+    /**
+     * Compact the iteration's sales and put stock back on nearly sold out items
+     */
+    @TearDown(Level.Iteration)
+    public void restock() throws SQLException {
+        InventorySchema.compact(mDatabase.getConnection());
+        execute(mDatabase.getConnection(), InventoryBenchmark.SQL_RESTOCK);
+    }
+
+    /**
+     * Open a connection with the journal mode and synchronous setting of this trial, waiting
+     * for locks held by the other threads
+     */
+    private Connection openConnection() throws SQLException {
+        Connection connection = mDatabase.openConnection(journalMode, synchronous);
+        execute(connection, "PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    /**
+     * Ask for a passive checkpoint on the background thread, as the app's database helper does
+     */
+    private void checkpoint() {
+        mCheckpointExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    execute(mCheckpointConnection, "PRAGMA wal_checkpoint(PASSIVE)");
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * A reading thread's connection
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+
+        private Connection mConnection;
+        private PreparedStatement mSelectItem;
+        private final Random mRandom = new Random();
+
+        @Setup(Level.Trial)
+        public void open(StorageProfileBenchmark benchmark) throws SQLException {
+            mConnection = benchmark.openConnection();
+            mSelectItem = mConnection.prepareStatement(InventorySchema.SQL_SELECT_ITEM);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            mConnection.close();
+        }
+    }
+
+    /**
+     * The selling thread's connection
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private Connection mConnection;
+        private PreparedStatement mSell;
+        private PreparedStatement mSelectQuantity;
+        private final Random mRandom = new Random();
+        private int mSalesSinceCheckpoint;
+
+        @Setup(Level.Trial)
+        public void open(StorageProfileBenchmark benchmark) throws SQLException {
+            mConnection = benchmark.openConnection();
+            mSell = mConnection.prepareStatement(InventorySchema.SQL_SELL);
+            mSelectQuantity = mConnection.prepareStatement(InventorySchema.SQL_SELECT_QUANTITY);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            mConnection.close();
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public String read(Reader reader) throws SQLException {
+        reader.mSelectItem.setLong(1, 1 + reader.mRandom.nextInt(ITEMS));
+        ResultSet result = reader.mSelectItem.executeQuery();
+        try {
+            return result.next() ? result.getString(2) : null;
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Sell one unit of a random item and read back its stock, in one transaction like the
+     * provider's sell method
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public long sell(Writer writer) throws SQLException {
+        long id = 1 + writer.mRandom.nextInt(ITEMS);
+        long quantity = -1;
+        writer.mConnection.setAutoCommit(false);
+        try {
+            writer.mSell.setInt(1, 1);
+            writer.mSell.setLong(2, System.currentTimeMillis());
+            writer.mSell.setLong(3, id);
+            writer.mSell.setInt(4, 1);
+            if (writer.mSell.executeUpdate() != 0) {
+                writer.mSelectQuantity.setLong(1, id);
+                ResultSet result = writer.mSelectQuantity.executeQuery();
+                try {
+                    quantity = result.next() ? result.getLong(1) : -1;
+                } finally {
+                    result.close();
+                }
+            }
+            writer.mConnection.commit();
+        } finally {
+            writer.mConnection.setAutoCommit(true);
+        }
+        if ("WAL".equals(journalMode) && ++writer.mSalesSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            writer.mSalesSinceCheckpoint = 0;
+            checkpoint();
+        }
+        return quantity;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.danae.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The supplier totals on 100k items and 1k suppliers: read from the supplier summary, as the
+ * provider does, against grouping the whole inventory table, as dashboards did before. Writes
+ * pay for the summary in its triggers, so quantity updates are timed on the database with the
+ * summary and on one without it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SupplierSummaryBenchmark {
+
+    private static final int ITEMS = 100000;
+    private static final int SUPPLIERS = 1000;
+    private static final long SEED = 42;
+
+    /**
+     * The supplier totals grouped from every item, with the same columns and order as
+     * {@link InventorySchema#SQL_SUPPLIER_STATS}
+     */
+    static final String SQL_GROUP_BY_SUPPLIER = "SELECT supplier_id, supplier, supplierNumber,"
+            + " COUNT(*) AS item_count,"
+            + " SUM(" + InventorySchema.CURRENT_QUANTITY + ") AS total_units,"
+            + " SUM((" + InventorySchema.CURRENT_QUANTITY + ") * price) AS total_value"
+            + " FROM inventory JOIN suppliers USING (supplier_id)"
+            + " GROUP BY supplier_id ORDER BY supplier";
+
+    /**
+     * Set the quantity of one item: quantity and ID
+     */
+    private static final String SQL_UPDATE_QUANTITY = "UPDATE inventory SET quantity = ? WHERE _id = ?";
+
+    private BenchmarkDatabase mDatabase;
+    private BenchmarkDatabase mDatabaseWithoutSummary;
+    private PreparedStatement mSupplierStats;
+    private PreparedStatement mGroupBySupplier;
+    private PreparedStatement mUpdateQuantity;
+    private PreparedStatement mUpdateQuantityWithoutSummary;
+    private final Random mRandom = new Random(SEED);
+
+    @Setup(Level.Trial)
+    public void createDatabases() throws IOException, SQLException {
+        mDatabase = new BenchmarkDatabase();
+        mDatabase.fill(ITEMS, SUPPLIERS, new Random(SEED));
+        mDatabaseWithoutSummary = new BenchmarkDatabase();
+        Statement statement = mDatabaseWithoutSummary.getConnection().createStatement();
+        try {
+            statement.execute("DROP TRIGGER supplier_summary_insert");
+            statement.execute("DROP TRIGGER supplier_summary_update");
+            statement.execute("DROP TRIGGER supplier_summary_delete");
+            statement.execute("DROP TABLE supplier_summary");
+        } finally {
+            statement.close();
+        }
+        mDatabaseWithoutSummary.fill(ITEMS, SUPPLIERS, new Random(SEED));
+
+        mSupplierStats = mDatabase.getConnection().prepareStatement(InventorySchema.SQL_SUPPLIER_STATS);
+        mGroupBySupplier = mDatabase.getConnection().prepareStatement(SQL_GROUP_BY_SUPPLIER);
+        mUpdateQuantity = mDatabase.getConnection().prepareStatement(SQL_UPDATE_QUANTITY);
+        mUpdateQuantityWithoutSummary = mDatabaseWithoutSummary.getConnection().prepareStatement(SQL_UPDATE_QUANTITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabases() throws SQLException {
+        mDatabase.delete();
+        mDatabaseWithoutSummary.delete();
+    }
+
+    @Benchmark
+    public void summary(Blackhole blackhole) throws SQLException {
+        readTotals(mSupplierStats, blackhole);
+    }
+
+    @Benchmark
+    public void groupBy(Blackhole blackhole) throws SQLException {
+        readTotals(mGroupBySupplier, blackhole);
+    }
+
+    @Benchmark
+    public int updateWithSummary() throws SQLException {
+        return updateQuantity(mUpdateQuantity);
+    }
+
+    @Benchmark
+    public int updateWithoutSummary() throws SQLException {
+        return updateQuantity(mUpdateQuantityWithoutSummary);
+    }
+
+    /**
+     * Read every supplier's totals, as a dashboard does
+     */
+    private static void readTotals(PreparedStatement query, Blackhole blackhole) throws SQLException {
+        ResultSet result = query.executeQuery();
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getString(2));
+                blackhole.consume(result.getLong(4));
+                blackhole.consume(result.getLong(5));
+                blackhole.consume(result.getLong(6));
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Set a random item's quantity, in its own transaction like the provider's updates
+     */
+    private int updateQuantity(PreparedStatement update) throws SQLException {
+        update.setInt(1, mRandom.nextInt(500));
+        update.setLong(2, 1 + mRandom.nextInt(ITEMS));
+        return update.executeUpdate();
+    }
+}